@@ -0,0 +1,48 @@
+#!/usr/bin/env bash
+#
+# Gera o arquivo de Class Data Sharing (AppCDS, JDK 10+) da aplicação.
+#
+# O jar executável do Spring Boot é extraído em target/exploded porque o CDS só
+# arquiva classes carregadas de jars "planos" do classpath. O arquivo gerado
+# (target/app-cds.jsa) só vale para o mesmo JDK e para o mesmo classpath.
+#
+# Uso: ./mvnw -Pfast-start package && scripts/cds-archive.sh
+#
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+JAR=$(ls target/library-api-*.jar | grep -v original | head -n 1)
+EXPLODED=target/exploded
+CLASSLIST=target/app-cds.classlist
+ARCHIVE=target/app-cds.jsa
+MAIN_CLASS=com.plenasoft.libraryapi.LibraryApiApplication
+
+rm -rf "$EXPLODED" "$CLASSLIST" "$ARCHIVE"
+mkdir -p "$EXPLODED"
+(cd "$EXPLODED" && unzip -q "../../$JAR")
+
+CLASSPATH="$EXPLODED/BOOT-INF/classes"
+for lib in $(ls "$EXPLODED"/BOOT-INF/lib/*.jar | sort); do
+  CLASSPATH="$CLASSPATH:$lib"
+done
+echo "$CLASSPATH" > target/app-cds.classpath
+
+# 1. sobe a aplicação registrando as classes carregadas e encerra assim que ela estiver pronta
+java -Xshare:off -XX:DumpLoadedClassList="$CLASSLIST" -cp "$CLASSPATH" "$MAIN_CLASS" \
+  --spring.profiles.active=faststart --server.port=0 > target/app-cds-training.log 2>&1 &
+PID=$!
+until grep -q "Started LibraryApiApplication" target/app-cds-training.log; do
+  if ! kill -0 "$PID" 2>/dev/null; then
+    echo "Aplicação encerrou antes de iniciar, veja target/app-cds-training.log" >&2
+    exit 1
+  fi
+  sleep 0.2
+done
+kill "$PID" && wait "$PID" || true
+
+# 2. gera o arquivo a partir da lista de classes
+java -Xshare:dump -XX:SharedClassListFile="$CLASSLIST" -XX:SharedArchiveFile="$ARCHIVE" -cp "$CLASSPATH"
+
+echo "Arquivo CDS gerado em $ARCHIVE"
+echo "Execute com: java -Xshare:auto -XX:SharedArchiveFile=$ARCHIVE -cp \$(cat target/app-cds.classpath) $MAIN_CLASS"
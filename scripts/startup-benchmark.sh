@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+#
+# Compara tempo de inicialização e memória residente (RSS) da aplicação em cada modo:
+#
+#   default    jar executável, perfil padrão
+#   faststart  jar executável, perfil 'faststart' (lazy init, repositórios lazy)
+#   cds        classpath extraído + perfil 'faststart' + arquivo CDS + C1 apenas
+#
+# O modo 'cds' exige scripts/cds-archive.sh executado antes.
+#
+# Uso: ./mvnw -Pfast-start package && scripts/cds-archive.sh && scripts/startup-benchmark.sh [execuções]
+#
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+JAR=$(ls target/library-api-*.jar | grep -v original | head -n 1)
+MAIN_CLASS=com.plenasoft.libraryapi.LibraryApiApplication
+LOG=target/startup-benchmark.log
+
+command_for() {
+  case "$1" in
+    default)
+      echo "java -jar $JAR --server.port=0" ;;
+    faststart)
+      echo "java -jar $JAR --server.port=0 --spring.profiles.active=faststart" ;;
+    cds)
+      echo "java -XX:TieredStopAtLevel=1 -Xshare:on -XX:SharedArchiveFile=target/app-cds.jsa" \
+           "-cp $(cat target/app-cds.classpath) $MAIN_CLASS --server.port=0 --spring.profiles.active=faststart" ;;
+  esac
+}
+
+# imprime "<segundos reportados pelo Spring> <RSS em KB>" de uma execução
+measure() {
+  local cmd=$1
+  $cmd > "$LOG" 2>&1 &
+  local pid=$!
+  until grep -q "Started LibraryApiApplication" "$LOG"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "Aplicação encerrou antes de iniciar, veja $LOG" >&2
+      exit 1
+    fi
+    sleep 0.1
+  done
+  local seconds rss
+  seconds=$(grep -o "Started LibraryApiApplication in [0-9.]*" "$LOG" | awk '{print $4}')
+  rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+  kill "$pid" && wait "$pid" 2>/dev/null || true
+  echo "$seconds $rss"
+}
+
+MODES="default faststart"
+if [ -f target/app-cds.jsa ]; then
+  MODES="$MODES cds"
+fi
+
+printf "%-10s %12s %12s %12s\n" "modo" "inicio(s)" "min(s)" "RSS(MB)"
+for mode in $MODES; do
+  cmd=$(command_for "$mode")
+  total=0; min=""; rss_total=0
+  for _ in $(seq "$RUNS"); do
+    read -r seconds rss < <(measure "$cmd")
+    total=$(echo "$total + $seconds" | bc -l)
+    rss_total=$((rss_total + rss))
+    if [ -z "$min" ] || (( $(echo "$seconds < $min" | bc -l) )); then
+      min=$seconds
+    fi
+  done
+  printf "%-10s %12.3f %12.3f %12d\n" "$mode" \
+    "$(echo "$total / $RUNS" | bc -l)" "$min" "$((rss_total / RUNS / 1024))"
+done
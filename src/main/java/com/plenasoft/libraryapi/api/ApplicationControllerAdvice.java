@@ -3,6 +3,7 @@ package com.plenasoft.libraryapi.api;
 
 import com.plenasoft.libraryapi.api.exception.ApiErros;
 import com.plenasoft.libraryapi.exception.BusinessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
@@ -28,6 +29,12 @@ public class ApplicationControllerAdvice {
         return new ApiErros(ex);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public ApiErros handleOptimisticLockingFailureException (OptimisticLockingFailureException ex) {
+        return new ApiErros("Registro alterado por outra requisição. Recarregue e tente novamente.");
+    }
+
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity handleResponseStatusException (ResponseStatusException ex) {
         return new ResponseEntity(new ApiErros(ex), ex.getStatus());
@@ -0,0 +1,56 @@
+package com.plenasoft.libraryapi.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plenasoft.libraryapi.api.exception.ApiErros;
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Resolve a filial da requisição pelo header {@value BranchContextHolder#BRANCH_HEADER}.
+ * Sem o header, a requisição é atendida na filial padrão. O filtro roda antes dos controllers,
+ * então o erro de filial inválida é escrito aqui no mesmo formato do {@link ApplicationControllerAdvice}.
+ */
+@Component
+public class BranchFilter extends OncePerRequestFilter {
+
+    private static final Pattern VALID_BRANCH = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final ObjectMapper objectMapper;
+
+    public BranchFilter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String branch = request.getHeader(BranchContextHolder.BRANCH_HEADER);
+        if (branch == null || branch.isEmpty()) {
+            branch = BranchContextHolder.DEFAULT_BRANCH;
+        } else if (!VALID_BRANCH.matcher(branch).matches()) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getOutputStream(), new ApiErros("Invalid branch"));
+            return;
+        }
+
+        BranchContextHolder.setBranch(branch);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            BranchContextHolder.clear();
+        }
+    }
+}
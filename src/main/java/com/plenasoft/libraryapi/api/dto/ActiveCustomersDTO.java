@@ -0,0 +1,19 @@
+package com.plenasoft.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActiveCustomersDTO {
+
+    private LocalDate from;
+    private LocalDate to;
+    private long customers;
+}
@@ -0,0 +1,20 @@
+package com.plenasoft.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Uma alteração do feed: o estado atual do livro, ou apenas o id quando ele foi excluído.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChangeDTO {
+
+    private Long id;
+    private boolean deleted;
+    private BookDTO book;
+}
@@ -0,0 +1,19 @@
+package com.plenasoft.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookChangesDTO {
+
+    private List<BookChangeDTO> changes;
+    private String nextToken;
+    private boolean hasMore;
+}
@@ -1,8 +1,11 @@
 package com.plenasoft.libraryapi.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.plenasoft.libraryapi.isbn.ValidIsbn;
 import lombok.*;
 
 import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
 
 @Data
 @Builder
@@ -19,5 +22,31 @@ public class BookDTO {
     private String author;
 
     @NotEmpty
+    @ValidIsbn
     private String isbn;
+
+    @Size(max = 32)
+    private String type;
+
+    private Long version;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String publisher;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer publishedYear;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String coverUrl;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer pageCount;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private int activeLoans;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public boolean isAvailable() {
+        return activeLoans == 0;
+    }
 }
@@ -0,0 +1,20 @@
+package com.plenasoft.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyLoanStatsDTO {
+
+    private LocalDate date;
+    private long loans;
+    private long returns;
+    private long activeCustomers;
+}
@@ -0,0 +1,29 @@
+package com.plenasoft.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanBatchDTO {
+
+    /**
+     * Livros por lote: uma pilha de autoatendimento tem de 5 a 20.
+     */
+    public static final int MAX_ITEMS = 50;
+
+    @NotEmpty
+    private String customer;
+
+    @NotEmpty
+    @Size(max = LoanBatchDTO.MAX_ITEMS)
+    private List<@NotEmpty String> isbns;
+}
@@ -0,0 +1,21 @@
+package com.plenasoft.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReturnBatchDTO {
+
+    @NotEmpty
+    @Size(max = LoanBatchDTO.MAX_ITEMS)
+    private List<@NotEmpty String> isbns;
+}
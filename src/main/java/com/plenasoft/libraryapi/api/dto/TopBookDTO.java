@@ -0,0 +1,18 @@
+package com.plenasoft.libraryapi.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopBookDTO {
+
+    private Long bookId;
+    private String title;
+    private String isbn;
+    private long loans;
+}
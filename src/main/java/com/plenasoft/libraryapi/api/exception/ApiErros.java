@@ -19,6 +19,10 @@ public class ApiErros {
         this.errors = Arrays.asList(ex.getMessage());
     }
 
+    public ApiErros(String error) {
+        this.errors = Arrays.asList(error);
+    }
+
     public ApiErros(ResponseStatusException ex) {
         this.errors = Arrays.asList(ex.getReason());
     }
@@ -1,29 +1,46 @@
 package com.plenasoft.libraryapi.api.resource;
 
+import com.plenasoft.libraryapi.api.dto.BookAvailabilityDTO;
+import com.plenasoft.libraryapi.api.dto.BookChangeDTO;
+import com.plenasoft.libraryapi.api.dto.BookChangesDTO;
 import com.plenasoft.libraryapi.api.dto.BookDTO;
 import com.plenasoft.libraryapi.api.exception.ApiErros;
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
 import com.plenasoft.libraryapi.exception.BusinessException;
 import com.plenasoft.libraryapi.model.entity.Book;
 import com.plenasoft.libraryapi.service.BookService;
+import com.plenasoft.libraryapi.service.availability.AvailabilityBroadcaster;
+import com.plenasoft.libraryapi.service.changes.BookChangePage;
 import org.modelmapper.ModelMapper;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
 
+    static final int MAX_AVAILABILITY_ISBNS = 500;
+    static final int MAX_CHANGES = 1000;
+
     private BookService service;
+    private AvailabilityBroadcaster broadcaster;
     private ModelMapper mapper;
 
-    public BookController(BookService service, ModelMapper mapper) {
+    public BookController(BookService service, AvailabilityBroadcaster broadcaster, ModelMapper mapper) {
         this.service = service;
+        this.broadcaster = broadcaster;
         this.mapper = mapper;
     }
 
@@ -43,6 +60,58 @@ public class BookController {
                 .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
     }
 
+    @GetMapping("availability")
+    public List<BookAvailabilityDTO> availability(@RequestParam("isbn") List<String> isbns) {
+        if( isbns.size() > MAX_AVAILABILITY_ISBNS ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "No máximo " + MAX_AVAILABILITY_ISBNS + " isbns por consulta.");
+        }
+        return service
+                .getAvailability(isbns)
+                .stream()
+                .map( availability -> BookAvailabilityDTO.builder()
+                        .isbn(availability.getIsbn())
+                        .activeLoans(availability.getActiveLoans())
+                        .available(availability.getActiveLoans() == 0)
+                        .build() )
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Stream (SSE) das mudanças de disponibilidade da filial, a cada empréstimo e devolução.
+     * Com {@code isbn}, recebe apenas os livros informados, começando pela situação atual deles.
+     */
+    @GetMapping(value = "availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter availabilityStream(@RequestParam(value = "isbn", required = false) List<String> isbns) {
+        if( isbns != null && isbns.size() > MAX_AVAILABILITY_ISBNS ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "No máximo " + MAX_AVAILABILITY_ISBNS + " isbns por consulta.");
+        }
+        return broadcaster
+                .subscribe(BranchContextHolder.getBranch(), isbns != null ? isbns : Collections.emptyList())
+                .orElseThrow( () -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Limite de conexões do stream atingido.") );
+    }
+
+    /**
+     * Feed de alterações para quem mantém uma cópia do acervo: começa sem {@code since} e continua
+     * com o {@code nextToken} da resposta anterior. Livros excluídos vêm apenas com o id.
+     */
+    @GetMapping("changes")
+    public BookChangesDTO changes(@RequestParam(value = "since", required = false) String since,
+                                  @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        if( limit < 1 || limit > MAX_CHANGES ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "O limite deve estar entre 1 e " + MAX_CHANGES + ".");
+        }
+        BookChangePage page = service.getChanges(since, limit);
+        return BookChangesDTO.builder()
+                .changes(page.getChanges().stream().map(this::toChange).collect(Collectors.toList()))
+                .nextToken(page.getNextToken())
+                .hasMore(page.isHasMore())
+                .build();
+    }
+
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void delete(@PathVariable Long id) {
@@ -52,9 +121,12 @@ public class BookController {
     }
 
     @PutMapping("{id}")
-    public BookDTO update (@PathVariable Long id, BookDTO dto) {
+    public BookDTO update (@PathVariable Long id, @RequestBody BookDTO dto) {
         return service.getById(id).map( book -> {
 
+            if( dto.getVersion() != null && !dto.getVersion().equals(book.getVersion()) ) {
+                throw new ObjectOptimisticLockingFailureException(Book.class, id);
+            }
             book.setAuthor(dto.getAuthor());
             book.setTitle(dto.getTitle());
             book  = service.update(book);
@@ -65,5 +137,25 @@ public class BookController {
 
     }
 
+    @PatchMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void patch(@PathVariable Long id, @RequestBody BookDTO dto) {
+        Book changes = Book.builder()
+                .id(id)
+                .title(dto.getTitle())
+                .author(dto.getAuthor())
+                .version(dto.getVersion())
+                .build();
+
+        if( !service.patch(changes) ) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+    }
 
+    private BookChangeDTO toChange(Book book) {
+        if( book.getDeletedAt() != null ) {
+            return BookChangeDTO.builder().id(book.getId()).deleted(true).build();
+        }
+        return BookChangeDTO.builder().id(book.getId()).book(mapper.map(book, BookDTO.class)).build();
+    }
 }
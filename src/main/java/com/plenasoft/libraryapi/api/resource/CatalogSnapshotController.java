@@ -0,0 +1,122 @@
+package com.plenasoft.libraryapi.api.resource;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.service.snapshot.CatalogSnapshot;
+import com.plenasoft.libraryapi.service.snapshot.CatalogSnapshotJob;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Download do snapshot do acervo da filial (NDJSON em gzip), para sincronização completa sem
+ * passar pelo banco. Aceita uma faixa de bytes ({@code Range}) para retomar downloads e
+ * {@code If-None-Match}. No Tomcat o arquivo é enviado pelo sendfile do sistema operacional,
+ * sem passar pela JVM; nos demais containers é copiado com {@link FileChannel#transferTo}.
+ * O cabeçalho {@value #CHANGE_TOKEN_HEADER} traz a posição para continuar pelo feed de alterações.
+ */
+@RestController
+@RequestMapping("/api/books/snapshot")
+public class CatalogSnapshotController {
+
+    static final String CHANGE_TOKEN_HEADER = "X-Change-Token";
+    static final String CONTENT_TYPE = "application/gzip";
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private CatalogSnapshotJob snapshots;
+
+    public CatalogSnapshotController(CatalogSnapshotJob snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    @GetMapping
+    public void download(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CatalogSnapshot snapshot = snapshots
+                .current(BranchContextHolder.getBranch())
+                .orElseThrow( () -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Snapshot do acervo ainda não foi gerado.") );
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setHeader(CHANGE_TOKEN_HEADER, snapshot.getChangeToken());
+        if( new ServletWebRequest(request, response).checkNotModified(snapshot.getETag(), snapshot.getGeneratedAt()) ) {
+            return;
+        }
+
+        long length = snapshot.getLength();
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = singleRange(request, snapshot);
+        if( range != null ) {
+            start = range.getRangeStart(length);
+            if( start >= length ) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            end = range.getRangeEnd(length);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"catalog-" + snapshot.getBranch() + ".ndjson.gz\"");
+        response.setContentLengthLong(end - start + 1);
+
+        if( Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) ) {
+            request.setAttribute(SENDFILE_FILENAME, snapshot.getPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(snapshot.getPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while( remaining > 0 ) {
+                long sent = file.transferTo(position, remaining, out);
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * Faixa pedida, ou nulo para o arquivo inteiro: sem {@code Range}, com sintaxe inválida, com
+     * várias faixas (a RFC 7233 permite ignorá-las) ou com {@code If-Range} de outro snapshot.
+     */
+    private static HttpRange singleRange(HttpServletRequest request, CatalogSnapshot snapshot) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if( header == null ) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if( ifRange != null && !ifRange.equals(snapshot.getETag()) ) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,16 +1,27 @@
 package com.plenasoft.libraryapi.api.resource;
 
+import com.plenasoft.libraryapi.api.dto.LoanBatchDTO;
+import com.plenasoft.libraryapi.api.dto.LoanBatchItemDTO;
 import com.plenasoft.libraryapi.api.dto.LoanDTO;
+import com.plenasoft.libraryapi.api.dto.ReturnBatchDTO;
+import com.plenasoft.libraryapi.api.dto.ReturnedLoanDTO;
 import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Customer;
 import com.plenasoft.libraryapi.model.entity.Loan;
 import com.plenasoft.libraryapi.service.BookService;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.LoanBatchService;
 import com.plenasoft.libraryapi.service.LoanService;
+import com.plenasoft.libraryapi.service.batch.LoanBatchItem;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.validation.Valid;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/loans")
@@ -19,6 +30,8 @@ public class LoanController {
 
     private final LoanService service;
     private final BookService bookService;
+    private final LoanBatchService batchService;
+    private final CustomerService customerService;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -27,10 +40,11 @@ public class LoanController {
         Book book =bookService
                 .getBookByIsbn(dto.getIsbn())
                 .orElseThrow( () -> new ResponseStatusException(HttpStatus.BAD_REQUEST,"Book not found for passed isbn"));
+        Customer customer = customerService.getOrCreate(dto.getCustomer());
 
         Loan entity = Loan.builder()
                 .book(book)
-                .customer(dto.getCustomer())
+                .customerId(customer.getId())
                 .loanDate(LocalDate.now())
                 .build();
         entity = service.save(entity);
@@ -40,6 +54,41 @@ public class LoanController {
 
     }
 
+    @PatchMapping("{id}")
+    public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO dto) {
+        if( !Boolean.TRUE.equals(dto.getReturned()) ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only returning a loan is supported");
+        }
+        Loan loan = service
+                .getById(id)
+                .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+        service.returnLoan(loan);
+    }
+
+    /**
+     * Empréstimo de uma pilha de livros para o mesmo cliente (terminais de autoatendimento).
+     * Responde o resultado de cada isbn, na ordem enviada.
+     */
+    @PostMapping("batch")
+    public List<LoanBatchItemDTO> createBatch(@RequestBody @Valid LoanBatchDTO dto) {
+        return toDTO(batchService.checkout(dto.getCustomer(), dto.getIsbns()));
+    }
+
+    @PostMapping("returns/batch")
+    public List<LoanBatchItemDTO> returnBatch(@RequestBody @Valid ReturnBatchDTO dto) {
+        return toDTO(batchService.returnAll(dto.getIsbns()));
+    }
+
+    private static List<LoanBatchItemDTO> toDTO(List<LoanBatchItem> items) {
+        return items.stream()
+                .map(item -> LoanBatchItemDTO.builder()
+                        .isbn(item.getIsbn())
+                        .status(item.getStatus().name())
+                        .loanId(item.getLoanId())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
 
 
 }
@@ -0,0 +1,56 @@
+package com.plenasoft.libraryapi.api.resource;
+
+import com.plenasoft.libraryapi.api.dto.ReservationDTO;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Customer;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.service.BookService;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.ReservationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/api/books/{bookId}/reservations")
+@RequiredArgsConstructor
+public class ReservationController {
+
+    private final ReservationService service;
+    private final BookService bookService;
+    private final CustomerService customerService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public ReservationDTO create(@PathVariable Long bookId, @RequestBody @Valid ReservationDTO dto) {
+        Book book = bookService
+                .getById(bookId)
+                .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+        Customer customer = customerService.getOrCreate(dto.getCustomer());
+
+        Reservation entity = service.reserve(Reservation.builder()
+                .book(book)
+                .customerId(customer.getId())
+                .build());
+
+        return ReservationDTO.builder()
+                .id(entity.getId())
+                .customer(customer.getName())
+                .status(entity.getStatus().name())
+                .position(service.getPosition(entity))
+                .build();
+    }
+
+    @DeleteMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void cancel(@PathVariable Long bookId, @PathVariable Long id) {
+        Reservation reservation = service
+                .getById(id)
+                .filter( r -> r.getBook().getId().equals(bookId) )
+                .orElseThrow( () -> new ResponseStatusException(HttpStatus.NOT_FOUND) );
+        service.cancel(reservation);
+    }
+}
@@ -0,0 +1,117 @@
+package com.plenasoft.libraryapi.api.resource;
+
+import com.plenasoft.libraryapi.api.dto.ActiveCustomersDTO;
+import com.plenasoft.libraryapi.api.dto.DailyLoanStatsDTO;
+import com.plenasoft.libraryapi.api.dto.TopBookDTO;
+import com.plenasoft.libraryapi.service.LoanStatsService;
+import com.plenasoft.libraryapi.service.stats.LoanStatsBackfillJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Indicadores de empréstimos da filial da requisição, servidos a partir dos agregados diários, sem consultar
+ * a tabela de empréstimos.
+ */
+@RestController
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    static final int DEFAULT_DAYS = 30;
+    static final int MAX_DAYS = 366;
+    static final int MAX_TOP_BOOKS = 100;
+    static final int MAX_BACKFILL_DAYS = 31;
+
+    private final LoanStatsService service;
+    private final LoanStatsBackfillJob backfillJob;
+
+    @GetMapping("loans-per-day")
+    public List<DailyLoanStatsDTO> loansPerDay(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = endOf(to);
+        LocalDate start = startOf(from, end);
+        return service
+                .getLoansPerDay(start, end)
+                .stream()
+                .map( stats -> DailyLoanStatsDTO.builder()
+                        .date(stats.getStatDate())
+                        .loans(stats.getLoans())
+                        .returns(stats.getReturns())
+                        .activeCustomers(stats.getActiveCustomers())
+                        .build() )
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("top-books")
+    public List<TopBookDTO> topBooks(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "10") int limit) {
+        if( limit < 1 || limit > MAX_TOP_BOOKS ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_TOP_BOOKS);
+        }
+        LocalDate end = endOf(to);
+        LocalDate start = startOf(from, end);
+        return service
+                .getTopBooks(start, end, limit)
+                .stream()
+                .map( top -> TopBookDTO.builder()
+                        .bookId(top.getBookId())
+                        .title(top.getTitle())
+                        .isbn(top.getIsbn())
+                        .loans(top.getLoans())
+                        .build() )
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("active-customers")
+    public ActiveCustomersDTO activeCustomers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = endOf(to);
+        LocalDate start = startOf(from, end);
+        return ActiveCustomersDTO.builder()
+                .from(start)
+                .to(end)
+                .customers(service.countActiveCustomers(start, end))
+                .build();
+    }
+
+    /**
+     * O recálculo roda dentro da requisição, então a faixa é limitada a {@value #MAX_BACKFILL_DAYS}
+     * dias; períodos maiores são recalculados em várias chamadas.
+     */
+    @PostMapping("backfill")
+    public int backfill(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if( from.isAfter(to) ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid date range");
+        }
+        if( ChronoUnit.DAYS.between(from, to) >= MAX_BACKFILL_DAYS ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Backfill range must be at most " + MAX_BACKFILL_DAYS + " days");
+        }
+        return backfillJob.backfill(from, to);
+    }
+
+    private LocalDate endOf(LocalDate to) {
+        return to == null ? LocalDate.now() : to;
+    }
+
+    private LocalDate startOf(LocalDate from, LocalDate end) {
+        LocalDate start = from == null ? end.minusDays(DEFAULT_DAYS - 1L) : from;
+        if( start.isAfter(end) || ChronoUnit.DAYS.between(start, end) >= MAX_DAYS ) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid date range");
+        }
+        return start;
+    }
+}
@@ -0,0 +1,30 @@
+package com.plenasoft.libraryapi.branch;
+
+/**
+ * Filial (tenant) da requisição atual. Preenchida pelo
+ * {@link com.plenasoft.libraryapi.api.BranchFilter} a partir do header {@value #BRANCH_HEADER}.
+ * Fora de uma requisição (tarefas agendadas, testes de serviço) vale a filial padrão.
+ */
+public final class BranchContextHolder {
+
+    public static final String BRANCH_HEADER = "X-Library-Branch";
+    public static final String DEFAULT_BRANCH = "main";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private BranchContextHolder() {
+    }
+
+    public static String getBranch() {
+        String branch = CURRENT.get();
+        return branch != null ? branch : DEFAULT_BRANCH;
+    }
+
+    public static void setBranch(String branch) {
+        CURRENT.set(branch);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
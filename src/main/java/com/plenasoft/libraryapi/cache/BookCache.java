@@ -0,0 +1,150 @@
+package com.plenasoft.libraryapi.cache;
+
+import com.plenasoft.libraryapi.config.BookCacheProperties;
+import com.plenasoft.libraryapi.isbn.Isbn;
+import com.plenasoft.libraryapi.model.entity.Book;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Cache local das buscas de livros por filial e isbn (o isbn é normalizado, então as grafias do
+ * mesmo livro dividem a entrada). Cada nó tem o seu; as alterações de um nó chegam aos outros
+ * pelo {@link InvalidationBus}, e nenhuma entrada dura mais que {@code max-staleness}.
+ * <p>
+ * Devolve cópias, então quem chama pode alterar o livro sem afetar o cache. O {@code activeLoans}
+ * da cópia não é atual: a disponibilidade continua sendo decidida pelo contador no banco.
+ */
+@Component
+public class BookCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxStalenessNanos;
+    private final LongSupplier nanoTime;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Long, String> keysById = new ConcurrentHashMap<>();
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Incrementado a cada invalidação. Uma busca só guarda o resultado quando nenhuma invalidação
+     * aconteceu durante a leitura, para não gravar no cache um livro lido antes da alteração.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public BookCache(BookCacheProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    BookCache(BookCacheProperties properties, LongSupplier nanoTime) {
+        this.enabled = properties.isEnabled();
+        this.maxEntries = properties.getMaxEntries();
+        this.maxStalenessNanos = properties.getMaxStaleness().toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    public Optional<Book> get(String branch, String isbn, Supplier<Optional<Book>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String key = key(branch, isbn);
+        Entry entry = entries.get(key);
+        long now = nanoTime.getAsLong();
+        if (entry != null && now - entry.loadedAt < maxStalenessNanos) {
+            return Optional.of(entry.book.toBuilder().build());
+        }
+
+        long before = invalidations.get();
+        Optional<Book> book = loader.get();
+        if (book.isPresent() && invalidations.get() == before && entries.size() < maxEntries) {
+            keysById.put(book.get().getId(), key);
+            entries.put(key, new Entry(book.get().toBuilder().build(), now));
+        }
+        return book;
+    }
+
+    /**
+     * Remove o livro do cache deste nó e o agenda para ser invalidado nos outros. Chamado depois
+     * do commit da alteração.
+     */
+    public void invalidate(Long bookId) {
+        if (enabled && bookId != null) {
+            evict(bookId);
+            pending.add(bookId);
+        }
+    }
+
+    /**
+     * Aplica as invalidações recebidas de outros nós, sem reenviá-las.
+     */
+    void evictAll(Collection<Long> bookIds) {
+        bookIds.forEach(this::evict);
+    }
+
+    void evictExpired() {
+        long now = nanoTime.getAsLong();
+        entries.entrySet().removeIf(entry -> {
+            boolean expired = now - entry.getValue().loadedAt >= maxStalenessNanos;
+            if (expired) {
+                keysById.remove(entry.getValue().book.getId(), entry.getKey());
+            }
+            return expired;
+        });
+    }
+
+    /**
+     * Retira as invalidações pendentes; repetições do mesmo livro desde o último envio já vêm unidas.
+     */
+    Set<Long> drainPending() {
+        Set<Long> drained = new HashSet<>();
+        for (Long id : pending) {
+            if (pending.remove(id)) {
+                drained.add(id);
+            }
+        }
+        return drained;
+    }
+
+    void requeue(Collection<Long> bookIds) {
+        pending.addAll(bookIds);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict(Long bookId) {
+        invalidations.incrementAndGet();
+        String key = keysById.remove(bookId);
+        if (key != null) {
+            entries.remove(key);
+        }
+    }
+
+    private static String key(String branch, String isbn) {
+        long isbn13 = Isbn.toIsbn13(isbn);
+        return branch + '|' + (isbn13 != Isbn.INVALID ? Isbn.format(isbn13) : isbn);
+    }
+
+    private static class Entry {
+
+        private final Book book;
+        private final long loadedAt;
+
+        Entry(Book book, long loadedAt) {
+            this.book = book;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.plenasoft.libraryapi.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Broker embutido: entrega os lotes aos outros barramentos da mesma JVM. Com um único nó não há
+ * para quem entregar; nos testes, cada contexto (ou instância criada no teste) faz o papel de um nó.
+ * Usado por padrão.
+ */
+@Component
+@ConditionalOnProperty(name = "library.cache.invalidation.bus", havingValue = "in-process", matchIfMissing = true)
+public class InProcessInvalidationBus implements InvalidationBus {
+
+    private static final List<InProcessInvalidationBus> NODES = new CopyOnWriteArrayList<>();
+
+    private final Queue<Collection<Long>> inbox = new ConcurrentLinkedQueue<>();
+
+    public InProcessInvalidationBus() {
+        NODES.add(this);
+    }
+
+    @Override
+    public void send(Collection<Long> bookIds) {
+        for (InProcessInvalidationBus node : NODES) {
+            if (node != this) {
+                node.inbox.add(bookIds);
+            }
+        }
+    }
+
+    @Override
+    public List<Collection<Long>> receive() {
+        List<Collection<Long>> received = new ArrayList<>();
+        for (Collection<Long> bookIds = inbox.poll(); bookIds != null; bookIds = inbox.poll()) {
+            received.add(bookIds);
+        }
+        return received;
+    }
+
+    @PreDestroy
+    public void close() {
+        NODES.remove(this);
+    }
+}
@@ -0,0 +1,21 @@
+package com.plenasoft.libraryapi.cache;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Transporte das invalidações do {@link BookCache} entre os nós. O envio e o recebimento são
+ * feitos pelo {@link InvalidationRelay} a cada intervalo, em lotes.
+ */
+public interface InvalidationBus {
+
+    /**
+     * Envia um lote de ids de livros alterados neste nó.
+     */
+    void send(Collection<Long> bookIds);
+
+    /**
+     * @return os lotes enviados pelos outros nós desde a última chamada
+     */
+    List<Collection<Long>> receive();
+}
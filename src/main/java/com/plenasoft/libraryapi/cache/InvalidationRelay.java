@@ -0,0 +1,70 @@
+package com.plenasoft.libraryapi.cache;
+
+import com.plenasoft.libraryapi.config.BookCacheProperties;
+import com.plenasoft.libraryapi.lifecycle.ShutdownAware;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A cada intervalo, envia as invalidações pendentes deste nó em lotes de {@code batch-size} ids
+ * (alterações repetidas do mesmo livro no intervalo viram um único id) e aplica as recebidas dos
+ * outros nós. Um livro alterado em um nó deixa o cache dos outros em cerca de dois intervalos;
+ * se a mensagem se perder, a entrada expira em {@code max-staleness}.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class InvalidationRelay implements ShutdownAware {
+
+    private final BookCache cache;
+    private final InvalidationBus bus;
+    private final int batchSize;
+
+    public InvalidationRelay(BookCache cache, InvalidationBus bus, BookCacheProperties properties) {
+        this.cache = cache;
+        this.bus = bus;
+        this.batchSize = properties.getInvalidation().getBatchSize();
+    }
+
+    @Scheduled(fixedDelayString = "${library.cache.invalidation.interval:200}")
+    public void scheduledRelay() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            log.error("Falha ao propagar as invalidações do cache de livros.", e);
+        }
+    }
+
+    /**
+     * As alterações das últimas requisições ainda não foram enviadas aos outros nós.
+     */
+    @Override
+    public void flush() {
+        relay();
+    }
+
+    public void relay() {
+        List<Long> pending = new ArrayList<>(cache.drainPending());
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<Long> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            try {
+                bus.send(new ArrayList<>(batch));
+            } catch (RuntimeException e) {
+                // tenta de novo no próximo intervalo
+                cache.requeue(pending.subList(from, pending.size()));
+                throw e;
+            }
+        }
+
+        for (Collection<Long> bookIds : bus.receive()) {
+            cache.evictAll(bookIds);
+        }
+        cache.evictExpired();
+    }
+}
@@ -0,0 +1,87 @@
+package com.plenasoft.libraryapi.cache;
+
+import com.plenasoft.libraryapi.config.BookCacheProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Transporte pela tabela {@code cache_invalidation} no banco padrão, sem serviço externo: cada
+ * lote enviado é uma linha, e cada nó lê as linhas novas pelo id a cada intervalo. Linhas mais
+ * antigas que a retenção são apagadas por qualquer um dos nós.
+ * <p>
+ * Uma linha gravada com id menor depois da leitura de um id maior não é vista; nesse caso a
+ * entrada continua limitada pelo {@code max-staleness} do cache.
+ */
+@Component
+@ConditionalOnProperty(name = "library.cache.invalidation.bus", havingValue = "jdbc")
+public class JdbcInvalidationBus implements InvalidationBus {
+
+    private final String node = UUID.randomUUID().toString();
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    private long lastId = -1;
+    private LocalDateTime lastCleanup = LocalDateTime.now();
+
+    public JdbcInvalidationBus(DataSource dataSource, BookCacheProperties properties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.retention = properties.getInvalidation().getRetention();
+    }
+
+    @Override
+    public void send(Collection<Long> bookIds) {
+        jdbcTemplate.update("insert into cache_invalidation (node, book_ids, created_at) values (?, ?, ?)",
+                node,
+                bookIds.stream().map(String::valueOf).collect(Collectors.joining(",")),
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    @Override
+    public synchronized List<Collection<Long>> receive() {
+        if (lastId < 0) {
+            // parte das mensagens gravadas desde a subida deste nó; antes disso o cache estava vazio
+            lastId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from cache_invalidation where created_at < ?",
+                    Long.class, Timestamp.valueOf(startedAt));
+        }
+        List<Object[]> rows = jdbcTemplate.query("select id, node, book_ids from cache_invalidation where id > ? order by id",
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3)}, lastId);
+
+        List<Collection<Long>> received = new ArrayList<>();
+        for (Object[] row : rows) {
+            lastId = (Long) row[0];
+            if (!node.equals(row[1])) {
+                received.add(parse((String) row[2]));
+            }
+        }
+        cleanup();
+        return received;
+    }
+
+    private void cleanup() {
+        LocalDateTime now = LocalDateTime.now();
+        if (lastCleanup.plus(retention.dividedBy(2)).isBefore(now)) {
+            jdbcTemplate.update("delete from cache_invalidation where created_at < ?", Timestamp.valueOf(now.minus(retention)));
+            lastCleanup = now;
+        }
+    }
+
+    private static List<Long> parse(String bookIds) {
+        List<Long> ids = new ArrayList<>();
+        for (String id : bookIds.split(",")) {
+            ids.add(Long.valueOf(id));
+        }
+        return ids;
+    }
+}
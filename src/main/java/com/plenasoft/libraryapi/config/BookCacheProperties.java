@@ -0,0 +1,56 @@
+package com.plenasoft.libraryapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Cache local das buscas de livros por isbn e invalidação entre os nós ({@code library.cache.*}).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "library.cache")
+public class BookCacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Acima desse tamanho, novas entradas não são guardadas até que as atuais expirem ou sejam invalidadas.
+     */
+    private int maxEntries = 10_000;
+
+    /**
+     * Tempo máximo que uma entrada fica no cache. É o limite de desatualização mesmo quando uma
+     * invalidação se perde; deve ser bem maior que o intervalo da invalidação.
+     */
+    private Duration maxStaleness = Duration.ofSeconds(10);
+
+    private Invalidation invalidation = new Invalidation();
+
+    @Data
+    public static class Invalidation {
+
+        /**
+         * Transporte entre os nós: {@code jdbc} (tabela no banco, consultada periodicamente) ou
+         * {@code in-process} (broker embutido na JVM, para um único nó e para os testes).
+         */
+        private String bus = "in-process";
+
+        /**
+         * Intervalo em que as invalidações pendentes são enviadas e as dos outros nós são aplicadas.
+         */
+        private Duration interval = Duration.ofMillis(200);
+
+        /**
+         * Ids de livros por mensagem.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Por quanto tempo as mensagens ficam na tabela do transporte {@code jdbc}.
+         */
+        private Duration retention = Duration.ofMinutes(10);
+    }
+}
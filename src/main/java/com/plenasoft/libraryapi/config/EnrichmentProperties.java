@@ -0,0 +1,63 @@
+package com.plenasoft.libraryapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enriquecimento dos livros com dados do catálogo externo ({@code library.enrichment.*}).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "library.enrichment")
+public class EnrichmentProperties {
+
+    private boolean enabled;
+
+    /**
+     * Livros pendentes lidos por consulta.
+     */
+    private int pageSize = 200;
+
+    private int workers = 4;
+
+    /**
+     * Livros em andamento (na fila ou nos workers). Ao atingir o limite, a leitura de novas
+     * páginas espera os workers liberarem espaço.
+     */
+    private int maxInFlight = 100;
+
+    /**
+     * Resultados gravados por transação.
+     */
+    private int batchSize = 50;
+
+    /**
+     * Tentativas por execução quando algum provedor está indisponível.
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * Execuções com falha antes de o livro ser marcado como FAILED.
+     */
+    private int maxRuns = 5;
+
+    private Duration initialBackoff = Duration.ofMillis(500);
+
+    private Duration maxBackoff = Duration.ofSeconds(30);
+
+    private double defaultRatePerSecond = 5;
+
+    /**
+     * Limite de consultas por segundo de cada provedor, pelo nome do provedor.
+     */
+    private Map<String, Double> ratePerSecond = new HashMap<>();
+
+    public double rateFor(String provider) {
+        return ratePerSecond.getOrDefault(provider, defaultRatePerSecond);
+    }
+}
@@ -0,0 +1,63 @@
+package com.plenasoft.libraryapi.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prazos e multas dos empréstimos ({@code library.loan-policy.*}). As políticas por tipo de livro
+ * e por cliente só precisam informar o que muda; o restante vem da política padrão. Quando as duas
+ * existem, a do cliente prevalece sobre a do tipo do livro.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "library.loan-policy")
+public class LoanPolicyProperties {
+
+    private Policy defaults = new Policy(14, 0, new BigDecimal("1.00"), new BigDecimal("30.00"), 10);
+
+    /**
+     * Políticas pelo tipo do livro ({@code Book.type}).
+     */
+    private Map<String, Policy> bookTypes = new HashMap<>();
+
+    /**
+     * Políticas pelo nome do cliente.
+     */
+    private Map<String, Policy> customers = new HashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Policy {
+
+        /**
+         * Dias entre o empréstimo e a data de devolução.
+         */
+        private Integer loanDays;
+
+        /**
+         * Dias de atraso sem multa; passada a carência, a multa conta todos os dias de atraso.
+         */
+        private Integer graceDays;
+
+        private BigDecimal dailyFine;
+
+        /**
+         * Teto da multa acumulada de um empréstimo; sem teto quando nulo na política padrão.
+         */
+        private BigDecimal maxFine;
+
+        /**
+         * Empréstimos em aberto permitidos ao mesmo tempo; só faz sentido na política padrão e nas
+         * de cliente. Sem limite quando nulo na política padrão.
+         */
+        private Integer maxOpenLoans;
+    }
+}
@@ -0,0 +1,60 @@
+package com.plenasoft.libraryapi.config;
+
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import com.plenasoft.libraryapi.shard.ShardRoutingDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Com {@code library.sharding.enabled=true}, substitui o datasource da aplicação por um que
+ * roteia cada conexão para o shard da operação corrente.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties) {
+        int shardCount = properties.isEnabled() ? properties.getShards().size() : 1;
+        return new ShardRouter(shardCount, properties.getScatterThreads());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "library.sharding.enabled", havingValue = "true")
+    public ShardRoutingDataSource shardRoutingDataSource(ShardingProperties properties,
+                                                         @Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("library.sharding.shards deve ter pelo menos um banco.");
+        }
+        // com open-in-view a requisição inteira fica presa à conexão (e ao shard) da primeira consulta
+        if (openInView) {
+            throw new IllegalStateException("Sharding exige spring.jpa.open-in-view=false.");
+        }
+        List<DataSource> shards = new ArrayList<>();
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            shards.add(DataSourceBuilder.create()
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .build());
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "library.sharding.enabled", havingValue = "true")
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
@@ -0,0 +1,32 @@
+package com.plenasoft.libraryapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bancos entre os quais os livros são distribuídos ({@code library.sharding.*}).
+ * Desligado, a aplicação usa apenas o {@code spring.datasource} configurado.
+ */
+@Data
+@ConfigurationProperties(prefix = "library.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    /**
+     * Threads usadas para consultar os shards em paralelo.
+     */
+    private int scatterThreads = 16;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
@@ -0,0 +1,98 @@
+package com.plenasoft.libraryapi.config;
+
+import com.plenasoft.libraryapi.tracing.SlowQueryLog;
+import com.plenasoft.libraryapi.tracing.TracingAspect;
+import com.plenasoft.libraryapi.tracing.TracingDataSourcePostProcessor;
+import com.plenasoft.libraryapi.tracing.TracingFilter;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Rastreamento com OpenTelemetry: um span por requisição em {@code /api/*}, um por chamada aos
+ * controllers e serviços e um por comando SQL. Os spans vão para todos os beans {@link SpanExporter}
+ * do contexto; sem nenhum, são descartados depois de medidos. Pode ser desligado com
+ * {@code library.tracing.enabled=false}.
+ */
+@Configuration
+@EnableConfigurationProperties(TracingProperties.class)
+@ConditionalOnProperty(name = "library.tracing.enabled", havingValue = "true", matchIfMissing = true)
+public class TracingConfig {
+
+    static final String INSTRUMENTATION_NAME = "com.plenasoft.libraryapi";
+
+    @Bean(destroyMethod = "close")
+    public SdkTracerProvider tracerProvider(TracingProperties properties, ObjectProvider<SpanExporter> exporters) {
+        SdkTracerProviderBuilder builder = SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(
+                        Attributes.of(AttributeKey.stringKey("service.name"), properties.getServiceName()))))
+                .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(properties.getSampleRatio())));
+        exporters.orderedStream().forEach(exporter -> builder.addSpanProcessor(BatchSpanProcessor.builder(exporter).build()));
+        return builder.build();
+    }
+
+    /**
+     * Não é registrado como global para que vários contextos (testes) convivam na mesma JVM.
+     */
+    @Bean
+    public OpenTelemetry openTelemetry(SdkTracerProvider tracerProvider) {
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(tracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
+
+    @Bean
+    public Tracer tracer(OpenTelemetry openTelemetry) {
+        return openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "library.tracing.exporter", havingValue = "logging")
+    public SpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+
+    @Bean
+    public FilterRegistrationBean<TracingFilter> tracingFilter(OpenTelemetry openTelemetry, Tracer tracer) {
+        FilterRegistrationBean<TracingFilter> registration = new FilterRegistrationBean<>(new TracingFilter(openTelemetry, tracer));
+        registration.addUrlPatterns("/api/*");
+        // antes dos demais filtros, para que o tempo deles também entre no span da requisição
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    @Bean
+    public TracingAspect tracingAspect(Tracer tracer) {
+        return new TracingAspect(tracer);
+    }
+
+    @Bean
+    public SlowQueryLog slowQueryLog(TracingProperties properties) {
+        return new SlowQueryLog(properties.getSlowQuery().getThreshold(), properties.getSlowQuery().isExplain());
+    }
+
+    @Bean
+    public static TracingDataSourcePostProcessor tracingDataSourcePostProcessor(ObjectProvider<Tracer> tracer,
+                                                                                ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new TracingDataSourcePostProcessor(tracer, slowQueryLog);
+    }
+}
@@ -0,0 +1,46 @@
+package com.plenasoft.libraryapi.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Rastreamento das requisições, serviços e comandos SQL ({@code library.tracing.*}).
+ */
+@Data
+@ConfigurationProperties(prefix = "library.tracing")
+public class TracingProperties {
+
+    private boolean enabled = true;
+
+    private String serviceName = "library-api";
+
+    /**
+     * Exportador embutido: {@code logging} (log da aplicação) ou {@code none}. Outros exportadores
+     * (OTLP, Zipkin, etc) são registrados declarando um bean {@code SpanExporter}.
+     */
+    private String exporter = "none";
+
+    /**
+     * Fração das requisições sem trace de origem que são amostradas. As que chegam com
+     * {@code traceparent} seguem a decisão de quem chamou.
+     */
+    private double sampleRatio = 1.0;
+
+    private SlowQuery slowQuery = new SlowQuery();
+
+    @Data
+    public static class SlowQuery {
+
+        /**
+         * Comandos SQL que demoram pelo menos esse tempo são registrados no log de consultas lentas.
+         */
+        private Duration threshold = Duration.ofMillis(200);
+
+        /**
+         * Inclui o plano de execução ({@code EXPLAIN}) das consultas lentas.
+         */
+        private boolean explain = true;
+    }
+}
@@ -0,0 +1,130 @@
+package com.plenasoft.libraryapi.isbn;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Validação e normalização de ISBN-10/13. A forma canônica é o ISBN-13 com os 13 dígitos
+ * guardados em um {@code long}, o que permite comparar e indexar sem depender da grafia
+ * (hífens, espaços, ISBN-10). Roda em toda busca por isbn, então não aloca: percorre os
+ * caracteres uma vez e faz as contas em tipos primitivos.
+ */
+public final class Isbn {
+
+    /**
+     * Retorno de {@link #toIsbn13(CharSequence)} quando o valor não é um ISBN válido.
+     */
+    public static final long INVALID = -1L;
+
+    private static final long ISBN10_PREFIX = 978_000_000_000_0L;
+
+    private Isbn() {
+    }
+
+    public static boolean isValid(CharSequence value) {
+        return toIsbn13(value) != INVALID;
+    }
+
+    /**
+     * Aceita dígitos separados por hífens ou espaços; no ISBN-10, o dígito verificador pode ser X.
+     *
+     * @return os 13 dígitos do ISBN-13 equivalente, ou {@link #INVALID} quando o formato ou o
+     *         dígito verificador não conferem
+     */
+    public static long toIsbn13(CharSequence value) {
+        if (value == null) {
+            return INVALID;
+        }
+        long digits = 0;
+        int count = 0;
+        boolean checkX = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (checkX || count == 13) {
+                    return INVALID;
+                }
+                digits = digits * 10 + (c - '0');
+                count++;
+            } else if ((c == 'X' || c == 'x') && count == 9) {
+                checkX = true;
+                count++;
+            } else if (c != '-' && c != ' ') {
+                return INVALID;
+            }
+        }
+
+        if (count == 13) {
+            long prefix = digits / 10_000_000_000L;
+            return (prefix == 978 || prefix == 979) && checkDigit13(digits / 10) == digits % 10 ? digits : INVALID;
+        }
+        if (count == 10) {
+            long body = checkX ? digits : digits / 10;
+            int check = checkX ? 10 : (int) (digits % 10);
+            return checkDigit10(body) == check ? ISBN10_PREFIX + body * 10 + checkDigit13(978_000_000_000L + body) : INVALID;
+        }
+        return INVALID;
+    }
+
+    /**
+     * @param first12 os 12 primeiros dígitos do ISBN-13
+     * @return o dígito verificador (pesos alternados 1 e 3, módulo 10)
+     */
+    public static int checkDigit13(long first12) {
+        int sum = 0;
+        long remaining = first12;
+        // da direita para a esquerda: o 12º dígito tem peso 3, o 11º peso 1, e assim por diante
+        for (int position = 0; position < 12; position++) {
+            int digit = (int) (remaining % 10);
+            sum += (position % 2 == 0) ? digit * 3 : digit;
+            remaining /= 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * @param first9 os 9 primeiros dígitos do ISBN-10
+     * @return o dígito verificador (pesos 10 a 2, módulo 11), onde 10 é o X
+     */
+    private static int checkDigit10(long first9) {
+        int sum = 0;
+        long remaining = first9;
+        for (int weight = 2; weight <= 10; weight++) {
+            sum += (int) (remaining % 10) * weight;
+            remaining /= 10;
+        }
+        return (11 - sum % 11) % 11;
+    }
+
+    /**
+     * Os 13 dígitos do isbn canônico, para exibição e logs (aloca a String).
+     */
+    public static String format(long isbn13) {
+        return Long.toString(isbn13);
+    }
+
+    /**
+     * Chave para comparar isbns em memória: os 13 dígitos canônicos quando o isbn é válido, ou o
+     * próprio texto, que só se iguala a ele mesmo (aloca a String).
+     */
+    public static String key(CharSequence value) {
+        long isbn13 = toIsbn13(value);
+        return isbn13 != INVALID ? format(isbn13) : String.valueOf(value);
+    }
+
+    /**
+     * ISBN-13 canônicos dos isbns válidos, para consultas com {@code in}. Nunca é vazia: sem
+     * nenhum válido, contém apenas {@link #INVALID}, que não corresponde a nenhum cadastro,
+     * porque nem todo banco aceita {@code in ()}.
+     */
+    public static List<Long> toIsbn13s(Collection<? extends CharSequence> values) {
+        List<Long> isbn13s = values.stream()
+                .map(Isbn::toIsbn13)
+                .filter(isbn13 -> isbn13 != INVALID)
+                .distinct()
+                .collect(Collectors.toList());
+        return isbn13s.isEmpty() ? Collections.singletonList(INVALID) : isbn13s;
+    }
+}
@@ -0,0 +1,111 @@
+package com.plenasoft.libraryapi.lifecycle;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.connector.Connector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Parada sem perder requisições, disparada no fechamento do contexto (SIGTERM), antes de qualquer
+ * bean ser destruído:
+ * <ol>
+ * <li>a readiness sai do ar e o nó espera {@code readiness-delay}, tempo para o balanceador parar
+ * de enviar requisições;</li>
+ * <li>os {@link ShutdownAware} encerram as conexões longas;</li>
+ * <li>o conector do Tomcat para de aceitar conexões e as requisições em andamento (com as suas
+ * transações) têm até {@code timeout} para terminar;</li>
+ * <li>os {@link ShutdownAware} enviam o que ficou em memória.</li>
+ * </ol>
+ * O {@code terminationGracePeriodSeconds} do pod deve ser maior que a soma dos dois prazos.
+ */
+@Slf4j
+@Component
+public class GracefulShutdown implements TomcatConnectorCustomizer, WebServerFactoryCustomizer<TomcatServletWebServerFactory>,
+        ApplicationListener<ContextClosedEvent> {
+
+    private final ReadinessHealthIndicator readiness;
+    private final ObjectProvider<ShutdownAware> shutdownAware;
+    private final Duration readinessDelay;
+    private final Duration timeout;
+
+    private volatile Connector connector;
+
+    public GracefulShutdown(ReadinessHealthIndicator readiness,
+                            ObjectProvider<ShutdownAware> shutdownAware,
+                            @Value("${library.shutdown.readiness-delay:5s}") Duration readinessDelay,
+                            @Value("${library.shutdown.timeout:30s}") Duration timeout) {
+        this.readiness = readiness;
+        this.shutdownAware = shutdownAware;
+        this.readinessDelay = readinessDelay;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        factory.addConnectorCustomizers(this);
+    }
+
+    @Override
+    public void customize(Connector connector) {
+        this.connector = connector;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        if (connector == null || !readiness.isReady()) {
+            return;
+        }
+        log.info("Parada iniciada: readiness fora do ar, aguardando {} antes de drenar as requisições.", readinessDelay);
+        readiness.markNotReady();
+        sleep(readinessDelay);
+
+        List<ShutdownAware> components = shutdownAware.orderedStream().collect(Collectors.toList());
+        components.forEach(component -> run(component::stopAccepting));
+
+        connector.pause();
+        Executor executor = connector.getProtocolHandler().getExecutor();
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    log.warn("{} requisição(ões) ainda em andamento após {}; a parada continua.", pool.getActiveCount(), timeout);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        components.forEach(component -> run(component::flush));
+        log.info("Requisições drenadas; encerrando.");
+    }
+
+    private static void run(Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            log.error("Falha em uma etapa da parada.", e);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
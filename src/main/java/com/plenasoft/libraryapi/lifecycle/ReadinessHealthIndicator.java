@@ -0,0 +1,36 @@
+package com.plenasoft.libraryapi.lifecycle;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Indicador {@code readiness}, usado pelo grupo {@code /actuator/health/readiness}: fica fora de
+ * serviço até a aplicação terminar de subir e de novo assim que a parada começa, para que o
+ * balanceador pare de enviar requisições antes de o nó deixar de aceitá-las.
+ */
+@Component
+public class ReadinessHealthIndicator implements HealthIndicator {
+
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void markReady() {
+        ready = true;
+    }
+
+    public void markNotReady() {
+        ready = false;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public Health health() {
+        return ready ? Health.up().build() : Health.outOfService().build();
+    }
+}
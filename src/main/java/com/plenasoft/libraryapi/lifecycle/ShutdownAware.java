@@ -0,0 +1,23 @@
+package com.plenasoft.libraryapi.lifecycle;
+
+/**
+ * Componentes com trabalho em memória que precisa terminar antes de o nó parar. Chamados pelo
+ * {@link GracefulShutdown}, na ordem da parada.
+ */
+public interface ShutdownAware {
+
+    /**
+     * O nó saiu do balanceador (readiness fora) e não recebe tráfego novo; as requisições em
+     * andamento ainda não terminaram. Conexões longas devem ser encerradas aqui, para que os
+     * clientes reconectem em outro nó.
+     */
+    default void stopAccepting() {
+    }
+
+    /**
+     * As requisições em andamento terminaram (ou o prazo acabou) e os beans ainda estão ativos:
+     * é o momento de enviar o que ficou acumulado em memória.
+     */
+    default void flush() {
+    }
+}
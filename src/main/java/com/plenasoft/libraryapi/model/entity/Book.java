@@ -4,15 +4,25 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.SQLDelete;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table
+@Table(indexes = {
+        @Index(name = "idx_book_branch_isbn", columnList = "branch,isbn"),
+        @Index(name = "idx_book_branch_isbn13", columnList = "branch,isbn13"),
+        @Index(name = "idx_book_enrichment", columnList = "enrichment_status,id"),
+        @Index(name = "idx_book_branch_change_seq", columnList = "branch,change_seq,id")
+})
+@DynamicUpdate
+@SQLDelete(sql = "update book set deleted_at = current_timestamp where id = ? and version = ?")
 public class Book {
 
     @Id
@@ -20,6 +30,13 @@ public class Book {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    /**
+     * Filial dona do exemplar. Lidera os índices para que a busca de uma filial
+     * percorra apenas as suas próprias entradas.
+     */
+    @Column(length = 32, nullable = false)
+    private String branch;
+
     @Column
     private String title;
 
@@ -29,4 +46,91 @@ public class Book {
     @Column
     private String isbn;
 
+    /**
+     * ISBN-13 canônico do isbn acima (ver {@link com.plenasoft.libraryapi.isbn.Isbn}), usado nas
+     * buscas por isbn e na verificação de duplicidade. Nulo quando o isbn não é um ISBN válido,
+     * caso de cadastros anteriores à validação.
+     */
+    @Column(name = "isbn13")
+    private Long isbn13;
+
+    /**
+     * Tipo do exemplar (ex.: REFERENCE, PERIODICAL), usado para escolher a política de empréstimo
+     * ({@code library.loan-policy.book-types}). Nulo usa a política padrão.
+     */
+    @Column(name = "book_type", length = 32)
+    private String type;
+
+    /**
+     * Dados do catálogo externo. Assim como a situação do enriquecimento abaixo, só são gravados
+     * pelo {@code BookEnrichmentWriter}, que não altera a versão, e por isso ficam fora das
+     * alterações do livro pela entidade.
+     */
+    @Column(length = 200, updatable = false)
+    private String publisher;
+
+    @Column(name = "published_year", updatable = false)
+    private Integer publishedYear;
+
+    @Column(name = "cover_url", length = 500, updatable = false)
+    private String coverUrl;
+
+    @Column(name = "page_count", updatable = false)
+    private Integer pageCount;
+
+    /**
+     * Situação do preenchimento dos dados acima a partir do catálogo externo.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "enrichment_status", length = 20, nullable = false, updatable = false)
+    private EnrichmentStatus enrichmentStatus;
+
+    @Column(name = "enrichment_attempts", nullable = false, updatable = false)
+    private int enrichmentAttempts;
+
+    @Column(name = "enriched_at", updatable = false)
+    private LocalDateTime enrichedAt;
+
+    /**
+     * Exclusão lógica: o livro some das consultas do acervo mas continua referenciado pelo histórico de empréstimos.
+     * Não há filtro na entidade, para que o histórico continue carregando o livro pelo id.
+     */
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
+    /**
+     * Posição da última alteração do livro no feed de alterações da filial (inclusive a exclusão).
+     */
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    @Version
+    @Column
+    private Long version;
+
+    /**
+     * Empréstimos em aberto, mantido a cada empréstimo/devolução para que a disponibilidade
+     * seja respondida sem consultar a tabela de empréstimos. Só é alterado pelas atualizações do
+     * repositório: a alteração do livro pela entidade não toca na versão e gravaria um valor desatualizado.
+     */
+    @Column(name = "active_loans", nullable = false, updatable = false)
+    private int activeLoans;
+
+    /**
+     * Shard de onde o livro foi lido, para que as operações seguintes sobre ele sigam para o mesmo banco.
+     */
+    @Transient
+    private Integer shard;
+
+    public boolean isAvailable() {
+        return activeLoans == 0;
+    }
+
+    @PrePersist
+    void prePersist() {
+        if (enrichmentStatus == null) {
+            enrichmentStatus = EnrichmentStatus.PENDING;
+        }
+    }
+
 }
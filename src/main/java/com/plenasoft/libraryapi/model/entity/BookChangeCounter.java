@@ -0,0 +1,32 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Última posição do feed de alterações de livros da filial. A linha fica bloqueada da
+ * alocação até o commit, então as posições ficam visíveis na mesma ordem em que são alocadas.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "book_change_counter")
+public class BookChangeCounter {
+
+    @Id
+    @Column(length = 32)
+    private String branch;
+
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+
+}
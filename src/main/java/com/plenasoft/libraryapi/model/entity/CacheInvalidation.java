@@ -0,0 +1,44 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Lote de invalidações do cache de livros enviado por um nó, lido pelos demais no transporte
+ * {@code jdbc}. Fica no banco padrão (shard 0) e é apagado depois do período de retenção.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "cache_invalidation",
+        indexes = @Index(name = "idx_cache_invalidation_created_at", columnList = "created_at"))
+public class CacheInvalidation {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Nó de origem, que ignora as próprias mensagens.
+     */
+    @Column(length = 36, nullable = false)
+    private String node;
+
+    /**
+     * Ids dos livros separados por vírgula.
+     */
+    @Column(name = "book_ids", length = 8000, nullable = false)
+    private String bookIds;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+}
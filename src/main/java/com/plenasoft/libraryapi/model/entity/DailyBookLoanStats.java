@@ -0,0 +1,41 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "daily_book_loan_stats",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_book_loan_stats", columnNames = {"stat_date", "branch", "id_book"}))
+public class DailyBookLoanStats {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(length = 32, nullable = false)
+    private String branch;
+
+    @JoinColumn(name = "id_book", nullable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Book book;
+
+    @Column(nullable = false)
+    private long loans;
+
+    @Column(nullable = false)
+    private long returns;
+
+}
@@ -0,0 +1,37 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "daily_customer_loan_stats",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_customer_loan_stats", columnNames = {"stat_date", "branch", "id_customer"}))
+public class DailyCustomerLoanStats {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(length = 32, nullable = false)
+    private String branch;
+
+    @Column(name = "id_customer", nullable = false)
+    private Long customerId;
+
+    @Column(nullable = false)
+    private long loans;
+
+}
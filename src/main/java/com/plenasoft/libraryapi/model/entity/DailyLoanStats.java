@@ -0,0 +1,43 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Totais de empréstimos de um dia na filial, mantidos incrementalmente a partir dos eventos de empréstimo.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "daily_loan_stats",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_loan_stats", columnNames = {"stat_date", "branch"}))
+public class DailyLoanStats {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    @Column(length = 32, nullable = false)
+    private String branch;
+
+    @Column(nullable = false)
+    private long loans;
+
+    @Column(nullable = false)
+    private long returns;
+
+    @Column(name = "active_customers", nullable = false)
+    private long activeCustomers;
+
+}
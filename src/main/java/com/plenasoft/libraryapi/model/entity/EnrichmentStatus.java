@@ -0,0 +1,8 @@
+package com.plenasoft.libraryapi.model.entity;
+
+public enum EnrichmentStatus {
+    PENDING,
+    ENRICHED,
+    NOT_FOUND,
+    FAILED
+}
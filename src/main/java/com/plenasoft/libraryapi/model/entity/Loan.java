@@ -5,19 +5,55 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.persistence.*;
 import java.time.LocalDate;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_loan_branch_book_returned", columnList = "branch,id_book,returned"),
+        @Index(name = "idx_loan_branch_loan_date", columnList = "branch,loan_date"),
+        @Index(name = "idx_loan_returned_return_date", columnList = "returned,return_date"),
+        @Index(name = "idx_loan_customer_returned", columnList = "id_customer,returned")
+})
 public class Loan {
 
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    private String customer;
+
+    @Column(length = 32, nullable = false)
+    private String branch;
+
+    /**
+     * Id do {@link Customer}, que fica no shard 0; sem chave estrangeira.
+     */
+    @Column(name = "id_customer")
+    private Long customerId;
+
+    @JoinColumn(name = "id_book")
+    @ManyToOne
     private Book book;
+
+    @Column(name = "loan_date")
     private LocalDate loanDate;
+
+    /**
+     * Definida no empréstimo pela política do tipo do livro e do cliente. Nula em empréstimos
+     * anteriores às políticas, que usam o prazo padrão a partir da data do empréstimo.
+     */
+    @Column(name = "due_date")
+    private LocalDate dueDate;
+
+    @Column
     private boolean returned;
 
+    @Column(name = "return_date")
+    private LocalDate returnDate;
+
 
 }
@@ -0,0 +1,48 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Empréstimos devolvidos há mais tempo que o período de retenção, movidos da tabela de
+ * empréstimos pelo arquivamento. Mantém o id original.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "loan_archive",
+        indexes = @Index(name = "idx_loan_archive_branch_book", columnList = "branch,id_book"))
+public class LoanArchive {
+
+    @Id
+    @Column
+    private Long id;
+
+    @Column(length = 32, nullable = false)
+    private String branch;
+
+    @Column(name = "id_customer")
+    private Long customerId;
+
+    @JoinColumn(name = "id_book")
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Book book;
+
+    @Column(name = "loan_date")
+    private LocalDate loanDate;
+
+    @Column(name = "return_date")
+    private LocalDate returnDate;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+}
@@ -0,0 +1,53 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Multa acumulada de um empréstimo atrasado na data da apuração, gravada pela apuração noturna.
+ * Uma linha por empréstimo e dia; o valor devido é o da apuração mais recente. Referencia o
+ * empréstimo só pelo id, sem chave estrangeira, para não impedir o arquivamento do empréstimo.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "loan_fee",
+        uniqueConstraints = @UniqueConstraint(name = "uk_loan_fee", columnNames = {"assessed_on", "id_loan"}),
+        indexes = @Index(name = "idx_loan_fee_loan", columnList = "id_loan,assessed_on"))
+public class LoanFee {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "id_loan", nullable = false)
+    private Long loanId;
+
+    @Column(length = 32, nullable = false)
+    private String branch;
+
+    @Column(name = "id_customer")
+    private Long customerId;
+
+    @Column(name = "assessed_on", nullable = false)
+    private LocalDate assessedOn;
+
+    @Column(name = "due_date", nullable = false)
+    private LocalDate dueDate;
+
+    @Column(name = "days_overdue", nullable = false)
+    private int daysOverdue;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+}
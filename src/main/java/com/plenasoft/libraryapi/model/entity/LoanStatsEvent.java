@@ -0,0 +1,32 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Evento do outbox já contado nos agregados diários, gravado na mesma transação do incremento.
+ * O relay pode entregar de novo um evento que falhou antes de sair do outbox; a marca impede que
+ * ele seja contado duas vezes. Apagado depois do período de retenção.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "loan_stats_event",
+        indexes = @Index(name = "idx_loan_stats_event_processed_at", columnList = "processed_at"))
+public class LoanStatsEvent {
+
+    @Id
+    @Column(name = "id_event")
+    private Long eventId;
+
+    @Column(name = "processed_at", nullable = false)
+    private LocalDateTime processedAt;
+
+}
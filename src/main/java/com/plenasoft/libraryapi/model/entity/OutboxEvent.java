@@ -0,0 +1,49 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Evento gravado na mesma transação da alteração que o originou e publicado depois pelo
+ * {@link com.plenasoft.libraryapi.service.outbox.OutboxRelay}, na ordem do id.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table
+public class OutboxEvent {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 50, nullable = false)
+    private String aggregateType;
+
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    @Column(length = 50, nullable = false)
+    private String eventType;
+
+    @Column(length = 4000, nullable = false)
+    private String payload;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column
+    private int attempts;
+
+    @Column
+    private LocalDateTime nextAttemptAt;
+
+}
@@ -0,0 +1,49 @@
+package com.plenasoft.libraryapi.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Lugar na fila de espera de um livro emprestado. Quando o empréstimo em aberto é devolvido,
+ * a reserva mais antiga em espera é promovida a um novo empréstimo.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = @Index(name = "idx_reservation_queue", columnList = "id_book,status,id"))
+public class Reservation {
+
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JoinColumn(name = "id_book", nullable = false)
+    @ManyToOne
+    private Book book;
+
+    @Column(name = "id_customer", nullable = false)
+    private Long customerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private ReservationStatus status;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column
+    private LocalDateTime promotedAt;
+
+    @JoinColumn(name = "id_loan")
+    @ManyToOne
+    private Loan loan;
+
+}
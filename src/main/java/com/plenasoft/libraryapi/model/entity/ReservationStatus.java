@@ -0,0 +1,7 @@
+package com.plenasoft.libraryapi.model.entity;
+
+public enum ReservationStatus {
+    WAITING,
+    PROMOTED,
+    CANCELLED
+}
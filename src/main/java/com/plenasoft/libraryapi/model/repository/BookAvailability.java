@@ -0,0 +1,11 @@
+package com.plenasoft.libraryapi.model.repository;
+
+/**
+ * Projeção com apenas as colunas necessárias para responder a disponibilidade de um livro.
+ */
+public interface BookAvailability {
+
+    String getIsbn();
+
+    int getActiveLoans();
+}
@@ -0,0 +1,27 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.BookChangeCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface BookChangeCounterRepository extends JpaRepository<BookChangeCounter, String> {
+
+    /**
+     * @return 1 quando o contador da filial foi incrementado, 0 quando ele ainda não existe
+     */
+    @Modifying
+    @Query("update BookChangeCounter c set c.lastSeq = c.lastSeq + :count where c.branch = :branch")
+    int increment(@Param("branch") String branch, @Param("count") long count);
+
+    /**
+     * Cria o contador da filial; falha com chave duplicada se outra transação já o criou.
+     */
+    @Modifying
+    @Query(value = "insert into book_change_counter (branch, last_seq) values (:branch, 0)", nativeQuery = true)
+    int create(@Param("branch") String branch);
+
+    @Query("select c.lastSeq from BookChangeCounter c where c.branch = :branch")
+    Long findLastSeq(@Param("branch") String branch);
+}
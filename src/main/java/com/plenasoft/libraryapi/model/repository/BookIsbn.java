@@ -0,0 +1,8 @@
+package com.plenasoft.libraryapi.model.repository;
+
+public interface BookIsbn {
+
+    Long getId();
+
+    String getIsbn();
+}
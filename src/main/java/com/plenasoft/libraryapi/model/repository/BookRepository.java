@@ -1,8 +1,155 @@
 package com.plenasoft.libraryapi.model.repository;
 
 import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.EnrichmentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Livros excluídos continuam na tabela porque o histórico de empréstimos e reservas os referencia,
+ * e são carregados normalmente por essas referências. As consultas do acervo os filtram explicitamente.
+ */
 public interface BookRepository extends JpaRepository<Book, Long> {
-    boolean existsByIsbn(String isbn);
+    boolean existsByBranchAndIsbnAndDeletedAtIsNull(String branch, String isbn);
+
+    Optional<Book> findByBranchAndIsbnAndDeletedAtIsNull(String branch, String isbn);
+
+    boolean existsByBranchAndIsbn13AndDeletedAtIsNull(String branch, Long isbn13);
+
+    /**
+     * O primeiro cadastro vence quando cadastros antigos têm o mesmo livro em grafias diferentes.
+     */
+    Optional<Book> findFirstByBranchAndIsbn13AndDeletedAtIsNullOrderById(String branch, Long isbn13);
+
+    Optional<Book> findByIdAndBranchAndDeletedAtIsNull(Long id, String branch);
+
+    boolean existsByIdAndBranchAndDeletedAtIsNull(Long id, String branch);
+
+    /**
+     * Disponibilidade dos livros da filial em qualquer grafia dos isbns: pelo ISBN-13 canônico e,
+     * para cadastros que ainda não o têm, pelo texto (ver {@link com.plenasoft.libraryapi.isbn.Isbn#toIsbn13s}).
+     */
+    @Query("select b.isbn as isbn, b.activeLoans as activeLoans from Book b where b.branch = :branch " +
+            "and (b.isbn13 in :isbn13s or b.isbn in :isbns) and b.deletedAt is null order by b.id")
+    List<BookAvailability> findAvailability(@Param("branch") String branch,
+                                            @Param("isbn13s") Collection<Long> isbn13s,
+                                            @Param("isbns") Collection<String> isbns);
+
+    /**
+     * Livro bloqueado para a transação atual. Serializa a devolução, a reserva e a exclusão do
+     * mesmo livro, que conferem juntos o contador de empréstimos e a fila de reservas.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.id = :id and b.deletedAt is null")
+    Optional<Book> findForUpdateById(@Param("id") Long id);
+
+    /**
+     * Atualiza apenas os campos informados (nulos são mantidos) sem carregar o livro antes.
+     * Quando a versão é informada, a alteração só é aplicada se ela ainda for a versão atual.
+     *
+     * @return quantidade de linhas alteradas (0 quando o livro não existe na filial ou a versão está desatualizada)
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Book b set b.title = coalesce(:title, b.title), b.author = coalesce(:author, b.author), " +
+            "b.version = b.version + 1 " +
+            "where b.id = :id and b.branch = :branch and b.deletedAt is null and b.version = coalesce(:version, b.version)")
+    int patch(@Param("id") Long id,
+              @Param("branch") String branch,
+              @Param("title") String title,
+              @Param("author") String author,
+              @Param("version") Long version);
+
+    /**
+     * Registra a posição da última alteração do livro, inclusive quando ele já foi excluído.
+     */
+    @Modifying
+    @Query(value = "update book set change_seq = :changeSeq where id = :id", nativeQuery = true)
+    int updateChangeSeq(@Param("id") Long id, @Param("changeSeq") Long changeSeq);
+
+    /**
+     * Próximas alterações da filial depois da posição (changeSeq, id) informada, pelo índice
+     * (branch, change_seq, id). Inclui os livros excluídos, que voltam com {@code deletedAt} preenchido.
+     */
+    @Query(value = "select * from book where branch = :branch and change_seq >= :afterSeq " +
+            "and (change_seq > :afterSeq or id > :afterId) order by change_seq, id limit :limit",
+            nativeQuery = true)
+    List<Book> findChanges(@Param("branch") String branch,
+                           @Param("afterSeq") Long afterSeq,
+                           @Param("afterId") Long afterId,
+                           @Param("limit") int limit);
+
+    /**
+     * Reserva o livro para um novo empréstimo somente se não houver empréstimo em aberto.
+     *
+     * @return 1 quando o livro foi reservado, 0 quando já está emprestado
+     */
+    @Modifying
+    @Query("update Book b set b.activeLoans = b.activeLoans + 1 where b.id = :id and b.activeLoans = 0 and b.deletedAt is null")
+    int incrementActiveLoans(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Book b set b.activeLoans = b.activeLoans - 1 where b.id = :id and b.activeLoans > 0")
+    int decrementActiveLoans(@Param("id") Long id);
+
+    /**
+     * Livros da filial com os isbns informados, em qualquer grafia, bloqueados para a transação
+     * atual. O bloqueio segue a ordem do id, então dois lotes com livros em comum não se travam
+     * mutuamente.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.branch = :branch and (b.isbn13 in :isbn13s or b.isbn in :isbns) " +
+            "and b.deletedAt is null order by b.id")
+    List<Book> findForUpdateByIsbns(@Param("branch") String branch,
+                                    @Param("isbn13s") Collection<Long> isbn13s,
+                                    @Param("isbns") Collection<String> isbns);
+
+    /**
+     * Reserva de uma vez os livros de um lote, já bloqueados e conferidos como disponíveis.
+     */
+    @Modifying
+    @Query("update Book b set b.activeLoans = b.activeLoans + 1 where b.id in :ids and b.activeLoans = 0 and b.deletedAt is null")
+    int incrementActiveLoansIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update Book b set b.activeLoans = b.activeLoans - 1 where b.id in :ids and b.activeLoans > 0")
+    int decrementActiveLoansIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Próxima página de livros na situação informada, pelo índice (enrichment_status, id).
+     */
+    @Query("select b.id as id, b.isbn as isbn from Book b " +
+            "where b.enrichmentStatus = :status and b.deletedAt is null and b.id > :afterId order by b.id")
+    List<BookIsbn> findByEnrichmentStatus(@Param("status") EnrichmentStatus status,
+                                          @Param("afterId") Long afterId,
+                                          Pageable pageable);
+
+    /**
+     * Próxima página de ids depois do id informado, inclusive de livros excluídos.
+     */
+    @Query("select b.id from Book b where b.id > :afterId order by b.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Corrige o contador de empréstimos em aberto dos livros da faixa de ids informada.
+     *
+     * @return quantidade de livros corrigidos
+     */
+    @Modifying
+    @Query(value = "update book set active_loans = " +
+            "(select count(*) from loan l where l.branch = book.branch and l.id_book = book.id and l.returned = false) " +
+            "where id between :fromId and :toId and active_loans <> " +
+            "(select count(*) from loan l where l.branch = book.branch and l.id_book = book.id and l.returned = false)",
+            nativeQuery = true)
+    int reconcileActiveLoans(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
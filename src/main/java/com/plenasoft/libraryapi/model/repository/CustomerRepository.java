@@ -0,0 +1,22 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.Customer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+    Optional<Customer> findByName(String name);
+
+    /**
+     * Bloqueia o cliente até o fim da transação atual, para que os empréstimos dele sejam contados um de cada vez.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Customer c where c.id = :id")
+    Optional<Customer> findForUpdateById(@Param("id") Long id);
+}
@@ -0,0 +1,55 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.DailyBookLoanStats;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyBookLoanStatsRepository extends JpaRepository<DailyBookLoanStats, Long> {
+
+    @Modifying
+    @Query("update DailyBookLoanStats s set s.loans = s.loans + :loans, s.returns = s.returns + :returns " +
+            "where s.statDate = :date and s.branch = :branch and s.book.id = :bookId")
+    int increment(@Param("branch") String branch,
+                  @Param("date") LocalDate date,
+                  @Param("bookId") Long bookId,
+                  @Param("loans") long loans,
+                  @Param("returns") long returns);
+
+    @Query("select b.id as bookId, b.title as title, b.isbn as isbn, sum(s.loans) as loans " +
+            "from DailyBookLoanStats s join s.book b " +
+            "where s.branch = :branch and s.statDate between :from and :to " +
+            "group by b.id, b.title, b.isbn " +
+            "order by sum(s.loans) desc, b.id")
+    List<TopBook> findTopBooks(@Param("branch") String branch,
+                               @Param("from") LocalDate from,
+                               @Param("to") LocalDate to,
+                               Pageable pageable);
+
+    @Modifying
+    @Query("delete from DailyBookLoanStats s where s.statDate between :from and :to")
+    int deleteByStatDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "insert into daily_book_loan_stats (stat_date, branch, id_book, loans, returns) " +
+            "select e.stat_date, e.branch, e.id_book, sum(e.loans), sum(e.returns) from (" +
+            "select loan_date as stat_date, branch, id_book, 1 as loans, 0 as returns from loan " +
+            "where loan_date between :from and :to " +
+            "union all " +
+            "select return_date as stat_date, branch, id_book, 0 as loans, 1 as returns from loan " +
+            "where return_date between :from and :to " +
+            "union all " +
+            "select loan_date as stat_date, branch, id_book, 1 as loans, 0 as returns from loan_archive " +
+            "where loan_date between :from and :to " +
+            "union all " +
+            "select return_date as stat_date, branch, id_book, 0 as loans, 1 as returns from loan_archive " +
+            "where return_date between :from and :to" +
+            ") e group by e.stat_date, e.branch, e.id_book",
+            nativeQuery = true)
+    int backfill(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,43 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.DailyCustomerLoanStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyCustomerLoanStatsRepository extends JpaRepository<DailyCustomerLoanStats, Long> {
+
+    @Modifying
+    @Query("update DailyCustomerLoanStats s set s.loans = s.loans + :loans " +
+            "where s.statDate = :date and s.branch = :branch and s.customerId = :customerId")
+    int increment(@Param("branch") String branch,
+                  @Param("date") LocalDate date,
+                  @Param("customerId") Long customerId,
+                  @Param("loans") long loans);
+
+    @Query("select count(distinct s.customerId) from DailyCustomerLoanStats s " +
+            "where s.branch = :branch and s.statDate between :from and :to")
+    long countDistinctCustomers(@Param("branch") String branch, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("select distinct s.customerId from DailyCustomerLoanStats s " +
+            "where s.branch = :branch and s.statDate between :from and :to")
+    List<Long> findDistinctCustomers(@Param("branch") String branch, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("delete from DailyCustomerLoanStats s where s.statDate between :from and :to")
+    int deleteByStatDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "insert into daily_customer_loan_stats (stat_date, branch, id_customer, loans) " +
+            "select l.loan_date, l.branch, l.id_customer, count(*) from (" +
+            "select loan_date, branch, id_customer from loan where loan_date between :from and :to " +
+            "union all " +
+            "select loan_date, branch, id_customer from loan_archive where loan_date between :from and :to" +
+            ") l group by l.loan_date, l.branch, l.id_customer",
+            nativeQuery = true)
+    int backfill(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,40 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.DailyLoanStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyLoanStatsRepository extends JpaRepository<DailyLoanStats, Long> {
+
+    List<DailyLoanStats> findByBranchAndStatDateBetweenOrderByStatDate(String branch, LocalDate from, LocalDate to);
+
+    @Modifying
+    @Query("update DailyLoanStats s set s.loans = s.loans + :loans, s.returns = s.returns + :returns, " +
+            "s.activeCustomers = s.activeCustomers + :customers where s.statDate = :date and s.branch = :branch")
+    int increment(@Param("branch") String branch,
+                  @Param("date") LocalDate date,
+                  @Param("loans") long loans,
+                  @Param("returns") long returns,
+                  @Param("customers") long customers);
+
+    @Modifying
+    @Query("delete from DailyLoanStats s where s.statDate between :from and :to")
+    int deleteByStatDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Recalcula os totais diários de cada filial na faixa a partir das tabelas de empréstimos já
+     * agregadas por livro e por cliente (que devem ter sido recalculadas antes).
+     */
+    @Modifying
+    @Query(value = "insert into daily_loan_stats (stat_date, branch, loans, returns, active_customers) " +
+            "select b.stat_date, b.branch, sum(b.loans), sum(b.returns), " +
+            "(select count(*) from daily_customer_loan_stats c where c.stat_date = b.stat_date and c.branch = b.branch) " +
+            "from daily_book_loan_stats b where b.stat_date between :from and :to group by b.stat_date, b.branch",
+            nativeQuery = true)
+    int backfill(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
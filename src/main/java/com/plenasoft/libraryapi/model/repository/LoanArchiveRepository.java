@@ -0,0 +1,24 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.LoanArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface LoanArchiveRepository extends JpaRepository<LoanArchive, Long> {
+
+    /**
+     * Copia os empréstimos informados para o arquivo, no próprio banco.
+     *
+     * @return quantidade de empréstimos copiados
+     */
+    @Modifying
+    @Query(value = "insert into loan_archive (id, branch, id_customer, id_book, loan_date, return_date, archived_at) " +
+            "select id, branch, id_customer, id_book, loan_date, return_date, :archivedAt from loan where id in (:ids)",
+            nativeQuery = true)
+    int archive(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+}
@@ -0,0 +1,18 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.LoanFee;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface LoanFeeRepository extends JpaRepository<LoanFee, Long> {
+
+    /**
+     * A multa devida hoje é a da apuração mais recente do empréstimo.
+     */
+    Optional<LoanFee> findFirstByLoanIdOrderByAssessedOnDesc(Long loanId);
+
+    List<LoanFee> findByAssessedOn(LocalDate assessedOn);
+}
@@ -0,0 +1,56 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.Loan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface LoanRepository extends JpaRepository<Loan, Long> {
+
+    Optional<Loan> findByIdAndBranch(Long id, String branch);
+
+    /**
+     * Empréstimos em aberto dos livros informados. Cada livro tem no máximo um, então o livro
+     * identifica o empréstimo recém-inserido por um lote.
+     */
+    @Query("select l.id as id, l.book.id as bookId from Loan l " +
+            "where l.branch = :branch and l.book.id in :bookIds and l.returned = false")
+    List<OpenLoan> findOpenLoans(@Param("branch") String branch, @Param("bookIds") Collection<Long> bookIds);
+
+    /**
+     * Empréstimos em aberto dos livros da filial, com os isbns em qualquer grafia: pelo ISBN-13
+     * canônico e, para cadastros que ainda não o têm, pelo texto.
+     */
+    @Query("select l from Loan l join fetch l.book b where l.branch = :branch " +
+            "and (b.isbn13 in :isbn13s or b.isbn in :isbns) and l.returned = false order by l.id")
+    List<Loan> findOpenByIsbns(@Param("branch") String branch,
+                               @Param("isbn13s") Collection<Long> isbn13s,
+                               @Param("isbns") Collection<String> isbns);
+
+    /**
+     * Empréstimos em aberto do cliente no shard, contados pelo índice (cliente, devolvido).
+     */
+    @Query("select count(l) from Loan l where l.customerId = :customerId and l.returned = false")
+    long countOpenByCustomerId(@Param("customerId") Long customerId);
+
+    @Query("select l.id from Loan l where l.returned = true and l.returnDate < :cutoff order by l.id")
+    List<Long> findArchivableIds(@Param("cutoff") LocalDate cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("delete from Loan l where l.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * @return 1 quando o empréstimo foi devolvido, 0 quando já estava devolvido
+     */
+    @Modifying
+    @Query("update Loan l set l.returned = true, l.returnDate = :returnDate where l.id = :id and l.returned = false")
+    int markReturned(@Param("id") Long id, @Param("returnDate") LocalDate returnDate);
+}
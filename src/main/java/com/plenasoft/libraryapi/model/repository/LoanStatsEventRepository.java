@@ -0,0 +1,18 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.LoanStatsEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface LoanStatsEventRepository extends JpaRepository<LoanStatsEvent, Long> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from LoanStatsEvent e where e.processedAt < :before")
+    int deleteByProcessedAtBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,11 @@
+package com.plenasoft.libraryapi.model.repository;
+
+/**
+ * Projeção com o id do empréstimo em aberto e o livro emprestado.
+ */
+public interface OpenLoan {
+
+    Long getId();
+
+    Long getBookId();
+}
@@ -0,0 +1,54 @@
+package com.plenasoft.libraryapi.model.repository;
+
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.model.entity.ReservationStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+
+    Optional<Reservation> findByIdAndBookBranch(Long id, String branch);
+
+    boolean existsByBookAndCustomerIdAndStatus(Book book, Long customerId, ReservationStatus status);
+
+    /**
+     * Próxima reserva da fila, bloqueada para a transação atual. O timeout -2 é o SKIP LOCKED
+     * do Hibernate: em bancos que suportam, linhas já reivindicadas por outro nó são puladas
+     * em vez de aguardadas; nos demais vira um FOR UPDATE comum.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    @Query("select r from Reservation r where r.book.id = :bookId and r.status = :status and r.id > :afterId order by r.id")
+    List<Reservation> findNextForUpdate(@Param("bookId") Long bookId,
+                                        @Param("status") ReservationStatus status,
+                                        @Param("afterId") Long afterId,
+                                        Pageable pageable);
+
+    /**
+     * Livros, entre os informados, que têm alguém na fila com a situação informada.
+     */
+    @Query("select distinct r.book.id from Reservation r where r.book.id in :bookIds and r.status = :status")
+    List<Long> findQueuedBookIds(@Param("bookIds") Collection<Long> bookIds, @Param("status") ReservationStatus status);
+
+    @Query("select count(r) from Reservation r where r.book.id = :bookId and r.status = :status and r.id < :id")
+    long countAhead(@Param("bookId") Long bookId, @Param("status") ReservationStatus status, @Param("id") Long id);
+
+    /**
+     * Desfaz o vínculo das reservas promovidas com empréstimos que estão sendo arquivados.
+     */
+    @Modifying
+    @Query("update Reservation r set r.loan = null where r.loan.id in :loanIds")
+    int unlinkLoans(@Param("loanIds") Collection<Long> loanIds);
+
+    @Modifying
+    @Query("update Reservation r set r.status = :to where r.id = :id and r.status = :from")
+    int changeStatus(@Param("id") Long id, @Param("from") ReservationStatus from, @Param("to") ReservationStatus to);
+}
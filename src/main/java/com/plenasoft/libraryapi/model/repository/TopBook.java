@@ -0,0 +1,12 @@
+package com.plenasoft.libraryapi.model.repository;
+
+public interface TopBook {
+
+    Long getBookId();
+
+    String getTitle();
+
+    String getIsbn();
+
+    Long getLoans();
+}
@@ -1,7 +1,11 @@
 package com.plenasoft.libraryapi.service;
 
 import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.repository.BookAvailability;
+import com.plenasoft.libraryapi.service.changes.BookChangePage;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface BookService {
@@ -14,5 +18,14 @@ public interface BookService {
 
     Book update(Book book);
 
+    boolean patch(Book book);
+
     Optional<Book> getBookByIsbn(String isbn);
+
+    List<BookAvailability> getAvailability(Collection<String> isbns);
+
+    /**
+     * Alterações dos livros da filial (inclusões, alterações e exclusões) depois da posição informada.
+     */
+    BookChangePage getChanges(String since, int limit);
 }
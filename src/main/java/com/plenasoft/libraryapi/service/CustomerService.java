@@ -0,0 +1,25 @@
+package com.plenasoft.libraryapi.service;
+
+import com.plenasoft.libraryapi.model.entity.Customer;
+
+import java.util.Optional;
+
+public interface CustomerService {
+
+    /**
+     * Cliente com o nome informado, cadastrado na primeira vez que aparece.
+     */
+    Customer getOrCreate(String name);
+
+    Optional<Customer> getById(Long id);
+
+    Optional<Customer> getByName(String name);
+
+    /**
+     * Empréstimos que o cliente ainda pode fazer pelo limite da sua política. Deve ser chamado na
+     * transação do empréstimo: com um único shard, o cliente fica bloqueado até o commit e um
+     * empréstimo concorrente do mesmo cliente espera e já conta este. Com vários shards o cliente
+     * está em outro banco e o limite é aproximado: empréstimos simultâneos podem ultrapassá-lo.
+     */
+    int getRemainingLoans(Customer customer);
+}
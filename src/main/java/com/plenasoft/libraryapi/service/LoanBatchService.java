@@ -0,0 +1,16 @@
+package com.plenasoft.libraryapi.service;
+
+import com.plenasoft.libraryapi.service.batch.LoanBatchItem;
+
+import java.util.List;
+
+/**
+ * Empréstimos e devoluções em lote, para os terminais de autoatendimento. Cada livro recebe o
+ * seu resultado: um livro recusado não impede os demais do lote.
+ */
+public interface LoanBatchService {
+
+    List<LoanBatchItem> checkout(String customer, List<String> isbns);
+
+    List<LoanBatchItem> returnAll(List<String> isbns);
+}
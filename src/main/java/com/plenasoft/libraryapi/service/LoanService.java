@@ -3,6 +3,12 @@ package com.plenasoft.libraryapi.service;
 import com.plenasoft.libraryapi.api.dto.LoanDTO;
 import com.plenasoft.libraryapi.model.entity.Loan;
 
+import java.util.Optional;
+
 public interface LoanService {
     Loan save(Loan loan);
+
+    Optional<Loan> getById(Long id);
+
+    Loan returnLoan(Loan loan);
 }
@@ -0,0 +1,32 @@
+package com.plenasoft.libraryapi.service;
+
+import com.plenasoft.libraryapi.model.entity.DailyLoanStats;
+import com.plenasoft.libraryapi.model.repository.TopBook;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Os agregados são mantidos por filial; as consultas respondem pela filial da requisição.
+ * As escritas recebem o id do evento do outbox e ignoram um evento já contado.
+ */
+public interface LoanStatsService {
+
+    void recordLoan(Long eventId, String branch, LocalDate date, Long bookId, Long customerId);
+
+    void recordReturn(Long eventId, String branch, LocalDate date, Long bookId);
+
+    /**
+     * Apaga, em todos os shards, as marcas de eventos contados antes do instante informado.
+     *
+     * @return quantidade de marcas apagadas
+     */
+    int purgeProcessedEvents(LocalDateTime before);
+
+    List<DailyLoanStats> getLoansPerDay(LocalDate from, LocalDate to);
+
+    List<TopBook> getTopBooks(LocalDate from, LocalDate to, int limit);
+
+    long countActiveCustomers(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,15 @@
+package com.plenasoft.libraryapi.service;
+
+import java.util.Map;
+
+public interface OutboxService {
+
+    void append(String aggregateType, Long aggregateId, String eventType, Object payload);
+
+    /**
+     * Grava um evento por agregado, na ordem do mapa, com um único batch JDBC.
+     *
+     * @param payloads conteúdo de cada evento pelo id do agregado
+     */
+    void appendAll(String aggregateType, String eventType, Map<Long, ?> payloads);
+}
@@ -0,0 +1,26 @@
+package com.plenasoft.libraryapi.service;
+
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+public interface ReservationService {
+
+    Reservation reserve(Reservation reservation);
+
+    Optional<Reservation> getById(Long id);
+
+    long getPosition(Reservation reservation);
+
+    void cancel(Reservation reservation);
+
+    Optional<Reservation> promoteNext(Book book);
+
+    /**
+     * Livros, entre os informados, com alguém esperando na fila.
+     */
+    Set<Long> getQueuedBooks(Collection<Long> bookIds);
+}
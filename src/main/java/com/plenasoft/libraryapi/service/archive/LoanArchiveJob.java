@@ -0,0 +1,99 @@
+package com.plenasoft.libraryapi.service.archive;
+
+import com.plenasoft.libraryapi.model.repository.LoanArchiveRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.model.repository.ReservationRepository;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Move para {@code loan_archive} os empréstimos devolvidos há mais de {@code retention-months} meses,
+ * em blocos de no máximo {@code chunk-size} empréstimos (uma transação por bloco), para que a tabela
+ * de empréstimos guarde apenas o que ainda é consultado. Empréstimos devolvidos não mudam mais,
+ * então a cópia não disputa com as requisições.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class LoanArchiveJob {
+
+    private final LoanRepository loanRepository;
+    private final LoanArchiveRepository archiveRepository;
+    private final ReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final int retentionMonths;
+    private final int chunkSize;
+
+    public LoanArchiveJob(LoanRepository loanRepository,
+                          LoanArchiveRepository archiveRepository,
+                          ReservationRepository reservationRepository,
+                          PlatformTransactionManager transactionManager,
+                          ShardRouter shardRouter,
+                          @Value("${library.loan-archive.retention-months:12}") int retentionMonths,
+                          @Value("${library.loan-archive.chunk-size:500}") int chunkSize) {
+        this.loanRepository = loanRepository;
+        this.archiveRepository = archiveRepository;
+        this.reservationRepository = reservationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.retentionMonths = retentionMonths;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${library.loan-archive.cron:0 30 2 * * *}")
+    public void scheduledArchive() {
+        try {
+            int archived = archive();
+            if (archived > 0) {
+                log.info("{} empréstimo(s) arquivado(s).", archived);
+            }
+        } catch (RuntimeException e) {
+            log.error("Falha ao arquivar empréstimos.", e);
+        }
+    }
+
+    /**
+     * @return quantidade de empréstimos arquivados
+     */
+    public int archive() {
+        LocalDate cutoff = LocalDate.now().minusMonths(retentionMonths);
+        int archived = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            archived += shardRouter.onShard(shard, () -> archiveShard(cutoff));
+        }
+        return archived;
+    }
+
+    private int archiveShard(LocalDate cutoff) {
+        int archived = 0;
+        int chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> archiveChunk(cutoff));
+            archived += chunk;
+        } while (chunk == chunkSize);
+        return archived;
+    }
+
+    private int archiveChunk(LocalDate cutoff) {
+        List<Long> ids = loanRepository.findArchivableIds(cutoff, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        archiveRepository.archive(ids, LocalDateTime.now());
+        reservationRepository.unlinkLoans(ids);
+        loanRepository.deleteByIdIn(ids);
+        return ids.size();
+    }
+}
@@ -0,0 +1,317 @@
+package com.plenasoft.libraryapi.service.availability;
+
+import com.plenasoft.libraryapi.api.dto.BookAvailabilityDTO;
+import com.plenasoft.libraryapi.isbn.Isbn;
+import com.plenasoft.libraryapi.lifecycle.ShutdownAware;
+import com.plenasoft.libraryapi.service.BookService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entrega as mudanças de disponibilidade aos assinantes do stream SSE.
+ * <p>
+ * Quem publica (a transação do empréstimo, já confirmada) só enfileira o evento na fila limitada de
+ * cada assinante interessado, encontrado pelo índice (filial, isbn canônico), e nunca espera pela
+ * rede. Cada assinante recebe o isbn na grafia em que o pediu.
+ * Um pool pequeno de threads esvazia as filas; cada assinante é esvaziado por no máximo uma thread
+ * por vez. Assinante cuja fila enche é desconectado (o EventSource do navegador reconecta e recebe
+ * a situação atual de novo). O heartbeat é uma única tarefa periódica que enfileira um comentário
+ * em cada conexão, sem thread por conexão.
+ */
+@Slf4j
+@Component
+public class AvailabilityBroadcaster implements DisposableBean, ShutdownAware {
+
+    static final String EVENT_NAME = "availability";
+
+    /**
+     * Marca de heartbeat na fila; comparada por referência.
+     */
+    private static final BookAvailabilityDTO HEARTBEAT = new BookAvailabilityDTO();
+
+    private final BookService bookService;
+    private final long timeoutMillis;
+    private final int queueCapacity;
+    private final int maxSubscribers;
+    private final ExecutorService senders;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, Set<Subscription>> allIsbnsByBranch = new ConcurrentHashMap<>();
+    private final ConcurrentMap<IsbnKey, Set<Subscription>> byIsbn = new ConcurrentHashMap<>();
+    private final Counter evicted;
+
+    public AvailabilityBroadcaster(BookService bookService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${library.availability.stream.timeout:1800000}") long timeoutMillis,
+                                   @Value("${library.availability.stream.queue-capacity:64}") int queueCapacity,
+                                   @Value("${library.availability.stream.max-subscribers:10000}") int maxSubscribers,
+                                   @Value("${library.availability.stream.sender-threads:4}") int senderThreads) {
+        this.bookService = bookService;
+        this.timeoutMillis = timeoutMillis;
+        this.queueCapacity = queueCapacity;
+        this.maxSubscribers = maxSubscribers;
+        this.senders = Executors.newFixedThreadPool(Math.max(senderThreads, 1), senderThreadFactory());
+
+        meterRegistry.gaugeCollectionSize("library.availability.stream.subscribers", Collections.emptyList(), subscriptions);
+        this.evicted = meterRegistry.counter("library.availability.stream.evicted");
+    }
+
+    /**
+     * Registra a conexão e, quando há filtro de isbns, enfileira a situação atual desses livros.
+     * O registro vem antes da consulta para que nenhuma mudança confirmada entre as duas se perca;
+     * a situação consultada de um isbn que já recebeu uma mudança nesse meio tempo pode estar
+     * desatualizada e é descartada, para não chegar ao cliente depois da mudança.
+     *
+     * @return vazio quando o limite de conexões foi atingido
+     */
+    public Optional<SseEmitter> subscribe(String branch, Collection<String> isbns) {
+        if (subscriptions.size() >= maxSubscribers) {
+            return Optional.empty();
+        }
+        SseEmitter emitter = newEmitter(timeoutMillis);
+        Map<String, String> isbnsByKey = new LinkedHashMap<>();
+        isbns.forEach(isbn -> isbnsByKey.putIfAbsent(Isbn.key(isbn), isbn));
+        Subscription subscription = new Subscription(emitter, branch, isbnsByKey, queueCapacity);
+        emitter.onCompletion(() -> unregister(subscription));
+        emitter.onTimeout(() -> unregister(subscription));
+        emitter.onError(error -> unregister(subscription));
+        register(subscription);
+
+        if (!subscription.isbns.isEmpty()) {
+            bookService.getAvailability(subscription.isbns.values()).forEach(availability -> {
+                synchronized (subscription) {
+                    if (!subscription.changed.contains(Isbn.key(availability.getIsbn()))) {
+                        offer(subscription, toDTO(availability.getIsbn(), availability.getActiveLoans()));
+                    }
+                }
+            });
+        }
+        return Optional.of(emitter);
+    }
+
+    @TransactionalEventListener
+    public void onAvailabilityChanged(BookAvailabilityChangedEvent event) {
+        offerAll(allIsbnsByBranch.get(event.getBranch()), toDTO(event.getIsbn(), event.getActiveLoans()));
+        String key = Isbn.key(event.getIsbn());
+        Set<Subscription> targets = byIsbn.get(new IsbnKey(event.getBranch(), key));
+        if (targets != null) {
+            targets.forEach(subscription -> {
+                synchronized (subscription) {
+                    subscription.changed.add(key);
+                    offer(subscription, toDTO(subscription.isbns.get(key), event.getActiveLoans()));
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library.availability.stream.heartbeat-interval:15000}")
+    public void heartbeat() {
+        subscriptions.forEach(subscription -> offer(subscription, HEARTBEAT));
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Encerra os streams assim que o nó sai do balanceador; o EventSource reconecta em outro nó.
+     */
+    @Override
+    public void stopAccepting() {
+        subscriptions.forEach(subscription -> close(subscription));
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.forEach(subscription -> close(subscription));
+        senders.shutdown();
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void offerAll(Set<Subscription> targets, BookAvailabilityDTO availability) {
+        if (targets != null) {
+            targets.forEach(subscription -> offer(subscription, availability));
+        }
+    }
+
+    private void offer(Subscription subscription, BookAvailabilityDTO availability) {
+        if (subscription.closed) {
+            return;
+        }
+        if (!subscription.queue.offer(availability)) {
+            evicted.increment();
+            log.debug("Assinante lento desconectado do stream de disponibilidade (filial {}).", subscription.branch);
+            close(subscription);
+            return;
+        }
+        scheduleDrain(subscription);
+    }
+
+    private void scheduleDrain(Subscription subscription) {
+        if (subscription.draining.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> drain(subscription));
+            } catch (RejectedExecutionException e) {
+                subscription.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        while (true) {
+            BookAvailabilityDTO availability = subscription.queue.poll();
+            if (availability == null) {
+                subscription.draining.set(false);
+                // outro evento pode ter chegado entre o poll e a liberação
+                if (subscription.queue.isEmpty() || !subscription.draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                if (availability == HEARTBEAT) {
+                    subscription.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    subscription.emitter.send(SseEmitter.event().name(EVENT_NAME).data(availability, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // conexão encerrada pelo cliente ou pelo container
+                unregister(subscription);
+                subscription.queue.clear();
+                subscription.draining.set(false);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove dos índices na hora e encerra a resposta em uma thread do pool, para não
+     * bloquear quem publicou caso o envio anterior ainda esteja preso na rede.
+     */
+    private void close(Subscription subscription) {
+        unregister(subscription);
+        subscription.queue.clear();
+        try {
+            senders.execute(subscription.emitter::complete);
+        } catch (RejectedExecutionException e) {
+            subscription.emitter.complete();
+        }
+    }
+
+    private void register(Subscription subscription) {
+        subscriptions.add(subscription);
+        if (subscription.isbns.isEmpty()) {
+            allIsbnsByBranch.compute(subscription.branch, (branch, targets) -> add(targets, subscription));
+        } else {
+            subscription.isbns.keySet().forEach(isbn ->
+                    byIsbn.compute(new IsbnKey(subscription.branch, isbn), (key, targets) -> add(targets, subscription)));
+        }
+    }
+
+    private void unregister(Subscription subscription) {
+        subscription.closed = true;
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        if (subscription.isbns.isEmpty()) {
+            allIsbnsByBranch.computeIfPresent(subscription.branch, (branch, targets) -> remove(targets, subscription));
+        } else {
+            subscription.isbns.keySet().forEach(isbn ->
+                    byIsbn.computeIfPresent(new IsbnKey(subscription.branch, isbn), (key, targets) -> remove(targets, subscription)));
+        }
+    }
+
+    private static Set<Subscription> add(Set<Subscription> targets, Subscription subscription) {
+        Set<Subscription> result = targets != null ? targets : ConcurrentHashMap.newKeySet();
+        result.add(subscription);
+        return result;
+    }
+
+    private static Set<Subscription> remove(Set<Subscription> targets, Subscription subscription) {
+        targets.remove(subscription);
+        return targets.isEmpty() ? null : targets;
+    }
+
+    private static BookAvailabilityDTO toDTO(String isbn, int activeLoans) {
+        return BookAvailabilityDTO.builder()
+                .isbn(isbn)
+                .activeLoans(activeLoans)
+                .available(activeLoans == 0)
+                .build();
+    }
+
+    private static ThreadFactory senderThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "availability-stream-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Filial e chave canônica do isbn ({@link Isbn#key}).
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class IsbnKey {
+        private final String branch;
+        private final String isbn;
+    }
+
+    private static class Subscription {
+
+        private final SseEmitter emitter;
+        private final String branch;
+        /**
+         * Isbns pedidos, pela chave canônica; duas grafias do mesmo livro contam uma vez só.
+         */
+        private final Map<String, String> isbns;
+        private final Queue<BookAvailabilityDTO> queue;
+        /**
+         * Chaves dos isbns que já receberam uma mudança, protegidas pelo monitor da assinatura.
+         */
+        private final Set<String> changed = new HashSet<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscription(SseEmitter emitter, String branch, Map<String, String> isbns, int queueCapacity) {
+            this.emitter = emitter;
+            this.branch = branch;
+            this.isbns = isbns;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.plenasoft.libraryapi.service.availability;
+
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Recalcula o contador de empréstimos em aberto dos livros a partir da tabela de empréstimos,
+ * corrigindo divergências. Percorre os livros em blocos de {@code chunk-size} livros por id, uma
+ * transação por bloco, para não manter a tabela inteira bloqueada. Com sharding, os shards são
+ * percorridos um a um.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class AvailabilityReconciler {
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final int chunkSize;
+
+    public AvailabilityReconciler(BookRepository bookRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  ShardRouter shardRouter,
+                                  @Value("${library.availability.reconcile.chunk-size:1000}") int chunkSize) {
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${library.availability.reconcile.cron:0 0 3 * * *}")
+    public void scheduledReconcile() {
+        try {
+            int repaired = reconcile();
+            if (repaired > 0) {
+                log.warn("Disponibilidade corrigida em {} livro(s).", repaired);
+            }
+        } catch (RuntimeException e) {
+            log.error("Falha ao reconciliar a disponibilidade dos livros.", e);
+        }
+    }
+
+    /**
+     * @return quantidade de livros cujo contador foi corrigido
+     */
+    public int reconcile() {
+        int repaired = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            repaired += shardRouter.onShard(shard, this::reconcileShard);
+        }
+        return repaired;
+    }
+
+    // os blocos seguem os ids existentes: livros movidos pelo rebalanceamento mantêm o id de
+    // outra faixa, então os ids de um shard podem estar muito distantes entre si
+    private int reconcileShard() {
+        int repaired = 0;
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = bookRepository.findIdsAfter(lastId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                return repaired;
+            }
+            long from = lastId + 1;
+            long to = ids.get(ids.size() - 1);
+            repaired += transactionTemplate.execute(status -> bookRepository.reconcileActiveLoans(from, to));
+            lastId = to;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.plenasoft.libraryapi.service.availability;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Publicado pelo serviço de empréstimos dentro da transação; entregue aos assinantes só depois do commit.
+ */
+@Data
+@AllArgsConstructor
+public class BookAvailabilityChangedEvent {
+
+    private String branch;
+    private String isbn;
+    private int activeLoans;
+}
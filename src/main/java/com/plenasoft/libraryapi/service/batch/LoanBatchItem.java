@@ -0,0 +1,21 @@
+package com.plenasoft.libraryapi.service.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Resultado de um livro do lote, na mesma posição em que o isbn foi enviado.
+ */
+@Data
+@AllArgsConstructor
+public class LoanBatchItem {
+
+    private String isbn;
+
+    private LoanBatchStatus status;
+
+    /**
+     * Empréstimo criado ou devolvido; nulo quando o item foi recusado.
+     */
+    private Long loanId;
+}
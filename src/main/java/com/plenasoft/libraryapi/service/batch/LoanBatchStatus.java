@@ -0,0 +1,39 @@
+package com.plenasoft.libraryapi.service.batch;
+
+public enum LoanBatchStatus {
+
+    /**
+     * Empréstimo criado.
+     */
+    CREATED,
+
+    /**
+     * Empréstimo devolvido.
+     */
+    RETURNED,
+
+    /**
+     * Nenhum livro da filial com o isbn.
+     */
+    NOT_FOUND,
+
+    /**
+     * Livro já emprestado.
+     */
+    UNAVAILABLE,
+
+    /**
+     * Livro disponível, mas o cliente chegou ao limite de empréstimos em aberto.
+     */
+    LIMIT_REACHED,
+
+    /**
+     * Nenhum empréstimo em aberto do livro para devolver.
+     */
+    NOT_LOANED,
+
+    /**
+     * Isbn repetido no lote; só a primeira ocorrência é processada.
+     */
+    DUPLICATE
+}
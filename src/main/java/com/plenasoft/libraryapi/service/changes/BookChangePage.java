@@ -0,0 +1,22 @@
+package com.plenasoft.libraryapi.service.changes;
+
+import com.plenasoft.libraryapi.model.entity.Book;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Alterações em ordem, a posição para continuar a leitura e se já há mais alterações depois dela.
+ */
+@Data
+@AllArgsConstructor
+public class BookChangePage {
+
+    private List<Book> changes;
+
+    private String nextToken;
+
+    private boolean hasMore;
+
+}
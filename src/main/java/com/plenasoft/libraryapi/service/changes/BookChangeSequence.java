@@ -0,0 +1,54 @@
+package com.plenasoft.libraryapi.service.changes;
+
+import com.plenasoft.libraryapi.model.repository.BookChangeCounterRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Aloca as posições do feed de alterações de livros, por filial e por shard.
+ * <p>
+ * Deve ser chamado na transação que grava o livro, depois da gravação: o contador fica bloqueado
+ * até o commit, então uma posição só é alocada depois que a anterior ficou visível e quem lê o
+ * feed nunca passa por uma posição que ainda vai aparecer. As gravações de livros da mesma
+ * filial ficam serializadas apenas no trecho final da transação.
+ */
+@Component
+public class BookChangeSequence {
+
+    private final BookChangeCounterRepository repository;
+    private final TransactionTemplate newTransactionTemplate;
+
+    public BookChangeSequence(BookChangeCounterRepository repository, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public long next(String branch) {
+        return next(branch, 1);
+    }
+
+    /**
+     * Aloca {@code count} posições consecutivas de uma vez.
+     *
+     * @return a primeira das posições alocadas
+     */
+    public long next(String branch, int count) {
+        if (repository.increment(branch, count) == 0) {
+            createCounter(branch);
+            repository.increment(branch, count);
+        }
+        return repository.findLastSeq(branch) - count + 1;
+    }
+
+    private void createCounter(String branch) {
+        try {
+            newTransactionTemplate.execute(status -> repository.create(branch));
+        } catch (DataIntegrityViolationException e) {
+            // criado ao mesmo tempo por outra transação
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.plenasoft.libraryapi.service.changes;
+
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coloca no feed de alterações os livros cadastrados antes dele, que estão sem {@code change_seq}
+ * e por isso nunca seriam entregues. Em blocos de {@code chunk-size} livros por id (uma transação
+ * por bloco, em cada shard), com as posições alocadas do contador da filial como em qualquer
+ * alteração; os livros entram no fim do feed, então quem já o acompanha também os recebe.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class ChangeSeqBackfillJob {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookChangeSequence changeSequence;
+    private final ShardRouter shardRouter;
+    private final int chunkSize;
+
+    public ChangeSeqBackfillJob(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                BookChangeSequence changeSequence,
+                                ShardRouter shardRouter,
+                                @Value("${library.change-seq-backfill.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.changeSequence = changeSequence;
+        this.shardRouter = shardRouter;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${library.change-seq-backfill.cron:0 45 3 * * *}")
+    public void scheduledBackfill() {
+        try {
+            int filled = backfill();
+            if (filled > 0) {
+                log.info("change_seq preenchido em {} livro(s).", filled);
+            }
+        } catch (RuntimeException e) {
+            log.error("Falha ao preencher o change_seq dos livros.", e);
+        }
+    }
+
+    /**
+     * @return quantidade de livros com o {@code change_seq} preenchido (somando os shards)
+     */
+    public int backfill() {
+        int filled = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            filled += shardRouter.onShard(shard, this::backfillShard);
+        }
+        return filled;
+    }
+
+    private int backfillShard() {
+        int filled = 0;
+        long lastId = 0;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query("select id, branch from book where change_seq is null and id > ? order by id limit ?",
+                    (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2)}, lastId, chunkSize);
+            if (rows.isEmpty()) {
+                return filled;
+            }
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+
+            Map<String, List<Long>> idsByBranch = new LinkedHashMap<>();
+            for (Object[] row : rows) {
+                idsByBranch.computeIfAbsent((String) row[1], branch -> new ArrayList<>()).add((Long) row[0]);
+            }
+            filled += transactionTemplate.execute(status -> {
+                int count = 0;
+                for (Map.Entry<String, List<Long>> branch : idsByBranch.entrySet()) {
+                    // livros alterados desde a leitura já têm posição; a posição alocada para eles fica sem uso
+                    long firstSeq = changeSequence.next(branch.getKey(), branch.getValue().size());
+                    List<long[]> updates = new ArrayList<>(branch.getValue().size());
+                    for (Long id : branch.getValue()) {
+                        updates.add(new long[]{firstSeq + updates.size(), id});
+                    }
+                    for (int[] batch : jdbcTemplate.batchUpdate("update book set change_seq = ? where id = ? and change_seq is null",
+                            updates, updates.size(), (ps, update) -> {
+                                ps.setLong(1, update[0]);
+                                ps.setLong(2, update[1]);
+                            })) {
+                        for (int updated : batch) {
+                            count += updated;
+                        }
+                    }
+                }
+                return count;
+            });
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.plenasoft.libraryapi.service.changes;
+
+import com.plenasoft.libraryapi.exception.BusinessException;
+
+import java.util.StringJoiner;
+
+/**
+ * Posição de um consumidor no feed de alterações: a última alteração (changeSeq, id) lida
+ * em cada shard, no formato {@code seq:id} separado por ponto, por exemplo {@code 42:7.13:9}.
+ * Um token vazio começa do início.
+ */
+public final class ChangeToken {
+
+    private final long[] seqs;
+    private final long[] ids;
+
+    private ChangeToken(int shardCount) {
+        this.seqs = new long[shardCount];
+        this.ids = new long[shardCount];
+    }
+
+    public static ChangeToken parse(String token, int shardCount) {
+        ChangeToken position = new ChangeToken(shardCount);
+        if (token == null || token.trim().isEmpty()) {
+            return position;
+        }
+        String[] shards = token.split("\\.", -1);
+        // shards acrescentados depois que o token foi emitido ficam sem posição e começam do início
+        if (shards.length > shardCount) {
+            throw invalid();
+        }
+        for (int shard = 0; shard < shards.length; shard++) {
+            String[] parts = shards[shard].split(":", -1);
+            if (parts.length != 2) {
+                throw invalid();
+            }
+            try {
+                position.seqs[shard] = Long.parseLong(parts[0]);
+                position.ids[shard] = Long.parseLong(parts[1]);
+            } catch (NumberFormatException e) {
+                throw invalid();
+            }
+            if (position.seqs[shard] < 0 || position.ids[shard] < 0) {
+                throw invalid();
+            }
+        }
+        return position;
+    }
+
+    public long seqOf(int shard) {
+        return seqs[shard];
+    }
+
+    public long idOf(int shard) {
+        return ids[shard];
+    }
+
+    public void advance(int shard, long seq, long id) {
+        seqs[shard] = seq;
+        ids[shard] = id;
+    }
+
+    public String format() {
+        StringJoiner token = new StringJoiner(".");
+        for (int shard = 0; shard < seqs.length; shard++) {
+            token.add(seqs[shard] + ":" + ids[shard]);
+        }
+        return token.toString();
+    }
+
+    private static BusinessException invalid() {
+        return new BusinessException("Token de alterações inválido.");
+    }
+}
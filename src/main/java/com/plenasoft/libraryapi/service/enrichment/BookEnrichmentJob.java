@@ -0,0 +1,194 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+import com.plenasoft.libraryapi.config.EnrichmentProperties;
+import com.plenasoft.libraryapi.model.entity.EnrichmentStatus;
+import com.plenasoft.libraryapi.model.repository.BookIsbn;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Preenche editora, ano, capa e páginas dos livros pendentes a partir dos provedores de metadados.
+ * <p>
+ * A thread agendada pagina os livros pendentes pelo índice (enrichment_status, id) e entrega cada
+ * um a um pool fixo de workers. No máximo {@code max-in-flight} livros ficam em andamento: quando
+ * o limite é atingido a leitura espera, então um provedor lento segura a leitura em vez de acumular
+ * memória. Cada provedor tem o seu limite de consultas por segundo e, quando está indisponível,
+ * a consulta é repetida com backoff exponencial. Os resultados voltam para a thread agendada e são
+ * gravados em lotes. Nada disso roda nas threads das requisições.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "library.enrichment.enabled", havingValue = "true")
+public class BookEnrichmentJob {
+
+    private final BookRepository bookRepository;
+    private final List<BookMetadataProvider> providers;
+    private final Map<String, RateLimiter> rateLimiters = new LinkedHashMap<>();
+    private final BookEnrichmentWriter writer;
+    private final ShardRouter shardRouter;
+    private final EnrichmentProperties properties;
+    private final ExecutorService workers;
+    private final Semaphore inFlight;
+
+    public BookEnrichmentJob(BookRepository bookRepository,
+                             List<BookMetadataProvider> providers,
+                             BookEnrichmentWriter writer,
+                             ShardRouter shardRouter,
+                             EnrichmentProperties properties) {
+        if (providers.isEmpty()) {
+            throw new IllegalStateException("Nenhum provedor de metadados configurado.");
+        }
+        this.bookRepository = bookRepository;
+        this.providers = providers;
+        this.writer = writer;
+        this.shardRouter = shardRouter;
+        this.properties = properties;
+        for (BookMetadataProvider provider : providers) {
+            rateLimiters.put(provider.getName(), new RateLimiter(properties.rateFor(provider.getName())));
+        }
+        this.workers = Executors.newFixedThreadPool(properties.getWorkers(), workerThreadFactory());
+        this.inFlight = new Semaphore(properties.getMaxInFlight());
+    }
+
+    @Scheduled(fixedDelayString = "${library.enrichment.interval:60000}")
+    public void scheduledEnrich() {
+        try {
+            int processed = enrich();
+            if (processed > 0) {
+                log.info("Enriquecimento processou {} livro(s).", processed);
+            }
+        } catch (RuntimeException e) {
+            log.error("Falha ao enriquecer os livros.", e);
+        }
+    }
+
+    /**
+     * @return quantidade de livros processados
+     */
+    public synchronized int enrich() {
+        int processed = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            processed += shardRouter.onShard(shard, this::enrichShard);
+        }
+        return processed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private int enrichShard() {
+        Queue<EnrichmentResult> results = new ConcurrentLinkedQueue<>();
+        int submitted = 0;
+        long afterId = 0;
+        try {
+            while (true) {
+                List<BookIsbn> page = bookRepository.findByEnrichmentStatus(
+                        EnrichmentStatus.PENDING, afterId, PageRequest.of(0, properties.getPageSize()));
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (BookIsbn book : page) {
+                    inFlight.acquire();
+                    workers.execute(() -> {
+                        try {
+                            results.add(resolve(book));
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                    submitted++;
+                    afterId = book.getId();
+                    flush(results, false);
+                }
+            }
+            // aguarda os livros ainda em andamento
+            inFlight.acquire(properties.getMaxInFlight());
+            inFlight.release(properties.getMaxInFlight());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush(results, true);
+        return submitted;
+    }
+
+    private void flush(Queue<EnrichmentResult> results, boolean all) {
+        while (results.size() >= properties.getBatchSize() || (all && !results.isEmpty())) {
+            List<EnrichmentResult> batch = new ArrayList<>(properties.getBatchSize());
+            EnrichmentResult result;
+            while (batch.size() < properties.getBatchSize() && (result = results.poll()) != null) {
+                batch.add(result);
+            }
+            writer.write(batch);
+        }
+    }
+
+    EnrichmentResult resolve(BookIsbn book) {
+        try {
+            for (int attempt = 1; ; attempt++) {
+                boolean unavailable = false;
+                for (BookMetadataProvider provider : providers) {
+                    rateLimiters.get(provider.getName()).acquire();
+                    try {
+                        Optional<BookMetadata> metadata = provider.findByIsbn(book.getIsbn());
+                        if (metadata.isPresent()) {
+                            return EnrichmentResult.enriched(book.getId(), metadata.get());
+                        }
+                    } catch (MetadataProviderException e) {
+                        log.debug("Provedor {} indisponível para o isbn {} (tentativa {}).",
+                                provider.getName(), book.getIsbn(), attempt, e);
+                        unavailable = true;
+                    }
+                }
+                if (!unavailable) {
+                    return EnrichmentResult.notFound(book.getId());
+                }
+                if (attempt >= properties.getMaxAttempts()) {
+                    return EnrichmentResult.failed(book.getId());
+                }
+                Thread.sleep(backoff(attempt).toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EnrichmentResult.failed(book.getId());
+        }
+    }
+
+    Duration backoff(int attempt) {
+        long factor = 1L << Math.min(attempt - 1, 20);
+        Duration backoff = properties.getInitialBackoff().multipliedBy(factor);
+        return backoff.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : backoff;
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "book-enrichment-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+import com.plenasoft.libraryapi.config.EnrichmentProperties;
+import com.plenasoft.libraryapi.model.entity.EnrichmentStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Grava um lote de resultados do enriquecimento em uma transação, com um batch JDBC por tipo
+ * de resultado. Só altera livros ainda pendentes e não mexe na versão, então não conflita
+ * com as edições feitas pela API. Os livros preenchidos recebem uma nova posição no feed de
+ * alterações, uma por filial para o lote inteiro, alocada depois da gravação como nas edições.
+ */
+@Component
+class BookEnrichmentWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxRuns;
+
+    BookEnrichmentWriter(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         EnrichmentProperties properties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxRuns = properties.getMaxRuns();
+    }
+
+    void write(List<EnrichmentResult> results) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        transactionTemplate.execute(status -> {
+            List<EnrichmentResult> enriched = filter(results, EnrichmentStatus.ENRICHED);
+            if (!enriched.isEmpty()) {
+                jdbcTemplate.batchUpdate("update book set publisher = ?, published_year = ?, cover_url = ?, page_count = ?, " +
+                                "enrichment_status = 'ENRICHED', enriched_at = ? where id = ? and enrichment_status = 'PENDING'",
+                        enriched, enriched.size(), (ps, result) -> {
+                            BookMetadata metadata = result.getMetadata();
+                            ps.setString(1, metadata.getPublisher());
+                            ps.setObject(2, metadata.getPublishedYear(), Types.INTEGER);
+                            ps.setString(3, metadata.getCoverUrl());
+                            ps.setObject(4, metadata.getPageCount(), Types.INTEGER);
+                            ps.setTimestamp(5, now);
+                            ps.setLong(6, result.getBookId());
+                        });
+                recordChanges(enriched);
+            }
+
+            List<EnrichmentResult> notFound = filter(results, EnrichmentStatus.NOT_FOUND);
+            if (!notFound.isEmpty()) {
+                jdbcTemplate.batchUpdate("update book set enrichment_status = 'NOT_FOUND', enriched_at = ? " +
+                                "where id = ? and enrichment_status = 'PENDING'",
+                        notFound, notFound.size(), (ps, result) -> {
+                            ps.setTimestamp(1, now);
+                            ps.setLong(2, result.getBookId());
+                        });
+            }
+
+            // falhas continuam pendentes para a próxima execução até esgotar as execuções permitidas
+            List<EnrichmentResult> failed = filter(results, EnrichmentStatus.FAILED);
+            if (!failed.isEmpty()) {
+                jdbcTemplate.batchUpdate("update book set enrichment_attempts = enrichment_attempts + 1, " +
+                                "enrichment_status = case when enrichment_attempts + 1 >= ? then 'FAILED' else 'PENDING' end " +
+                                "where id = ? and enrichment_status = 'PENDING'",
+                        failed, failed.size(), (ps, result) -> {
+                            ps.setInt(1, maxRuns);
+                            ps.setLong(2, result.getBookId());
+                        });
+            }
+            return null;
+        });
+    }
+
+    private void recordChanges(List<EnrichmentResult> enriched) {
+        Object[] ids = enriched.stream().map(EnrichmentResult::getBookId).toArray();
+        String placeholders = String.join(", ", Collections.nCopies(ids.length, "?"));
+        jdbcTemplate.update("update book_change_counter set last_seq = last_seq + 1 " +
+                "where branch in (select branch from book where id in (" + placeholders + "))", ids);
+        jdbcTemplate.update("update book set change_seq = coalesce(" +
+                "(select c.last_seq from book_change_counter c where c.branch = book.branch), change_seq) " +
+                "where id in (" + placeholders + ")", ids);
+    }
+
+    private static List<EnrichmentResult> filter(List<EnrichmentResult> results, EnrichmentStatus status) {
+        return results.stream().filter(result -> result.getStatus() == status).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,19 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookMetadata {
+
+    private String isbn;
+    private String publisher;
+    private Integer publishedYear;
+    private String coverUrl;
+    private Integer pageCount;
+}
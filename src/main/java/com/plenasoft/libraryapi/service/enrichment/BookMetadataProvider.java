@@ -0,0 +1,21 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+import java.util.Optional;
+
+/**
+ * Fonte de dados de catálogo consultada pelo {@link BookEnrichmentJob}. Os provedores são
+ * consultados na ordem dos beans até um deles conhecer o isbn.
+ */
+public interface BookMetadataProvider {
+
+    /**
+     * Nome usado para configurar o limite de consultas do provedor.
+     */
+    String getName();
+
+    /**
+     * @return vazio quando o provedor não conhece o isbn
+     * @throws MetadataProviderException quando o provedor está indisponível e vale tentar de novo
+     */
+    Optional<BookMetadata> findByIsbn(String isbn);
+}
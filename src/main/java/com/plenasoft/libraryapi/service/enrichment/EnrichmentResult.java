@@ -0,0 +1,26 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+import com.plenasoft.libraryapi.model.entity.EnrichmentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+class EnrichmentResult {
+
+    private final Long bookId;
+    private final EnrichmentStatus status;
+    private final BookMetadata metadata;
+
+    static EnrichmentResult enriched(Long bookId, BookMetadata metadata) {
+        return new EnrichmentResult(bookId, EnrichmentStatus.ENRICHED, metadata);
+    }
+
+    static EnrichmentResult notFound(Long bookId) {
+        return new EnrichmentResult(bookId, EnrichmentStatus.NOT_FOUND, null);
+    }
+
+    static EnrichmentResult failed(Long bookId) {
+        return new EnrichmentResult(bookId, EnrichmentStatus.FAILED, null);
+    }
+}
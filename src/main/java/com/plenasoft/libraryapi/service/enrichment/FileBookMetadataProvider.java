@@ -0,0 +1,54 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Provedor local que lê os metadados de um arquivo JSON (lista de {@link BookMetadata}),
+ * usado em testes e em desenvolvimento no lugar do catálogo externo.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "library.enrichment.file.path")
+public class FileBookMetadataProvider implements BookMetadataProvider {
+
+    public static final String NAME = "file";
+
+    private final Map<String, BookMetadata> catalog;
+
+    public FileBookMetadataProvider(ResourceLoader resourceLoader,
+                                    ObjectMapper objectMapper,
+                                    @Value("${library.enrichment.file.path}") String path) throws IOException {
+        Resource resource = resourceLoader.getResource(path);
+        try (InputStream input = resource.getInputStream()) {
+            List<BookMetadata> entries = objectMapper.readValue(input, new TypeReference<List<BookMetadata>>() {});
+            this.catalog = entries.stream()
+                    .collect(Collectors.toMap(BookMetadata::getIsbn, Function.identity(), (first, second) -> second));
+        }
+        log.info("Catálogo local de metadados carregado de {}: {} isbn(s).", path, catalog.size());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Optional<BookMetadata> findByIsbn(String isbn) {
+        return Optional.ofNullable(catalog.get(isbn));
+    }
+}
@@ -0,0 +1,12 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+public class MetadataProviderException extends RuntimeException {
+
+    public MetadataProviderException(String message) {
+        super(message);
+    }
+
+    public MetadataProviderException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
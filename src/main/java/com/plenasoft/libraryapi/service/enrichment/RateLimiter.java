@@ -0,0 +1,33 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Espaça as chamadas a um provedor para no máximo {@code permitsPerSecond} por segundo,
+ * somando todas as threads. Quem chega antes da sua vez dorme até ela.
+ */
+class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextSlot = System.nanoTime();
+
+    RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("O limite de consultas por segundo deve ser positivo.");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    void acquire() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlot);
+            nextSlot = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.plenasoft.libraryapi.service.fee;
+
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Apuração noturna das multas dos empréstimos atrasados: em aberto ou devolvidos desde a véspera.
+ * <p>
+ * Em cada shard, os empréstimos são divididos em partições de {@code partition-size} empréstimos,
+ * com os limites lidos do índice da chave primária (um id a cada {@code partition-size}), e não pela
+ * faixa entre o menor e o maior id: empréstimos movidos pelo rebalanceamento mantêm ids de outra
+ * faixa. As partições são divididas recursivamente (fork/join) e processadas em paralelo por
+ * {@code parallelism} threads (todos os núcleos por padrão). Cada partição é uma transação: lê os empréstimos da faixa pela chave primária
+ * e grava as multas em batches JDBC de {@code batch-size}. O paralelismo efetivo também é limitado
+ * pelo pool de conexões do banco.
+ * <p>
+ * A apuração é idempotente por dia: cada partição apaga as multas já gravadas para a mesma data na
+ * sua faixa antes de gravar, então repetir o dia (ou retomar uma execução interrompida) substitui
+ * o resultado em vez de duplicá-lo.
+ * <p>
+ * Os empréstimos guardam só o id do cliente; os ids dos clientes com política própria são buscados
+ * uma vez por apuração, antes das partições.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class FeeAssessmentJob {
+
+    private final LoanPolicyResolver policyResolver;
+    private final CustomerService customerService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final ForkJoinPool pool;
+    private final int partitionSize;
+    private final int batchSize;
+
+    public FeeAssessmentJob(LoanPolicyResolver policyResolver,
+                            CustomerService customerService,
+                            DataSource dataSource,
+                            PlatformTransactionManager transactionManager,
+                            ShardRouter shardRouter,
+                            @Value("${library.fees.parallelism:0}") int parallelism,
+                            @Value("${library.fees.partition-size:20000}") int partitionSize,
+                            @Value("${library.fees.batch-size:500}") int batchSize) {
+        this.policyResolver = policyResolver;
+        this.customerService = customerService;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                workerThreadFactory(), null, false);
+        this.partitionSize = partitionSize;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${library.fees.cron:0 0 1 * * *}")
+    public void scheduledAssess() {
+        try {
+            long start = System.currentTimeMillis();
+            int assessed = assess(LocalDate.now());
+            log.info("Multas apuradas: {} empréstimo(s) em atraso em {} ms.", assessed, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Falha ao apurar as multas.", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * @param assessedOn data da apuração; empréstimos em aberto contam o atraso até ela
+     * @return quantidade de multas gravadas (somando os shards)
+     */
+    public int assess(LocalDate assessedOn) {
+        Map<Long, String> customers = new HashMap<>();
+        for (String name : policyResolver.getCustomers()) {
+            customerService.getByName(name).ifPresent(customer -> customers.put(customer.getId(), name));
+        }
+        int assessed = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int current = shard;
+            List<Long> bounds = shardRouter.onShard(shard, this::partitionBounds);
+            if (bounds.size() > 1) {
+                assessed += pool.invoke(new PartitionTask(current, assessedOn, customers, bounds, 0, bounds.size() - 1));
+            }
+        }
+        return assessed;
+    }
+
+    /**
+     * Limites das partições do shard corrente: a partição {@code i} vai de {@code bounds[i] + 1} até
+     * {@code bounds[i + 1]}. Cada limite é o {@code partition-size}-ésimo id depois do anterior.
+     */
+    private List<Long> partitionBounds() {
+        List<Long> bounds = new ArrayList<>();
+        long last = 0;
+        bounds.add(last);
+        while (true) {
+            List<Long> next = jdbcTemplate.queryForList(
+                    "select id from loan where id > ? order by id limit 1 offset ?", Long.class, last, partitionSize - 1);
+            if (next.isEmpty()) {
+                break;
+            }
+            last = next.get(0);
+            bounds.add(last);
+        }
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from loan", Long.class);
+        if (maxId != null && maxId > last) {
+            bounds.add(maxId);
+        }
+        return bounds;
+    }
+
+    /**
+     * Partições [first, last) de um shard, pelos limites lidos em {@link #partitionBounds()}.
+     */
+    private class PartitionTask extends RecursiveTask<Integer> {
+
+        private final int shard;
+        private final LocalDate assessedOn;
+        private final Map<Long, String> customers;
+        private final List<Long> bounds;
+        private final int first;
+        private final int last;
+
+        PartitionTask(int shard, LocalDate assessedOn, Map<Long, String> customers, List<Long> bounds, int first, int last) {
+            this.shard = shard;
+            this.assessedOn = assessedOn;
+            this.customers = customers;
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (last - first == 1) {
+                long from = bounds.get(first) + 1;
+                long to = bounds.get(last);
+                return shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> assessPartition(assessedOn, customers, from, to)));
+            }
+            int middle = first + (last - first) / 2;
+            PartitionTask left = new PartitionTask(shard, assessedOn, customers, bounds, first, middle);
+            left.fork();
+            int right = new PartitionTask(shard, assessedOn, customers, bounds, middle, last).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * @param customers nomes dos clientes com política própria, pelo id
+     */
+    private int assessPartition(LocalDate assessedOn, Map<Long, String> customers, long from, long to) {
+        Date assessedOnDate = Date.valueOf(assessedOn);
+        List<Object[]> fees = new ArrayList<>();
+        jdbcTemplate.query("select l.id, l.branch, l.id_customer, l.loan_date, l.due_date, l.return_date, b.book_type " +
+                        "from loan l join book b on b.id = l.id_book " +
+                        "where l.id between ? and ? and (l.returned = false or l.return_date >= ?)",
+                rs -> {
+                    String customer = customers.isEmpty() ? null : customers.get(rs.getObject(3, Long.class));
+                    LoanPolicy policy = policyResolver.resolve(rs.getString(7), customer);
+                    Date dueDate = rs.getDate(5);
+                    LocalDate due = dueDate != null ? dueDate.toLocalDate() : policy.dueDate(rs.getDate(4).toLocalDate());
+                    Date returnDate = rs.getDate(6);
+                    int daysOverdue = LoanPolicy.daysOverdue(due, returnDate != null ? returnDate.toLocalDate() : assessedOn);
+                    BigDecimal fine = policy.fineFor(daysOverdue);
+                    if (fine.signum() > 0) {
+                        fees.add(new Object[]{rs.getLong(1), rs.getString(2), rs.getObject(3, Long.class), Date.valueOf(due), daysOverdue, fine});
+                    }
+                }, from, to, Date.valueOf(assessedOn.minusDays(1)));
+
+        jdbcTemplate.update("delete from loan_fee where assessed_on = ? and id_loan between ? and ?", assessedOnDate, from, to);
+        if (!fees.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into loan_fee (id_loan, branch, id_customer, assessed_on, due_date, days_overdue, amount) " +
+                            "values (?, ?, ?, ?, ?, ?, ?)",
+                    fees, batchSize, (ps, fee) -> {
+                        ps.setLong(1, (Long) fee[0]);
+                        ps.setString(2, (String) fee[1]);
+                        ps.setObject(3, fee[2], Types.BIGINT);
+                        ps.setDate(4, assessedOnDate);
+                        ps.setDate(5, (Date) fee[3]);
+                        ps.setInt(6, (Integer) fee[4]);
+                        ps.setBigDecimal(7, (BigDecimal) fee[5]);
+                    });
+        }
+        return fees.size();
+    }
+
+    private static ForkJoinPool.ForkJoinWorkerThreadFactory workerThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("fee-assessment-" + sequence.incrementAndGet());
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.plenasoft.libraryapi.service.fee;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Política de empréstimo já combinada com a padrão: todos os campos preenchidos, exceto o teto
+ * da multa e o limite de empréstimos em aberto, que são opcionais.
+ */
+@Getter
+public class LoanPolicy {
+
+    private final int loanDays;
+    private final int graceDays;
+    private final BigDecimal dailyFine;
+    private final BigDecimal maxFine;
+    private final Integer maxOpenLoans;
+
+    public LoanPolicy(int loanDays, int graceDays, BigDecimal dailyFine, BigDecimal maxFine, Integer maxOpenLoans) {
+        this.loanDays = loanDays;
+        this.graceDays = graceDays;
+        this.dailyFine = dailyFine;
+        this.maxFine = maxFine;
+        this.maxOpenLoans = maxOpenLoans;
+    }
+
+    public LocalDate dueDate(LocalDate loanDate) {
+        return loanDate.plusDays(loanDays);
+    }
+
+    /**
+     * @param end data da devolução, ou a da apuração para empréstimos em aberto
+     * @return dias entre a data de devolução prevista e {@code end}; zero quando não há atraso
+     */
+    public static int daysOverdue(LocalDate dueDate, LocalDate end) {
+        return (int) Math.max(0, ChronoUnit.DAYS.between(dueDate, end));
+    }
+
+    /**
+     * Multa acumulada: nada dentro da carência; depois dela, todos os dias de atraso, até o teto.
+     */
+    public BigDecimal fineFor(int daysOverdue) {
+        if (daysOverdue <= graceDays) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal fine = dailyFine.multiply(BigDecimal.valueOf(daysOverdue));
+        return maxFine != null && fine.compareTo(maxFine) > 0 ? maxFine : fine;
+    }
+}
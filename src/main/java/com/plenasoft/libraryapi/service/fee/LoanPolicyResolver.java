@@ -0,0 +1,66 @@
+package com.plenasoft.libraryapi.service.fee;
+
+import com.plenasoft.libraryapi.config.LoanPolicyProperties;
+import com.plenasoft.libraryapi.model.entity.Book;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Escolhe a política de um empréstimo pelo cliente e pelo tipo do livro. As políticas por tipo são
+ * combinadas com a padrão uma única vez; a apuração noturna chama {@link #resolve} para cada
+ * empréstimo atrasado, e sem política de cliente a chamada não aloca.
+ */
+@Component
+public class LoanPolicyResolver {
+
+    private final LoanPolicy defaults;
+    private final Map<String, LoanPolicy> byBookType = new HashMap<>();
+    private final Map<String, LoanPolicy> byCustomer = new HashMap<>();
+
+    public LoanPolicyResolver(LoanPolicyProperties properties) {
+        this.defaults = merge(properties.getDefaults(), null);
+        properties.getBookTypes().forEach((type, policy) -> byBookType.put(type, merge(policy, defaults)));
+        properties.getCustomers().forEach((customer, policy) -> byCustomer.put(customer, merge(policy, defaults)));
+    }
+
+    /**
+     * A política do cliente prevalece sobre a do tipo do livro; os campos que ela não informa vêm
+     * da política padrão.
+     */
+    public LoanPolicy resolve(String bookType, String customer) {
+        LoanPolicy policy = customer != null ? byCustomer.get(customer) : null;
+        if (policy == null && bookType != null) {
+            policy = byBookType.get(bookType);
+        }
+        return policy != null ? policy : defaults;
+    }
+
+    public LocalDate dueDate(Book book, String customer, LocalDate loanDate) {
+        return resolve(book.getType(), customer).dueDate(loanDate);
+    }
+
+    /**
+     * Clientes com política própria.
+     */
+    public Set<String> getCustomers() {
+        return Collections.unmodifiableSet(byCustomer.keySet());
+    }
+
+    private static LoanPolicy merge(LoanPolicyProperties.Policy policy, LoanPolicy defaults) {
+        if (defaults == null) {
+            return new LoanPolicy(policy.getLoanDays(), policy.getGraceDays(), policy.getDailyFine(), policy.getMaxFine(),
+                    policy.getMaxOpenLoans());
+        }
+        return new LoanPolicy(
+                policy.getLoanDays() != null ? policy.getLoanDays() : defaults.getLoanDays(),
+                policy.getGraceDays() != null ? policy.getGraceDays() : defaults.getGraceDays(),
+                policy.getDailyFine() != null ? policy.getDailyFine() : defaults.getDailyFine(),
+                policy.getMaxFine() != null ? policy.getMaxFine() : defaults.getMaxFine(),
+                policy.getMaxOpenLoans() != null ? policy.getMaxOpenLoans() : defaults.getMaxOpenLoans());
+    }
+}
@@ -1,42 +1,117 @@
 package com.plenasoft.libraryapi.service.impl;
 
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.cache.BookCache;
 import com.plenasoft.libraryapi.exception.BusinessException;
+import com.plenasoft.libraryapi.isbn.Isbn;
 import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.repository.BookAvailability;
 import com.plenasoft.libraryapi.model.repository.BookRepository;
 import com.plenasoft.libraryapi.service.BookService;
+import com.plenasoft.libraryapi.service.ReservationService;
+import com.plenasoft.libraryapi.service.changes.BookChangePage;
+import com.plenasoft.libraryapi.service.changes.BookChangeSequence;
+import com.plenasoft.libraryapi.service.changes.ChangeToken;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class BookServiceImpl implements BookService {
 
     private BookRepository repository;
+    private BookChangeSequence changeSequence;
+    private TransactionTemplate transactionTemplate;
+    private ShardRouter shardRouter;
+    private BookCache bookCache;
+    private ReservationService reservationService;
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository,
+                           BookChangeSequence changeSequence,
+                           PlatformTransactionManager transactionManager,
+                           ShardRouter shardRouter,
+                           BookCache bookCache,
+                           ReservationService reservationService) {
         this.repository = repository;
+        this.changeSequence = changeSequence;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.bookCache = bookCache;
+        this.reservationService = reservationService;
     }
 
+    /**
+     * A duplicidade é verificada pelo ISBN-13 canônico, então o mesmo livro enviado como ISBN-10
+     * ou com outra grafia é recusado. Também compara o texto exato, para os cadastros que ainda não
+     * passaram pelo {@code IsbnBackfillJob}, inclusive nos outros shards, onde esses cadastros
+     * ficam até o rebalanceamento.
+     */
     @Override
     public Book save(Book book) {
-        if( repository.existsByIsbn(book.getIsbn())) {
+        String branch = BranchContextHolder.getBranch();
+        long isbn13 = Isbn.toIsbn13(book.getIsbn());
+        int shard = shardRouter.shardFor(book.getIsbn());
+        if( shardRouter.shardCount() > 1 && shardRouter.onAllShards(other ->
+                other != shard && isbnExists(branch, book.getIsbn(), isbn13)).contains(true) ) {
             throw new BusinessException("Isbn já cadastrado.");
         }
-        return repository.save(book);
+        Book savedBook = shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+            if( isbnExists(branch, book.getIsbn(), isbn13) ) {
+                throw new BusinessException("Isbn já cadastrado.");
+            }
+            book.setIsbn13(isbn13 != Isbn.INVALID ? isbn13 : null);
+            book.setBranch(branch);
+            book.setActiveLoans(0);
+            Book saved = repository.save(book);
+            recordChange(saved.getId(), branch);
+            return saved;
+        }));
+        savedBook.setShard(shard);
+        return savedBook;
     }
 
     @Override
     public Optional<Book> getById(Long id) {
-        return this.repository.findById(id);
+        String branch = BranchContextHolder.getBranch();
+        return shardRouter.locate(shardRouter.homeShardOf(id), shard ->
+                this.repository.findByIdAndBranchAndDeletedAtIsNull(id, branch).map( book -> withShard(book, shard) ));
     }
 
+    /**
+     * Um livro emprestado ou com fila de reservas não pode ser excluído: o empréstimo não teria como
+     * ser devolvido e a fila ficaria parada. O livro é bloqueado durante a verificação, então um
+     * empréstimo ou reserva concorrente espera a exclusão e a encontra.
+     */
     @Override
     public void delete(Book book) {
 
         if(book == null || book.getId() == null) {
             throw new IllegalArgumentException("Livro não pode retornar nulo.");
         }
-        this.repository.delete(book);
+        shardRouter.runOnShard(shardRouter.shardOf(book), () -> transactionTemplate.execute(status -> {
+            Optional<Book> current = this.repository.findForUpdateById(book.getId());
+            if( current.isPresent() && !current.get().isAvailable() ) {
+                throw new BusinessException("Livro emprestado não pode ser excluído.");
+            }
+            if( !reservationService.getQueuedBooks(Collections.singleton(book.getId())).isEmpty() ) {
+                throw new BusinessException("Livro com reservas em espera não pode ser excluído.");
+            }
+            this.repository.delete(book);
+            recordChange(book.getId(), book.getBranch());
+            return null;
+        }));
+        bookCache.invalidate(book.getId());
     }
 
     @Override
@@ -44,11 +119,182 @@ public class BookServiceImpl implements BookService {
         if(book == null || book.getId() == null) {
             throw new IllegalArgumentException("Livro não pode retornar nulo.");
         }
-        return this.repository.save(book);
+        int shard = shardRouter.shardOf(book);
+        Book updated = shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+            Book saved = this.repository.save(book);
+            recordChange(book.getId(), book.getBranch());
+            return saved;
+        }));
+        bookCache.invalidate(book.getId());
+        return withShard(updated, shard);
     }
 
+    @Override
+    public boolean patch(Book book) {
+        if(book == null || book.getId() == null) {
+            throw new IllegalArgumentException("Livro não pode retornar nulo.");
+        }
+        String branch = BranchContextHolder.getBranch();
+        int homeShard = shardRouter.homeShardOf(book.getId());
+        if(patchOnShard(homeShard, book, branch) > 0) {
+            bookCache.invalidate(book.getId());
+            return true;
+        }
+        // só consulta o livro no caminho de falha, para diferenciar inexistente de versão desatualizada
+        Optional<Integer> shard = shardRouter.locate(homeShard, current ->
+                this.repository.existsByIdAndBranchAndDeletedAtIsNull(book.getId(), branch) ? Optional.of(current) : Optional.empty());
+        if(!shard.isPresent()) {
+            return false;
+        }
+        // o livro foi movido para outro shard por um rebalanceamento
+        if(shard.get() != homeShard && patchOnShard(shard.get(), book, branch) > 0) {
+            bookCache.invalidate(book.getId());
+            return true;
+        }
+        throw new ObjectOptimisticLockingFailureException(Book.class, book.getId());
+    }
+
+    /**
+     * Busca pelo índice (branch, isbn13) em qualquer grafia do isbn e, não encontrando, pela
+     * comparação exata do texto: isbns inválidos e cadastros que ainda não passaram pelo
+     * {@code IsbnBackfillJob} não têm isbn13. Passa pelo {@link BookCache}, invalidado nas
+     * alterações e exclusões deste e dos outros nós.
+     */
     @Override
     public Optional<Book> getBookByIsbn(String isbn) {
-        return null;
+        String branch = BranchContextHolder.getBranch();
+        long isbn13 = Isbn.toIsbn13(isbn);
+        return bookCache.get(branch, isbn, () -> shardRouter.locate(shardRouter.shardFor(isbn), shard ->
+                findByIsbn(branch, isbn, isbn13).map( book -> withShard(book, shard) )));
+    }
+
+    /**
+     * Consulta cada shard apenas com os isbns que pertencem a ele, em paralelo. Os isbns podem vir
+     * em qualquer grafia (hífens, ISBN-10) e a resposta repete a grafia pedida, para que o cliente
+     * reconheça cada livro; entre cadastros repetidos do mesmo livro, vale o primeiro.
+     */
+    @Override
+    public List<BookAvailability> getAvailability(Collection<String> isbns) {
+        String branch = BranchContextHolder.getBranch();
+        List<String> requested = isbns.stream().distinct().collect(Collectors.toList());
+        List<BookAvailability> found;
+        if(shardRouter.shardCount() == 1) {
+            found = this.repository.findAvailability(branch, Isbn.toIsbn13s(requested), requested);
+        } else {
+            Map<Integer, List<String>> isbnsByShard = requested.stream()
+                    .collect(Collectors.groupingBy(shardRouter::shardFor));
+            found = shardRouter.onShards(isbnsByShard.keySet(), shard -> {
+                        List<String> shardIsbns = isbnsByShard.get(shard);
+                        return this.repository.findAvailability(branch, Isbn.toIsbn13s(shardIsbns), shardIsbns);
+                    })
+                    .stream()
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+        }
+
+        Map<String, BookAvailability> byKey = new HashMap<>();
+        found.forEach(availability -> byKey.putIfAbsent(Isbn.key(availability.getIsbn()), availability));
+        List<BookAvailability> availabilities = new ArrayList<>(requested.size());
+        for( String isbn : requested ) {
+            BookAvailability availability = byKey.get(Isbn.key(isbn));
+            if( availability != null ) {
+                availabilities.add(new RequestedAvailability(isbn, availability.getActiveLoans()));
+            }
+        }
+        return availabilities;
+    }
+
+    /**
+     * Intercala as alterações dos shards, para que um shard com muitas alterações não atrase os
+     * demais. A ordem só é garantida dentro de cada shard, o que basta porque cada livro está em um só.
+     */
+    @Override
+    public BookChangePage getChanges(String since, int limit) {
+        String branch = BranchContextHolder.getBranch();
+        ChangeToken position = ChangeToken.parse(since, shardRouter.shardCount());
+        List<List<Book>> shardChanges = shardRouter.onAllShards(shard ->
+                this.repository.findChanges(branch, position.seqOf(shard), position.idOf(shard), limit + 1));
+
+        List<Book> changes = new ArrayList<>(limit);
+        int[] read = new int[shardChanges.size()];
+        boolean progressed = true;
+        while( changes.size() < limit && progressed ) {
+            progressed = false;
+            for( int shard = 0; shard < shardChanges.size() && changes.size() < limit; shard++ ) {
+                List<Book> books = shardChanges.get(shard);
+                if( read[shard] < books.size() ) {
+                    Book book = books.get(read[shard]++);
+                    position.advance(shard, book.getChangeSeq(), book.getId());
+                    changes.add(withShard(book, shard));
+                    progressed = true;
+                }
+            }
+        }
+
+        boolean hasMore = false;
+        for( int shard = 0; shard < shardChanges.size(); shard++ ) {
+            hasMore |= read[shard] < shardChanges.get(shard).size();
+        }
+        return new BookChangePage(changes, position.format(), hasMore);
+    }
+
+    private Optional<Book> findByIsbn(String branch, String isbn, long isbn13) {
+        if( isbn13 != Isbn.INVALID ) {
+            Optional<Book> book = this.repository.findFirstByBranchAndIsbn13AndDeletedAtIsNullOrderById(branch, isbn13);
+            if( book.isPresent() ) {
+                return book;
+            }
+        }
+        return this.repository.findByBranchAndIsbnAndDeletedAtIsNull(branch, isbn);
+    }
+
+    private boolean isbnExists(String branch, String isbn, long isbn13) {
+        return (isbn13 != Isbn.INVALID && repository.existsByBranchAndIsbn13AndDeletedAtIsNull(branch, isbn13))
+                || repository.existsByBranchAndIsbnAndDeletedAtIsNull(branch, isbn);
+    }
+
+    private int patchOnShard(int shard, Book book, String branch) {
+        return shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+            int patched = this.repository.patch(book.getId(), branch, book.getTitle(), book.getAuthor(), book.getVersion());
+            if( patched > 0 ) {
+                recordChange(book.getId(), branch);
+            }
+            return patched;
+        }));
+    }
+
+    /**
+     * Marca a alteração já gravada na transação com a próxima posição do feed. A gravação do livro
+     * vai antes da alocação para que todas as transações bloqueiem primeiro o livro e depois o contador.
+     */
+    private void recordChange(Long id, String branch) {
+        this.repository.flush();
+        this.repository.updateChangeSeq(id, changeSequence.next(branch));
+    }
+
+    private static Book withShard(Book book, int shard) {
+        book.setShard(shard);
+        return book;
+    }
+
+    private static class RequestedAvailability implements BookAvailability {
+
+        private final String isbn;
+        private final int activeLoans;
+
+        RequestedAvailability(String isbn, int activeLoans) {
+            this.isbn = isbn;
+            this.activeLoans = activeLoans;
+        }
+
+        @Override
+        public String getIsbn() {
+            return isbn;
+        }
+
+        @Override
+        public int getActiveLoans() {
+            return activeLoans;
+        }
     }
 }
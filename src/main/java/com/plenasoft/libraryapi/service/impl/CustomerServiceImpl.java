@@ -0,0 +1,125 @@
+package com.plenasoft.libraryapi.service.impl;
+
+import com.plenasoft.libraryapi.exception.BusinessException;
+import com.plenasoft.libraryapi.model.entity.Customer;
+import com.plenasoft.libraryapi.model.repository.CustomerRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.fee.LoanPolicyResolver;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Os clientes ficam no shard 0, lidos em uma transação própria: a busca pode acontecer dentro da
+ * transação de um empréstimo, já presa ao shard do livro. Nome e id de um cliente não mudam, então
+ * o cache local não expira; quando enche, os clientes novos passam a ser lidos do banco.
+ */
+@Service
+public class CustomerServiceImpl implements CustomerService {
+
+    private CustomerRepository repository;
+    private LoanRepository loanRepository;
+    private LoanPolicyResolver policyResolver;
+    private ShardRouter shardRouter;
+    private TransactionTemplate transactionTemplate;
+    private int cacheSize;
+
+    private final Map<String, Customer> byName = new ConcurrentHashMap<>();
+    private final Map<Long, Customer> byId = new ConcurrentHashMap<>();
+
+    public CustomerServiceImpl(CustomerRepository repository,
+                               LoanRepository loanRepository,
+                               LoanPolicyResolver policyResolver,
+                               ShardRouter shardRouter,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${library.customers.cache-size:10000}") int cacheSize) {
+        this.repository = repository;
+        this.loanRepository = loanRepository;
+        this.policyResolver = policyResolver;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.cacheSize = cacheSize;
+    }
+
+    @Override
+    public Customer getOrCreate(String name) {
+        if( name == null || name.trim().isEmpty() ) {
+            throw new BusinessException("Cliente não informado.");
+        }
+        Customer cached = byName.get(name);
+        if( cached != null ) {
+            return cached;
+        }
+        Customer customer;
+        try {
+            customer = onRegistry(() -> repository.findByName(name)
+                    .orElseGet(() -> repository.saveAndFlush(Customer.builder()
+                            .name(name)
+                            .createdAt(LocalDateTime.now())
+                            .build())));
+        } catch (DataIntegrityViolationException e) {
+            // cadastrado ao mesmo tempo por outra requisição
+            customer = onRegistry(() -> repository.findByName(name)).orElseThrow(() -> e);
+        }
+        return cache(customer);
+    }
+
+    @Override
+    public Optional<Customer> getById(Long id) {
+        if( id == null ) {
+            return Optional.empty();
+        }
+        Customer cached = byId.get(id);
+        return cached != null ? Optional.of(cached) : onRegistry(() -> repository.findById(id)).map(this::cache);
+    }
+
+    @Override
+    public Optional<Customer> getByName(String name) {
+        Customer cached = byName.get(name);
+        return cached != null ? Optional.of(cached) : onRegistry(() -> repository.findByName(name)).map(this::cache);
+    }
+
+    /**
+     * Uma contagem pelo índice (cliente, devolvido) em cada shard; com um único shard, roda na
+     * transação de quem chamou, depois do bloqueio do cliente.
+     */
+    @Override
+    public int getRemainingLoans(Customer customer) {
+        Integer maxOpenLoans = policyResolver.resolve(null, customer.getName()).getMaxOpenLoans();
+        if( maxOpenLoans == null ) {
+            return Integer.MAX_VALUE;
+        }
+        if( shardRouter.shardCount() == 1 ) {
+            repository.findForUpdateById(customer.getId());
+        }
+        long openLoans = shardRouter.onAllShards( shard -> loanRepository.countOpenByCustomerId(customer.getId()) )
+                .stream()
+                .mapToLong(Long::longValue)
+                .sum();
+        return (int) Math.max(0, maxOpenLoans - openLoans);
+    }
+
+    private <T> T onRegistry(Supplier<T> action) {
+        return shardRouter.onShard(0, () -> transactionTemplate.execute(status -> action.get()));
+    }
+
+    private Customer cache(Customer customer) {
+        if( byId.size() < cacheSize ) {
+            byId.put(customer.getId(), customer);
+            byName.put(customer.getName(), customer);
+        }
+        return customer;
+    }
+}
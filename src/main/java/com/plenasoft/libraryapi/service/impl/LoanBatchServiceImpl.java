@@ -0,0 +1,311 @@
+package com.plenasoft.libraryapi.service.impl;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.isbn.Isbn;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Customer;
+import com.plenasoft.libraryapi.model.entity.Loan;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.model.repository.OpenLoan;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.LoanBatchService;
+import com.plenasoft.libraryapi.service.OutboxService;
+import com.plenasoft.libraryapi.service.ReservationService;
+import com.plenasoft.libraryapi.service.availability.BookAvailabilityChangedEvent;
+import com.plenasoft.libraryapi.service.batch.LoanBatchItem;
+import com.plenasoft.libraryapi.service.batch.LoanBatchStatus;
+import com.plenasoft.libraryapi.service.fee.LoanPolicyResolver;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.plenasoft.libraryapi.service.impl.LoanServiceImpl.AGGREGATE_TYPE;
+import static com.plenasoft.libraryapi.service.impl.LoanServiceImpl.LOAN_CREATED;
+import static com.plenasoft.libraryapi.service.impl.LoanServiceImpl.LOAN_RETURNED;
+
+/**
+ * Cada shard do lote é resolvido em uma transação, com um número fixo de comandos: uma consulta
+ * para todos os isbns, uma atualização dos contadores dos livros e batches JDBC para os
+ * empréstimos e os eventos do outbox. Os livros de um mesmo shard são confirmados juntos; com
+ * sharding, shards diferentes são confirmados de forma independente.
+ * <p>
+ * O cliente é buscado uma vez por lote, e o limite de empréstimos em aberto é contado uma vez e
+ * repartido entre os shards: os livros disponíveis além dele são recusados como
+ * {@link LoanBatchStatus#LIMIT_REACHED}.
+ */
+@Service
+public class LoanBatchServiceImpl implements LoanBatchService {
+
+    private BookRepository bookRepository;
+    private LoanRepository loanRepository;
+    private ReservationService reservationService;
+    private CustomerService customerService;
+    private OutboxService outboxService;
+    private ApplicationEventPublisher eventPublisher;
+    private LoanPolicyResolver policyResolver;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ShardRouter shardRouter;
+
+    public LoanBatchServiceImpl(BookRepository bookRepository,
+                                LoanRepository loanRepository,
+                                ReservationService reservationService,
+                                CustomerService customerService,
+                                OutboxService outboxService,
+                                ApplicationEventPublisher eventPublisher,
+                                LoanPolicyResolver policyResolver,
+                                DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ShardRouter shardRouter) {
+        this.bookRepository = bookRepository;
+        this.loanRepository = loanRepository;
+        this.reservationService = reservationService;
+        this.customerService = customerService;
+        this.outboxService = outboxService;
+        this.eventPublisher = eventPublisher;
+        this.policyResolver = policyResolver;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * Com um único shard o saldo do cliente é lido dentro da transação do lote, que bloqueia o
+     * cliente (ver {@link CustomerService#getRemainingLoans}); com vários, é lido uma vez e dividido
+     * entre as transações dos shards.
+     */
+    @Override
+    public List<LoanBatchItem> checkout(String customerName, List<String> isbns) {
+        String branch = BranchContextHolder.getBranch();
+        Customer customer = customerService.getOrCreate(customerName);
+        AtomicInteger allowance = shardRouter.shardCount() == 1
+                ? null
+                : new AtomicInteger(customerService.getRemainingLoans(customer));
+        return onShards(isbns, shardIsbns -> transactionTemplate.execute(status ->
+                checkoutOnShard(branch, customer, allowance != null
+                        ? allowance
+                        : new AtomicInteger(customerService.getRemainingLoans(customer)), shardIsbns)));
+    }
+
+    @Override
+    public List<LoanBatchItem> returnAll(List<String> isbns) {
+        String branch = BranchContextHolder.getBranch();
+        return onShards(isbns, shardIsbns -> transactionTemplate.execute(status ->
+                returnOnShard(branch, shardIsbns)));
+    }
+
+    /**
+     * Os livros são bloqueados na leitura, então a disponibilidade conferida em memória continua
+     * valendo até o commit. Os ids dos empréstimos inseridos são lidos de volta pelo livro, já que
+     * nem todo driver devolve as chaves geradas de um batch.
+     */
+    private List<LoanBatchItem> checkoutOnShard(String branch, Customer customer, AtomicInteger allowance, List<String> isbns) {
+        Map<String, Book> books = byIsbn(isbns, bookRepository.findForUpdateByIsbns(branch, Isbn.toIsbn13s(isbns), isbns),
+                Book::getIsbn);
+        List<Book> candidates = isbns.stream()
+                .map(books::get)
+                .filter(book -> book != null && book.getActiveLoans() == 0)
+                .collect(Collectors.toList());
+        int wanted = candidates.size();
+        int granted = Math.min(wanted, allowance.getAndUpdate(left -> Math.max(0, left - wanted)));
+        List<Book> available = candidates.subList(0, granted);
+
+        Map<Long, Long> loanIds = new HashMap<>();
+        if( !available.isEmpty() ) {
+            List<Long> bookIds = available.stream().map(Book::getId).collect(Collectors.toList());
+            bookRepository.incrementActiveLoansIn(bookIds);
+
+            Date loanDate = Date.valueOf(LocalDate.now());
+            jdbcTemplate.batchUpdate("insert into loan (branch, id_customer, id_book, loan_date, due_date, returned) values (?, ?, ?, ?, ?, false)",
+                    available, available.size(), (ps, book) -> {
+                        ps.setString(1, branch);
+                        ps.setLong(2, customer.getId());
+                        ps.setLong(3, book.getId());
+                        ps.setDate(4, loanDate);
+                        ps.setDate(5, Date.valueOf(policyResolver.dueDate(book, customer.getName(), loanDate.toLocalDate())));
+                    });
+            for( OpenLoan loan : loanRepository.findOpenLoans(branch, bookIds) ) {
+                loanIds.put(loan.getBookId(), loan.getId());
+            }
+
+            Map<Long, Object> payloads = new LinkedHashMap<>();
+            for( Book book : available ) {
+                Loan loan = Loan.builder()
+                        .id(loanIds.get(book.getId()))
+                        .branch(branch)
+                        .book(book)
+                        .customerId(customer.getId())
+                        .loanDate(loanDate.toLocalDate())
+                        .dueDate(policyResolver.dueDate(book, customer.getName(), loanDate.toLocalDate()))
+                        .build();
+                payloads.put(loan.getId(), LoanServiceImpl.toPayload(loan));
+                eventPublisher.publishEvent(new BookAvailabilityChangedEvent(branch, book.getIsbn(), 1));
+            }
+            outboxService.appendAll(AGGREGATE_TYPE, LOAN_CREATED, payloads);
+        }
+
+        List<LoanBatchItem> items = new ArrayList<>(isbns.size());
+        for( String isbn : isbns ) {
+            Book book = books.get(isbn);
+            if( book == null ) {
+                items.add(new LoanBatchItem(isbn, LoanBatchStatus.NOT_FOUND, null));
+            } else if( loanIds.containsKey(book.getId()) ) {
+                items.add(new LoanBatchItem(isbn, LoanBatchStatus.CREATED, loanIds.get(book.getId())));
+            } else if( book.getActiveLoans() == 0 ) {
+                items.add(new LoanBatchItem(isbn, LoanBatchStatus.LIMIT_REACHED, null));
+            } else {
+                items.add(new LoanBatchItem(isbn, LoanBatchStatus.UNAVAILABLE, null));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * A devolução de cada empréstimo é condicional ({@code returned = false}); o retorno de cada
+     * comando do batch diz quais foram devolvidos por este lote e quais por uma devolução concorrente.
+     * Livros com fila passam para a próxima reserva, como na devolução individual.
+     */
+    private List<LoanBatchItem> returnOnShard(String branch, List<String> isbns) {
+        List<Loan> loans = loanRepository.findOpenByIsbns(branch, Isbn.toIsbn13s(isbns), isbns);
+        LocalDate returnDate = LocalDate.now();
+        Date returnSqlDate = Date.valueOf(returnDate);
+        int[] updated = loans.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(
+                "update loan set returned = true, return_date = ? where id = ? and returned = false",
+                loans, loans.size(), (ps, loan) -> {
+                    ps.setDate(1, returnSqlDate);
+                    ps.setLong(2, loan.getId());
+                })[0];
+
+        List<Loan> returned = new ArrayList<>();
+        Map<Long, Object> payloads = new LinkedHashMap<>();
+        for( int i = 0; i < loans.size(); i++ ) {
+            if( updated[i] == 0 ) {
+                continue;
+            }
+            Loan loan = loans.get(i);
+            // cópia fora do contexto de persistência: a linha já foi gravada pelo batch
+            Loan returnedLoan = Loan.builder()
+                    .id(loan.getId())
+                    .branch(loan.getBranch())
+                    .book(loan.getBook())
+                    .customerId(loan.getCustomerId())
+                    .loanDate(loan.getLoanDate())
+                    .dueDate(loan.getDueDate())
+                    .returned(true)
+                    .returnDate(returnDate)
+                    .build();
+            returned.add(returnedLoan);
+            payloads.put(loan.getId(), LoanServiceImpl.toPayload(returnedLoan));
+        }
+        outboxService.appendAll(AGGREGATE_TYPE, LOAN_RETURNED, payloads);
+
+        // bloqueia os livros devolvidos antes de olhar a fila, para que reservas concorrentes esperem o commit
+        if( !returned.isEmpty() ) {
+            List<String> returnedIsbns = returned.stream().map(loan -> loan.getBook().getIsbn()).collect(Collectors.toList());
+            bookRepository.findForUpdateByIsbns(branch, Isbn.toIsbn13s(returnedIsbns), returnedIsbns);
+        }
+        Set<Long> queued = reservationService.getQueuedBooks(returned.stream()
+                .map(loan -> loan.getBook().getId())
+                .collect(Collectors.toList()));
+        List<Long> released = new ArrayList<>();
+        for( Loan loan : returned ) {
+            if( !queued.contains(loan.getBook().getId()) || !promoteNext(loan) ) {
+                released.add(loan.getBook().getId());
+                eventPublisher.publishEvent(new BookAvailabilityChangedEvent(branch, loan.getBook().getIsbn(), 0));
+            }
+        }
+        if( !released.isEmpty() ) {
+            bookRepository.decrementActiveLoansIn(released);
+        }
+
+        Map<String, Loan> returnedByIsbn = byIsbn(isbns, returned, loan -> loan.getBook().getIsbn());
+        List<LoanBatchItem> items = new ArrayList<>(isbns.size());
+        for( String isbn : isbns ) {
+            Loan loan = returnedByIsbn.get(isbn);
+            items.add(loan != null
+                    ? new LoanBatchItem(isbn, LoanBatchStatus.RETURNED, loan.getId())
+                    : new LoanBatchItem(isbn, LoanBatchStatus.NOT_LOANED, null));
+        }
+        return items;
+    }
+
+    /**
+     * @return {@code true} quando o livro foi emprestado ao próximo da fila
+     */
+    private boolean promoteNext(Loan loan) {
+        Optional<Reservation> next = reservationService.promoteNext(loan.getBook());
+        if( !next.isPresent() ) {
+            return false;
+        }
+        String customer = customerService.getById(next.get().getCustomerId()).map(Customer::getName).orElse(null);
+        Loan promotedLoan = loanRepository.save(Loan.builder()
+                .branch(loan.getBranch())
+                .book(loan.getBook())
+                .customerId(next.get().getCustomerId())
+                .loanDate(LocalDate.now())
+                .dueDate(policyResolver.dueDate(loan.getBook(), customer, LocalDate.now()))
+                .build());
+        next.get().setLoan(promotedLoan);
+        outboxService.append(AGGREGATE_TYPE, promotedLoan.getId(), LOAN_CREATED, LoanServiceImpl.toPayload(promotedLoan));
+        return true;
+    }
+
+    /**
+     * Associa cada isbn do lote ao registro cujo livro tem o mesmo isbn canônico. Cadastros antigos
+     * podem ter o mesmo livro em grafias diferentes; como nas buscas por isbn, vence o primeiro da lista.
+     */
+    private static <T> Map<String, T> byIsbn(List<String> isbns, List<T> rows, Function<T, String> isbnOf) {
+        Map<String, T> byKey = new HashMap<>();
+        rows.forEach(row -> byKey.putIfAbsent(Isbn.key(isbnOf.apply(row)), row));
+        Map<String, T> result = new HashMap<>();
+        for( String isbn : isbns ) {
+            T row = byKey.get(Isbn.key(isbn));
+            if( row != null ) {
+                result.put(isbn, row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Separa os isbns distintos por shard, executa cada shard em paralelo e devolve os resultados
+     * na ordem do lote. Grafias diferentes do mesmo isbn (hífens, ISBN-10) contam como o mesmo
+     * livro, e as repetições são marcadas como {@link LoanBatchStatus#DUPLICATE}.
+     */
+    private List<LoanBatchItem> onShards(List<String> isbns, Function<List<String>, List<LoanBatchItem>> action) {
+        Map<String, String> isbnsByKey = new LinkedHashMap<>();
+        isbns.forEach(isbn -> isbnsByKey.putIfAbsent(Isbn.key(isbn), isbn));
+        Map<Integer, List<String>> isbnsByShard = isbnsByKey.values().stream()
+                .collect(Collectors.groupingBy(shardRouter::shardFor));
+        Map<String, LoanBatchItem> results = new HashMap<>();
+        shardRouter.onShards(isbnsByShard.keySet(), shard -> action.apply(isbnsByShard.get(shard)))
+                .forEach(items -> items.forEach(item -> results.put(item.getIsbn(), item)));
+
+        Set<String> seen = new HashSet<>();
+        List<LoanBatchItem> items = new ArrayList<>(isbns.size());
+        for( String isbn : isbns ) {
+            items.add(seen.add(Isbn.key(isbn)) ? results.get(isbn) : new LoanBatchItem(isbn, LoanBatchStatus.DUPLICATE, null));
+        }
+        return items;
+    }
+}
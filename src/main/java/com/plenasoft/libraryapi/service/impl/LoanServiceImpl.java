@@ -0,0 +1,164 @@
+package com.plenasoft.libraryapi.service.impl;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.exception.BusinessException;
+import com.plenasoft.libraryapi.model.entity.Customer;
+import com.plenasoft.libraryapi.model.entity.Loan;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.LoanService;
+import com.plenasoft.libraryapi.service.OutboxService;
+import com.plenasoft.libraryapi.service.ReservationService;
+import com.plenasoft.libraryapi.service.availability.BookAvailabilityChangedEvent;
+import com.plenasoft.libraryapi.service.fee.LoanPolicyResolver;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class LoanServiceImpl implements LoanService {
+
+    public static final String AGGREGATE_TYPE = "Loan";
+    public static final String LOAN_CREATED = "LOAN_CREATED";
+    public static final String LOAN_RETURNED = "LOAN_RETURNED";
+
+    private LoanRepository repository;
+    private BookRepository bookRepository;
+    private ReservationService reservationService;
+    private CustomerService customerService;
+    private OutboxService outboxService;
+    private ApplicationEventPublisher eventPublisher;
+    private LoanPolicyResolver policyResolver;
+    private ShardRouter shardRouter;
+
+    public LoanServiceImpl(LoanRepository repository,
+                           BookRepository bookRepository,
+                           ReservationService reservationService,
+                           CustomerService customerService,
+                           OutboxService outboxService,
+                           ApplicationEventPublisher eventPublisher,
+                           LoanPolicyResolver policyResolver,
+                           ShardRouter shardRouter) {
+        this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.reservationService = reservationService;
+        this.customerService = customerService;
+        this.outboxService = outboxService;
+        this.eventPublisher = eventPublisher;
+        this.policyResolver = policyResolver;
+        this.shardRouter = shardRouter;
+    }
+
+    /**
+     * O empréstimo é gravado no shard do livro; o shard é definido antes do primeiro comando,
+     * quando a conexão da transação é aberta. O cliente vem do cache, preenchido quando o
+     * empréstimo chegou pelo nome.
+     */
+    @Override
+    @Transactional
+    public Loan save(Loan loan) {
+        Customer customer = customerService.getById(loan.getCustomerId())
+                .orElseThrow( () -> new BusinessException("Customer not found.") );
+        return shardRouter.onShard(shardRouter.shardOf(loan.getBook()), () -> saveOnShard(loan, customer));
+    }
+
+    private Loan saveOnShard(Loan loan, Customer customer) {
+        if( customerService.getRemainingLoans(customer) == 0 ) {
+            throw new BusinessException("Customer reached the maximum of open loans.");
+        }
+        // o contador do livro funciona como trava: só um empréstimo em aberto por livro
+        if( bookRepository.incrementActiveLoans(loan.getBook().getId()) == 0 ) {
+            throw new BusinessException("Book already loaned.");
+        }
+        loan.setBranch(loan.getBook().getBranch());
+        if( loan.getDueDate() == null && loan.getLoanDate() != null ) {
+            loan.setDueDate(policyResolver.dueDate(loan.getBook(), customer.getName(), loan.getLoanDate()));
+        }
+        Loan savedLoan = repository.save(loan);
+        outboxService.append(AGGREGATE_TYPE, savedLoan.getId(), LOAN_CREATED, toPayload(savedLoan));
+        publishAvailability(savedLoan, 1);
+        return savedLoan;
+    }
+
+    @Override
+    public Optional<Loan> getById(Long id) {
+        String branch = BranchContextHolder.getBranch();
+        return shardRouter.locate(shardRouter.homeShardOf(id), shard ->
+                repository.findByIdAndBranch(id, branch).map( loan -> {
+                    loan.getBook().setShard(shard);
+                    return loan;
+                }));
+    }
+
+    @Override
+    @Transactional
+    public Loan returnLoan(Loan loan) {
+        if(loan == null || loan.getId() == null) {
+            throw new IllegalArgumentException("Empréstimo não pode retornar nulo.");
+        }
+        return shardRouter.onShard(shardRouter.shardOf(loan.getBook()), () -> returnOnShard(loan));
+    }
+
+    private Loan returnOnShard(Loan loan) {
+        LocalDate returnDate = LocalDate.now();
+        if( repository.markReturned(loan.getId(), returnDate) == 0 ) {
+            throw new BusinessException("Loan already returned.");
+        }
+        loan.setReturned(true);
+        loan.setReturnDate(returnDate);
+        outboxService.append(AGGREGATE_TYPE, loan.getId(), LOAN_RETURNED, toPayload(loan));
+
+        // bloqueia o livro antes de olhar a fila, para que uma reserva concorrente espere o commit
+        bookRepository.findForUpdateById(loan.getBook().getId());
+
+        // havendo fila, o livro passa direto para o próximo da fila sem ficar disponível,
+        // mesmo que o cliente esteja no limite de empréstimos em aberto
+        Optional<Reservation> next = reservationService.promoteNext(loan.getBook());
+        if( next.isPresent() ) {
+            String customer = customerService.getById(next.get().getCustomerId()).map(Customer::getName).orElse(null);
+            Loan promotedLoan = repository.save(Loan.builder()
+                    .branch(loan.getBranch())
+                    .book(loan.getBook())
+                    .customerId(next.get().getCustomerId())
+                    .loanDate(LocalDate.now())
+                    .dueDate(policyResolver.dueDate(loan.getBook(), customer, LocalDate.now()))
+                    .build());
+            next.get().setLoan(promotedLoan);
+            outboxService.append(AGGREGATE_TYPE, promotedLoan.getId(), LOAN_CREATED, toPayload(promotedLoan));
+        } else {
+            bookRepository.decrementActiveLoans(loan.getBook().getId());
+            publishAvailability(loan, 0);
+        }
+        return loan;
+    }
+
+    /**
+     * Só um empréstimo em aberto por livro, então a nova situação é conhecida sem reler o contador.
+     * Entregue aos assinantes do stream depois do commit.
+     */
+    private void publishAvailability(Loan loan, int activeLoans) {
+        eventPublisher.publishEvent(new BookAvailabilityChangedEvent(
+                loan.getBranch(), loan.getBook().getIsbn(), activeLoans));
+    }
+
+    static Map<String, Object> toPayload(Loan loan) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("loanId", loan.getId());
+        payload.put("branch", loan.getBranch());
+        payload.put("bookId", loan.getBook().getId());
+        payload.put("isbn", loan.getBook().getIsbn());
+        payload.put("customerId", loan.getCustomerId());
+        payload.put("loanDate", loan.getLoanDate());
+        payload.put("dueDate", loan.getDueDate());
+        payload.put("returnDate", loan.getReturnDate());
+        return payload;
+    }
+}
@@ -0,0 +1,168 @@
+package com.plenasoft.libraryapi.service.impl;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.model.entity.DailyBookLoanStats;
+import com.plenasoft.libraryapi.model.entity.DailyCustomerLoanStats;
+import com.plenasoft.libraryapi.model.entity.DailyLoanStats;
+import com.plenasoft.libraryapi.model.entity.LoanStatsEvent;
+import com.plenasoft.libraryapi.model.repository.*;
+import com.plenasoft.libraryapi.service.LoanStatsService;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Mantém os agregados diários de cada filial com "update, senão insert"; as consultas respondem
+ * apenas pela filial da requisição. Os métodos de escrita são chamados
+ * apenas pelo relay do outbox, que publica um evento por vez, então não há inserts concorrentes
+ * para a mesma chave.
+ * <p>
+ * Com sharding, cada shard tem os agregados dos seus livros e as consultas juntam os resultados
+ * de todos. O total diário de clientes ativos passa a ser a soma dos shards, um limite superior
+ * quando o mesmo cliente emprestou livros de shards diferentes no dia; o total do período é exato.
+ */
+@Service
+public class LoanStatsServiceImpl implements LoanStatsService {
+
+    private DailyLoanStatsRepository dailyRepository;
+    private DailyBookLoanStatsRepository bookStatsRepository;
+    private DailyCustomerLoanStatsRepository customerStatsRepository;
+    private LoanStatsEventRepository eventRepository;
+    private BookRepository bookRepository;
+    private ShardRouter shardRouter;
+
+    public LoanStatsServiceImpl(DailyLoanStatsRepository dailyRepository,
+                                DailyBookLoanStatsRepository bookStatsRepository,
+                                DailyCustomerLoanStatsRepository customerStatsRepository,
+                                LoanStatsEventRepository eventRepository,
+                                BookRepository bookRepository,
+                                ShardRouter shardRouter) {
+        this.dailyRepository = dailyRepository;
+        this.bookStatsRepository = bookStatsRepository;
+        this.customerStatsRepository = customerStatsRepository;
+        this.eventRepository = eventRepository;
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    @Transactional
+    public void recordLoan(Long eventId, String branch, LocalDate date, Long bookId, Long customerId) {
+        if( !markProcessed(eventId) ) {
+            return;
+        }
+        long newCustomers = 0;
+        if( customerStatsRepository.increment(branch, date, customerId, 1) == 0 ) {
+            customerStatsRepository.save(DailyCustomerLoanStats.builder()
+                    .statDate(date).branch(branch).customerId(customerId).loans(1).build());
+            newCustomers = 1;
+        }
+        incrementBook(branch, date, bookId, 1, 0);
+        incrementDay(branch, date, 1, 0, newCustomers);
+    }
+
+    @Override
+    @Transactional
+    public void recordReturn(Long eventId, String branch, LocalDate date, Long bookId) {
+        if( !markProcessed(eventId) ) {
+            return;
+        }
+        incrementBook(branch, date, bookId, 0, 1);
+        incrementDay(branch, date, 0, 1, 0);
+    }
+
+    @Override
+    public List<DailyLoanStats> getLoansPerDay(LocalDate from, LocalDate to) {
+        String branch = BranchContextHolder.getBranch();
+        if( shardRouter.shardCount() == 1 ) {
+            return dailyRepository.findByBranchAndStatDateBetweenOrderByStatDate(branch, from, to);
+        }
+        Map<LocalDate, DailyLoanStats> days = new TreeMap<>();
+        shardRouter.onAllShards( shard -> dailyRepository.findByBranchAndStatDateBetweenOrderByStatDate(branch, from, to) )
+                .forEach( stats -> stats.forEach( day -> days.merge(day.getStatDate(), day, (total, other) -> DailyLoanStats.builder()
+                        .statDate(total.getStatDate())
+                        .branch(branch)
+                        .loans(total.getLoans() + other.getLoans())
+                        .returns(total.getReturns() + other.getReturns())
+                        .activeCustomers(total.getActiveCustomers() + other.getActiveCustomers())
+                        .build()) ) );
+        return new ArrayList<>(days.values());
+    }
+
+    /**
+     * Cada livro fica em um único shard, então o ranking geral sai dos rankings de cada shard.
+     */
+    @Override
+    public List<TopBook> getTopBooks(LocalDate from, LocalDate to, int limit) {
+        String branch = BranchContextHolder.getBranch();
+        if( shardRouter.shardCount() == 1 ) {
+            return bookStatsRepository.findTopBooks(branch, from, to, PageRequest.of(0, limit));
+        }
+        return shardRouter.onAllShards( shard -> bookStatsRepository.findTopBooks(branch, from, to, PageRequest.of(0, limit)) )
+                .stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(TopBook::getLoans).reversed().thenComparing(TopBook::getBookId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long countActiveCustomers(LocalDate from, LocalDate to) {
+        String branch = BranchContextHolder.getBranch();
+        if( shardRouter.shardCount() == 1 ) {
+            return customerStatsRepository.countDistinctCustomers(branch, from, to);
+        }
+        Set<Long> customers = new HashSet<>();
+        shardRouter.onAllShards( shard -> customerStatsRepository.findDistinctCustomers(branch, from, to) )
+                .forEach(customers::addAll);
+        return customers.size();
+    }
+
+    @Override
+    public int purgeProcessedEvents(LocalDateTime before) {
+        return shardRouter.onAllShards( shard -> eventRepository.deleteByProcessedAtBefore(before) )
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    /**
+     * O relay entrega um evento por vez e o mantém bloqueado até removê-lo do outbox, então
+     * conferir e gravar a marca na transação do incremento basta para contar cada evento uma vez.
+     *
+     * @return false quando o evento já foi contado
+     */
+    private boolean markProcessed(Long eventId) {
+        if( eventRepository.existsById(eventId) ) {
+            return false;
+        }
+        eventRepository.save(LoanStatsEvent.builder().eventId(eventId).processedAt(LocalDateTime.now()).build());
+        return true;
+    }
+
+    private void incrementBook(String branch, LocalDate date, Long bookId, long loans, long returns) {
+        if( bookStatsRepository.increment(branch, date, bookId, loans, returns) == 0 ) {
+            bookStatsRepository.save(DailyBookLoanStats.builder()
+                    .statDate(date).branch(branch).book(bookRepository.getOne(bookId)).loans(loans).returns(returns).build());
+        }
+    }
+
+    private void incrementDay(String branch, LocalDate date, long loans, long returns, long customers) {
+        if( dailyRepository.increment(branch, date, loans, returns, customers) == 0 ) {
+            dailyRepository.save(DailyLoanStats.builder()
+                    .statDate(date).branch(branch).loans(loans).returns(returns).activeCustomers(customers).build());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.plenasoft.libraryapi.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plenasoft.libraryapi.model.entity.OutboxEvent;
+import com.plenasoft.libraryapi.model.repository.OutboxEventRepository;
+import com.plenasoft.libraryapi.service.OutboxService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class OutboxServiceImpl implements OutboxService {
+
+    private OutboxEventRepository repository;
+    private ObjectMapper objectMapper;
+    private JdbcTemplate jdbcTemplate;
+
+    public OutboxServiceImpl(OutboxEventRepository repository, ObjectMapper objectMapper, DataSource dataSource) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Exige uma transação aberta: o evento só existe se a alteração que o originou for confirmada.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String aggregateType, Long aggregateId, String eventType, Object payload) {
+        OutboxEvent event = OutboxEvent.builder()
+                .aggregateType(aggregateType)
+                .aggregateId(aggregateId)
+                .eventType(eventType)
+                .payload(toJson(payload))
+                .createdAt(LocalDateTime.now())
+                .build();
+        repository.save(event);
+    }
+
+    /**
+     * Os ids são gerados pelo banco (IDENTITY), o que impede o batch do Hibernate; o insert vai
+     * direto pelo JDBC, na conexão da transação corrente.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(String aggregateType, String eventType, Map<Long, ?> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<Long, ?>> events = new ArrayList<>(payloads.entrySet());
+        jdbcTemplate.batchUpdate("insert into outbox_event (aggregate_type, aggregate_id, event_type, payload, created_at, attempts) " +
+                        "values (?, ?, ?, ?, ?, 0)",
+                events, events.size(), (ps, event) -> {
+                    ps.setString(1, aggregateType);
+                    ps.setLong(2, event.getKey());
+                    ps.setString(3, eventType);
+                    ps.setString(4, toJson(event.getValue()));
+                    ps.setTimestamp(5, createdAt);
+                });
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Evento não pode ser serializado.", e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.plenasoft.libraryapi.service.impl;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.exception.BusinessException;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.model.entity.ReservationStatus;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.ReservationRepository;
+import com.plenasoft.libraryapi.service.ReservationService;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+@Service
+public class ReservationServiceImpl implements ReservationService {
+
+    private ReservationRepository repository;
+    private BookRepository bookRepository;
+    private ShardRouter shardRouter;
+
+    public ReservationServiceImpl(ReservationRepository repository, BookRepository bookRepository, ShardRouter shardRouter) {
+        this.repository = repository;
+        this.bookRepository = bookRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    @Transactional
+    public Reservation reserve(Reservation reservation) {
+        return shardRouter.onShard(shardRouter.shardOf(reservation.getBook()), () -> reserveOnShard(reservation));
+    }
+
+    /**
+     * A disponibilidade é lida do livro bloqueado, e não do informado: a devolução bloqueia o mesmo
+     * livro antes de conferir a fila, então a reserva nunca fica em espera por um livro já liberado.
+     */
+    private Reservation reserveOnShard(Reservation reservation) {
+        Book book = bookRepository.findForUpdateById(reservation.getBook().getId())
+                .orElseThrow( () -> new BusinessException("Book not found.") );
+        if( book.isAvailable() ) {
+            throw new BusinessException("Book is available for loan.");
+        }
+        if( repository.existsByBookAndCustomerIdAndStatus(
+                reservation.getBook(), reservation.getCustomerId(), ReservationStatus.WAITING) ) {
+            throw new BusinessException("Customer already waiting for this book.");
+        }
+        reservation.setStatus(ReservationStatus.WAITING);
+        reservation.setCreatedAt(LocalDateTime.now());
+        return repository.save(reservation);
+    }
+
+    @Override
+    public Optional<Reservation> getById(Long id) {
+        String branch = BranchContextHolder.getBranch();
+        return shardRouter.locate(shardRouter.homeShardOf(id), shard ->
+                repository.findByIdAndBookBranch(id, branch).map( reservation -> {
+                    reservation.getBook().setShard(shard);
+                    return reservation;
+                }));
+    }
+
+    @Override
+    public long getPosition(Reservation reservation) {
+        return shardRouter.onShard(shardRouter.shardOf(reservation.getBook()), () ->
+                repository.countAhead(reservation.getBook().getId(), ReservationStatus.WAITING, reservation.getId()) + 1);
+    }
+
+    @Override
+    @Transactional
+    public void cancel(Reservation reservation) {
+        if(reservation == null || reservation.getId() == null) {
+            throw new IllegalArgumentException("Reserva não pode retornar nula.");
+        }
+        int cancelled = shardRouter.onShard(shardRouter.shardOf(reservation.getBook()), () ->
+                repository.changeStatus(reservation.getId(), ReservationStatus.WAITING, ReservationStatus.CANCELLED));
+        if( cancelled == 0 ) {
+            throw new BusinessException("Reservation is not waiting.");
+        }
+    }
+
+    /**
+     * Reivindica a reserva mais antiga em espera dentro da transação de devolução.
+     * A linha fica bloqueada até o commit e a troca de status é condicional, então se o banco
+     * entregar uma linha que outro nó já promoveu enquanto esta transação aguardava, ela é pulada.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<Reservation> promoteNext(Book book) {
+        Long afterId = 0L;
+        while (true) {
+            List<Reservation> next = repository.findNextForUpdate(
+                    book.getId(), ReservationStatus.WAITING, afterId, PageRequest.of(0, 1));
+            if( next.isEmpty() ) {
+                return Optional.empty();
+            }
+            Reservation reservation = next.get(0);
+            if( repository.changeStatus(reservation.getId(), ReservationStatus.WAITING, ReservationStatus.PROMOTED) == 1 ) {
+                reservation.setStatus(ReservationStatus.PROMOTED);
+                reservation.setPromotedAt(LocalDateTime.now());
+                return Optional.of(reservation);
+            }
+            afterId = reservation.getId();
+        }
+    }
+
+    /**
+     * Roda no shard corrente: os livros informados devem estar todos no mesmo shard.
+     */
+    @Override
+    public Set<Long> getQueuedBooks(Collection<Long> bookIds) {
+        if( bookIds.isEmpty() ) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(repository.findQueuedBookIds(bookIds, ReservationStatus.WAITING));
+    }
+}
@@ -0,0 +1,103 @@
+package com.plenasoft.libraryapi.service.isbn;
+
+import com.plenasoft.libraryapi.isbn.Isbn;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Preenche o {@code isbn13} dos livros cadastrados antes da normalização, em blocos de
+ * {@code chunk-size} livros por id (uma transação por bloco, em cada shard). Livros com isbn
+ * inválido continuam sem {@code isbn13} e seguem sendo encontrados pelo texto exato; o cursor
+ * por id evita reler esses livros na mesma execução. Livros cujo shard mudou com o hash pelo
+ * isbn canônico são movidos pelo rebalanceamento, não por este job.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class IsbnBackfillJob {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final int chunkSize;
+
+    public IsbnBackfillJob(DataSource dataSource,
+                           PlatformTransactionManager transactionManager,
+                           ShardRouter shardRouter,
+                           @Value("${library.isbn-backfill.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(cron = "${library.isbn-backfill.cron:0 15 3 * * *}")
+    public void scheduledBackfill() {
+        try {
+            int filled = backfill();
+            if (filled > 0) {
+                log.info("isbn13 preenchido em {} livro(s).", filled);
+            }
+        } catch (RuntimeException e) {
+            log.error("Falha ao preencher o isbn13 dos livros.", e);
+        }
+    }
+
+    /**
+     * @return quantidade de livros com o {@code isbn13} preenchido (somando os shards)
+     */
+    public int backfill() {
+        int filled = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            filled += shardRouter.onShard(shard, this::backfillShard);
+        }
+        return filled;
+    }
+
+    private int backfillShard() {
+        int filled = 0;
+        long lastId = 0;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query("select id, isbn from book where isbn13 is null and id > ? order by id limit ?",
+                    (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2)}, lastId, chunkSize);
+            if (rows.isEmpty()) {
+                return filled;
+            }
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+
+            List<long[]> updates = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                long isbn13 = Isbn.toIsbn13((String) row[1]);
+                if (isbn13 != Isbn.INVALID) {
+                    updates.add(new long[]{isbn13, (Long) row[0]});
+                }
+            }
+            if (!updates.isEmpty()) {
+                filled += transactionTemplate.execute(status -> {
+                    int count = 0;
+                    for (int[] batch : jdbcTemplate.batchUpdate("update book set isbn13 = ? where id = ? and isbn13 is null",
+                            updates, updates.size(), (ps, update) -> {
+                                ps.setLong(1, update[0]);
+                                ps.setLong(2, update[1]);
+                            })) {
+                        for (int updated : batch) {
+                            count += updated;
+                        }
+                    }
+                    return count;
+                });
+            }
+        }
+    }
+}
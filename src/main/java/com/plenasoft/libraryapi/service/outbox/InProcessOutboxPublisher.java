@@ -0,0 +1,26 @@
+package com.plenasoft.libraryapi.service.outbox;
+
+import com.plenasoft.libraryapi.model.entity.OutboxEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Substituto local do broker: entrega os eventos como {@link OutboxMessage} para os
+ * {@code @EventListener} da aplicação. Usado por padrão e nos testes.
+ */
+@Component
+@ConditionalOnProperty(name = "library.outbox.publisher", havingValue = "in-process", matchIfMissing = true)
+public class InProcessOutboxPublisher implements OutboxPublisher {
+
+    private ApplicationEventPublisher eventPublisher;
+
+    public InProcessOutboxPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void publish(OutboxEvent event) {
+        eventPublisher.publishEvent(OutboxMessage.of(event));
+    }
+}
@@ -0,0 +1,29 @@
+package com.plenasoft.libraryapi.service.outbox;
+
+import com.plenasoft.libraryapi.model.entity.OutboxEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Evento do outbox entregue dentro do próprio processo, aos {@link OutboxSubscriber} e aos
+ * {@code @EventListener} do {@link InProcessOutboxPublisher}.
+ */
+@Data
+@AllArgsConstructor
+public class OutboxMessage {
+
+    private Long id;
+    private String aggregateType;
+    private Long aggregateId;
+    private String eventType;
+    private String payload;
+
+    public static OutboxMessage of(OutboxEvent event) {
+        return new OutboxMessage(
+                event.getId(),
+                event.getAggregateType(),
+                event.getAggregateId(),
+                event.getEventType(),
+                event.getPayload());
+    }
+}
@@ -0,0 +1,12 @@
+package com.plenasoft.libraryapi.service.outbox;
+
+import com.plenasoft.libraryapi.model.entity.OutboxEvent;
+
+/**
+ * Destino dos eventos do outbox (broker, fila, etc). Deve lançar exceção quando a entrega falhar,
+ * para que o relay tente novamente o mesmo evento antes dos seguintes.
+ */
+public interface OutboxPublisher {
+
+    void publish(OutboxEvent event) throws Exception;
+}
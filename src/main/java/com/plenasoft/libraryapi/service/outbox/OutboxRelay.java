@@ -0,0 +1,199 @@
+package com.plenasoft.libraryapi.service.outbox;
+
+import com.plenasoft.libraryapi.lifecycle.ShutdownAware;
+import com.plenasoft.libraryapi.model.entity.OutboxEvent;
+import com.plenasoft.libraryapi.model.repository.OutboxEventRepository;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publica os eventos pendentes do outbox em lotes, na ordem de gravação.
+ * Quando um evento falha, o lote é interrompido e o mesmo evento é tentado novamente
+ * com backoff exponencial, para que nenhum evento seguinte seja entregue antes dele.
+ * Com sharding, cada shard tem o seu outbox e a ordem é garantida dentro de cada um.
+ * Os eventos entregues também são passados aos {@link OutboxSubscriber} da aplicação.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class OutboxRelay implements ShutdownAware {
+
+    private final OutboxEventRepository repository;
+    private final OutboxPublisher publisher;
+    private final List<OutboxSubscriber> subscribers;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate subscriberTemplate;
+    private final ShardRouter shardRouter;
+    private final int batchSize;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter published;
+    private final Counter failures;
+    private final Counter subscriberFailures;
+
+    public OutboxRelay(OutboxEventRepository repository,
+                       OutboxPublisher publisher,
+                       List<OutboxSubscriber> subscribers,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       ShardRouter shardRouter,
+                       @Value("${library.outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${library.outbox.relay.initial-backoff:1s}") Duration initialBackoff,
+                       @Value("${library.outbox.relay.max-backoff:5m}") Duration maxBackoff) {
+        this.repository = repository;
+        this.publisher = publisher;
+        this.subscribers = subscribers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.subscriberTemplate = new TransactionTemplate(transactionManager);
+        this.subscriberTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.shardRouter = shardRouter;
+        this.batchSize = batchSize;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+
+        meterRegistry.gauge("library.outbox.pending", pending);
+        meterRegistry.gauge("library.outbox.lag.ms", lagMillis);
+        this.published = meterRegistry.counter("library.outbox.published");
+        this.failures = meterRegistry.counter("library.outbox.failures");
+        this.subscriberFailures = meterRegistry.counter("library.outbox.subscriber.failures");
+    }
+
+    @Scheduled(fixedDelayString = "${library.outbox.relay.interval:1000}")
+    public void scheduledRelay() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            log.error("Falha ao publicar eventos do outbox.", e);
+        }
+    }
+
+    /**
+     * Publica os eventos das últimas requisições na parada, em vez de deixá-los para outro nó.
+     */
+    @Override
+    public void flush() {
+        scheduledRelay();
+    }
+
+    /**
+     * Publica lotes até esvaziar o outbox ou encontrar uma falha.
+     *
+     * @return quantidade de eventos publicados
+     */
+    public int relay() {
+        int total = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            total += shardRouter.onShard(shard, this::relayShard);
+        }
+        updateLag();
+        return total;
+    }
+
+    private int relayShard() {
+        int total = 0;
+        BatchResult result;
+        do {
+            result = transactionTemplate.execute(status -> relayBatch());
+            total += result.delivered;
+        } while (result.full && !result.failed);
+        return total;
+    }
+
+    private BatchResult relayBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> batch = repository.findNextBatch(PageRequest.of(0, batchSize));
+        List<Long> delivered = new ArrayList<>();
+        boolean failed = false;
+
+        for (OutboxEvent event : batch) {
+            if (event.getNextAttemptAt() != null && event.getNextAttemptAt().isAfter(now)) {
+                failed = true;
+                break;
+            }
+            try {
+                publisher.publish(event);
+                delivered.add(event.getId());
+                notifySubscribers(event);
+            } catch (Exception e) {
+                event.setAttempts(event.getAttempts() + 1);
+                event.setNextAttemptAt(now.plus(backoff(event.getAttempts())));
+                failures.increment();
+                log.warn("Falha ao publicar evento {} do outbox (tentativa {}).", event.getId(), event.getAttempts(), e);
+                failed = true;
+                break;
+            }
+        }
+
+        if (!delivered.isEmpty()) {
+            repository.deleteByIdIn(delivered);
+            published.increment(delivered.size());
+        }
+        return new BatchResult(delivered.size(), batch.size() == batchSize, failed);
+    }
+
+    /**
+     * Fora da transação do lote, para que a falha de um assinante não desfaça a entrega.
+     */
+    private void notifySubscribers(OutboxEvent event) {
+        OutboxMessage message = OutboxMessage.of(event);
+        for (OutboxSubscriber subscriber : subscribers) {
+            try {
+                subscriberTemplate.execute(status -> {
+                    subscriber.onEvent(message);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                subscriberFailures.increment();
+                log.warn("Falha ao processar o evento {} do outbox em {}.", event.getId(),
+                        subscriber.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    Duration backoff(int attempts) {
+        long factor = 1L << Math.min(attempts - 1, 20);
+        Duration backoff = initialBackoff.multipliedBy(factor);
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void updateLag() {
+        LocalDateTime now = LocalDateTime.now();
+        pending.set(shardRouter.onAllShards(shard -> repository.count())
+                .stream().mapToLong(Long::longValue).sum());
+        lagMillis.set(shardRouter.onAllShards(shard -> repository.findFirstByOrderByIdAsc()
+                        .map(oldest -> Duration.between(oldest.getCreatedAt(), now).toMillis())
+                        .orElse(0L))
+                .stream().mapToLong(Long::longValue).max().orElse(0L));
+    }
+
+    private static class BatchResult {
+        private final int delivered;
+        private final boolean full;
+        private final boolean failed;
+
+        private BatchResult(int delivered, boolean full, boolean failed) {
+            this.delivered = delivered;
+            this.full = full;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.plenasoft.libraryapi.service.outbox;
+
+/**
+ * Consumidor local dos eventos do outbox, chamado pelo relay depois de cada entrega, qualquer que
+ * seja o {@link OutboxPublisher} configurado. Cada chamada roda em uma transação própria no shard
+ * do evento: uma falha é registrada e não segura a entrega dos eventos seguintes. Como a entrega,
+ * é "ao menos uma vez": o mesmo evento volta se o relay falhar antes de removê-lo do outbox.
+ */
+public interface OutboxSubscriber {
+
+    void onEvent(OutboxMessage message);
+}
@@ -0,0 +1,49 @@
+package com.plenasoft.libraryapi.service.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Impede a subida do nó enquanto houver livros fora do shard do seu isbn, que as buscas por isbn
+ * não encontrariam e os cadastros poderiam duplicar. Roda antes do nó ficar pronto e é ignorada na
+ * execução do rebalanceamento ({@link ShardRebalanceRunner}), que é justamente a correção.
+ * Desligue com {@code library.sharding.placement-check=false} se o catálogo for grande demais para
+ * ser lido a cada subida.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "library.sharding.enabled", havingValue = "true")
+public class ShardPlacementCheck implements ApplicationRunner {
+
+    private final ShardRebalancer rebalancer;
+    private final boolean enabled;
+    private final boolean rebalancing;
+
+    public ShardPlacementCheck(ShardRebalancer rebalancer,
+                               @Value("${library.sharding.placement-check:true}") boolean enabled,
+                               @Value("${library.sharding.rebalance.run:false}") boolean rebalancing) {
+        this.rebalancer = rebalancer;
+        this.enabled = enabled;
+        this.rebalancing = rebalancing;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || rebalancing) {
+            return;
+        }
+        long misplaced = rebalancer.countMisplaced();
+        if (misplaced > 0) {
+            throw new IllegalStateException(misplaced + " livro(s) fora do shard do seu isbn. " +
+                    "Rode o rebalanceamento (library.sharding.rebalance.run=true) antes de subir os nós.");
+        }
+        log.info("Todos os livros estão no shard do seu isbn.");
+    }
+}
@@ -0,0 +1,42 @@
+package com.plenasoft.libraryapi.service.shard;
+
+import com.plenasoft.libraryapi.cache.InvalidationRelay;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Executa o rebalanceamento na subida quando {@code library.sharding.rebalance.run=true}. Para usar
+ * como ferramenta avulsa, com a lista de shards já atualizada:
+ *
+ * java -jar library-api.jar --library.sharding.rebalance.run=true --spring.main.web-application-type=none
+ *      --library.scheduling.enabled=false
+ * <p>
+ * É obrigatório depois de mudar a lista de shards e na primeira subida de uma versão que distribui
+ * pelo ISBN-13 canônico, quando há livros gravados em outra grafia (ISBN-10, com hífens): até lá
+ * eles ficam no shard do hash do texto e não são encontrados pelas buscas por isbn. Enquanto houver
+ * livros fora do lugar, {@link ShardPlacementCheck} impede a subida dos nós.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "library.sharding.rebalance.run", havingValue = "true")
+public class ShardRebalanceRunner implements ApplicationRunner {
+
+    private final ShardRebalancer rebalancer;
+    private final InvalidationRelay invalidationRelay;
+
+    public ShardRebalanceRunner(ShardRebalancer rebalancer, InvalidationRelay invalidationRelay) {
+        this.rebalancer = rebalancer;
+        this.invalidationRelay = invalidationRelay;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int moved = rebalancer.rebalance();
+        // avisa os nós em execução sem esperar o agendamento, desligado na execução avulsa
+        invalidationRelay.relay();
+        log.info("Rebalanceamento concluído: {} livro(s) movido(s).", moved);
+    }
+}
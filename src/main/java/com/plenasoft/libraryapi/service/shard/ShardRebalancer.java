@@ -0,0 +1,204 @@
+package com.plenasoft.libraryapi.service.shard;
+
+import com.plenasoft.libraryapi.cache.BookCache;
+import com.plenasoft.libraryapi.service.changes.BookChangeSequence;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import com.plenasoft.libraryapi.shard.ShardSchemaInitializer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Move para o shard do seu isbn os livros que estão em outro shard, por exemplo depois de
+ * aumentar a quantidade de shards. Cada livro vai junto com empréstimos, multas, reservas,
+ * agregados e eventos pendentes do outbox, mantendo os ids.
+ * <p>
+ * Um livro por vez: a linha é bloqueada no shard de origem, copiada para o destino (transação
+ * própria, ignorada se o livro já estiver lá) e só então removida da origem. Se o processo
+ * parar no meio, a próxima execução termina a remoção. Operações sobre o livro que está sendo
+ * movido aguardam o bloqueio e podem falhar, então o ideal é rodar fora do horário de uso.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "library.sharding.enabled", havingValue = "true")
+public class ShardRebalancer {
+
+    private final ShardRouter shardRouter;
+    private final ShardSchemaInitializer schemaInitializer;
+    private final BookChangeSequence changeSequence;
+    private final BookCache bookCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate targetTransactionTemplate;
+    private final int pageSize;
+
+    public ShardRebalancer(ShardRouter shardRouter,
+                           ShardSchemaInitializer schemaInitializer,
+                           BookChangeSequence changeSequence,
+                           BookCache bookCache,
+                           DataSource dataSource,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${library.sharding.rebalance.page-size:500}") int pageSize) {
+        this.shardRouter = shardRouter;
+        this.schemaInitializer = schemaInitializer;
+        this.changeSequence = changeSequence;
+        this.bookCache = bookCache;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.targetTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.targetTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return quantidade de livros movidos
+     */
+    public int rebalance() {
+        int moved = 0;
+        for (int source = 0; source < shardRouter.shardCount(); source++) {
+            int shardMoved = rebalanceShard(source);
+            log.info("Shard {}: {} livro(s) movido(s).", source, shardMoved);
+            moved += shardMoved;
+        }
+        // os registros recebidos vêm com ids de outras faixas
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            schemaInitializer.restartIds(shard);
+        }
+        return moved;
+    }
+
+    /**
+     * Livros gravados fora do shard do seu isbn: os de antes de uma mudança na lista de shards e
+     * os cadastrados em outra grafia (ISBN-10, com hífens) antes da distribuição pelo ISBN-13
+     * canônico. Lê só o id e o isbn, em páginas.
+     */
+    public long countMisplaced() {
+        long misplaced = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            long afterId = 0;
+            while (true) {
+                List<Map<String, Object>> page = page(shard, afterId);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (Map<String, Object> book : page) {
+                    if (shardRouter.shardFor((String) book.get("ISBN")) != shard) {
+                        misplaced++;
+                    }
+                    afterId = ((Number) book.get("ID")).longValue();
+                }
+            }
+        }
+        return misplaced;
+    }
+
+    private int rebalanceShard(int source) {
+        int moved = 0;
+        long afterId = 0;
+        while (true) {
+            List<Map<String, Object>> page = page(source, afterId);
+            if (page.isEmpty()) {
+                return moved;
+            }
+            for (Map<String, Object> book : page) {
+                long id = ((Number) book.get("ID")).longValue();
+                int target = shardRouter.shardFor((String) book.get("ISBN"));
+                if (target != source && moveBook(id, source, target)) {
+                    // o livro em cache aponta para o shard de origem
+                    bookCache.invalidate(id);
+                    moved++;
+                }
+                afterId = id;
+            }
+        }
+    }
+
+    private boolean moveBook(long bookId, int source, int target) {
+        Boolean moved = shardRouter.onShard(source, () -> transactionTemplate.execute(status -> {
+            Map<String, Object> book;
+            try {
+                book = jdbcTemplate.queryForMap("select * from book where id = ? for update", bookId);
+            } catch (EmptyResultDataAccessException e) {
+                return false;
+            }
+            List<Map<String, Object>> loans = jdbcTemplate.queryForList(
+                    "select * from loan where id_book = ? order by id", bookId);
+            List<Map<String, Object>> archivedLoans = jdbcTemplate.queryForList(
+                    "select * from loan_archive where id_book = ? order by id", bookId);
+            // as multas referenciam o empréstimo só pelo id, inclusive depois de arquivado
+            List<Map<String, Object>> fees = jdbcTemplate.queryForList(
+                    "select * from loan_fee where id_loan in (select id from loan where id_book = ?) " +
+                            "or id_loan in (select id from loan_archive where id_book = ?) order by id", bookId, bookId);
+            List<Map<String, Object>> reservations = jdbcTemplate.queryForList(
+                    "select * from reservation where id_book = ? order by id", bookId);
+            List<Map<String, Object>> bookStats = jdbcTemplate.queryForList(
+                    "select * from daily_book_loan_stats where id_book = ? for update", bookId);
+            List<Map<String, Object>> events = jdbcTemplate.queryForList(
+                    "select * from outbox_event where aggregate_type = 'Loan' and aggregate_id in " +
+                            "(select id from loan where id_book = ?) order by id for update", bookId);
+
+            shardRouter.runOnShard(target, () -> targetTransactionTemplate.execute(targetStatus -> {
+                Long existing = jdbcTemplate.queryForObject("select count(*) from book where id = ?", Long.class, bookId);
+                if (existing == null || existing == 0) {
+                    insert("book", book, true);
+                    // a posição no feed de alterações é por shard: o livro entra no feed do destino
+                    jdbcTemplate.update("update book set change_seq = ? where id = ?",
+                            changeSequence.next((String) book.get("BRANCH")), bookId);
+                    loans.forEach(loan -> insert("loan", loan, true));
+                    archivedLoans.forEach(loan -> insert("loan_archive", loan, true));
+                    fees.forEach(fee -> insert("loan_fee", fee, false));
+                    reservations.forEach(reservation -> insert("reservation", reservation, true));
+                    bookStats.forEach(stats -> insert("daily_book_loan_stats", stats, false));
+                    events.forEach(event -> insert("outbox_event", event, false));
+                }
+                return null;
+            }));
+
+            if (!events.isEmpty()) {
+                jdbcTemplate.update("delete from outbox_event where id in (" + placeholders(events.size()) + ")",
+                        events.stream().map(event -> event.get("ID")).toArray());
+            }
+            jdbcTemplate.update("delete from daily_book_loan_stats where id_book = ?", bookId);
+            jdbcTemplate.update("delete from reservation where id_book = ?", bookId);
+            if (!fees.isEmpty()) {
+                jdbcTemplate.update("delete from loan_fee where id in (" + placeholders(fees.size()) + ")",
+                        fees.stream().map(fee -> fee.get("ID")).toArray());
+            }
+            jdbcTemplate.update("delete from loan where id_book = ?", bookId);
+            jdbcTemplate.update("delete from loan_archive where id_book = ?", bookId);
+            jdbcTemplate.update("delete from book where id = ?", bookId);
+            return true;
+        }));
+        return Boolean.TRUE.equals(moved);
+    }
+
+    private List<Map<String, Object>> page(int shard, long afterId) {
+        return shardRouter.onShard(shard, () -> jdbcTemplate.queryForList(
+                "select id, isbn from book where id > ? order by id limit ?", afterId, pageSize));
+    }
+
+    // ids gerados pelo banco (agregados e outbox) são recriados no destino
+    private void insert(String table, Map<String, Object> row, boolean keepId) {
+        List<String> columns = row.keySet().stream()
+                .filter(column -> keepId || !"ID".equalsIgnoreCase(column))
+                .collect(Collectors.toList());
+        String sql = "insert into " + table + " (" + String.join(", ", columns) + ") values (" + placeholders(columns.size()) + ")";
+        jdbcTemplate.update(sql, columns.stream().map(row::get).toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
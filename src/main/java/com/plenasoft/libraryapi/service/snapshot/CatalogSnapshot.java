@@ -0,0 +1,27 @@
+package com.plenasoft.libraryapi.service.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.file.Path;
+
+/**
+ * Arquivo NDJSON compactado com gzip com os livros não excluídos de uma filial, um por linha.
+ * {@code changeToken} é a posição do feed de alterações em que o snapshot foi gerado: quem
+ * carrega o snapshot continua a sincronização pelo feed a partir dela.
+ */
+@Data
+@AllArgsConstructor
+public class CatalogSnapshot {
+
+    private String branch;
+    private Path path;
+    private long length;
+    private long rows;
+    private long generatedAt;
+    private String changeToken;
+
+    public String getETag() {
+        return "\"" + branch + "-" + generatedAt + "\"";
+    }
+}
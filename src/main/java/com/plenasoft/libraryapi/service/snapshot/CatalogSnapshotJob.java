@@ -0,0 +1,200 @@
+package com.plenasoft.libraryapi.service.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plenasoft.libraryapi.api.dto.BookDTO;
+import com.plenasoft.libraryapi.service.changes.ChangeToken;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gera periodicamente um snapshot do acervo de cada filial em arquivo, para que a sincronização
+ * completa dos clientes seja servida do disco sem consultar o banco. Os livros são lidos em
+ * streaming (ordenados por filial e id, shard por shard) direto para o gzip, então a memória
+ * usada não depende do tamanho do acervo. O arquivo só é publicado depois de completo, e os da
+ * geração anterior são mantidos até a seguinte, para não sumir no meio de um download.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class CatalogSnapshotJob {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+
+    private volatile Map<String, CatalogSnapshot> snapshots = Collections.emptyMap();
+    private Map<String, CatalogSnapshot> previous = Collections.emptyMap();
+
+    public CatalogSnapshotJob(DataSource dataSource,
+                              ShardRouter shardRouter,
+                              ObjectMapper objectMapper,
+                              @Value("${library.catalog-snapshot.directory:${java.io.tmpdir}/library-api/snapshots}") String directory,
+                              @Value("${library.catalog-snapshot.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+    }
+
+    @Scheduled(fixedDelayString = "${library.catalog-snapshot.interval:900000}",
+            initialDelayString = "${library.catalog-snapshot.initial-delay:10000}")
+    public void scheduledGenerate() {
+        try {
+            Map<String, CatalogSnapshot> generated = generate();
+            log.info("Snapshot do acervo gerado para {} filial(is).", generated.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("Falha ao gerar o snapshot do acervo.", e);
+        }
+    }
+
+    public Optional<CatalogSnapshot> current(String branch) {
+        return Optional.ofNullable(snapshots.get(branch));
+    }
+
+    /**
+     * @return snapshots publicados, por filial
+     */
+    public synchronized Map<String, CatalogSnapshot> generate() throws IOException {
+        Files.createDirectories(directory);
+        long generatedAt = System.currentTimeMillis();
+
+        // posição do feed antes da leitura: o que mudar durante a geração é reaplicado pelo feed
+        Map<String, ChangeToken> tokens = new TreeMap<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            int current = shard;
+            shardRouter.runOnShard(shard, () -> jdbcTemplate.query(
+                    "select branch, max(change_seq) from book group by branch", rs -> {
+                        ChangeToken token = tokens.computeIfAbsent(rs.getString(1),
+                                branch -> ChangeToken.parse(null, shardRouter.shardCount()));
+                        token.advance(current, rs.getLong(2), Long.MAX_VALUE);
+                    }));
+        }
+
+        Map<String, SnapshotWriter> writers = new HashMap<>();
+        try {
+            for (String branch : tokens.keySet()) {
+                writers.put(branch, new SnapshotWriter(directory.resolve("catalog-" + branch + "-" + generatedAt + ".tmp")));
+            }
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                shardRouter.runOnShard(shard, () -> jdbcTemplate.query(
+                        "select id, branch, title, author, isbn, publisher, published_year, cover_url, page_count, " +
+                                "version, active_loans from book where deleted_at is null order by branch, id",
+                        rs -> {
+                            SnapshotWriter writer = writers.get(rs.getString("branch"));
+                            // filial criada depois da leitura das posições: entra no próximo snapshot
+                            if (writer != null) {
+                                writer.write(toDTO(rs));
+                            }
+                        }));
+            }
+        } catch (UncheckedIOException e) {
+            writers.values().forEach(SnapshotWriter::discard);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            writers.values().forEach(SnapshotWriter::discard);
+            throw e;
+        }
+
+        Map<String, CatalogSnapshot> published = new HashMap<>();
+        for (Map.Entry<String, SnapshotWriter> entry : writers.entrySet()) {
+            String branch = entry.getKey();
+            Path target = directory.resolve("catalog-" + branch + "-" + generatedAt + ".ndjson.gz");
+            SnapshotWriter writer = entry.getValue();
+            writer.close();
+            Files.move(writer.path, target, StandardCopyOption.ATOMIC_MOVE);
+            published.put(branch, new CatalogSnapshot(branch, target, Files.size(target), writer.rows,
+                    generatedAt, tokens.get(branch).format()));
+        }
+
+        Map<String, CatalogSnapshot> expired = previous;
+        previous = snapshots;
+        snapshots = published;
+        expired.values().forEach(snapshot -> delete(snapshot.getPath()));
+        return published;
+    }
+
+    private BookDTO toDTO(ResultSet rs) throws SQLException {
+        return BookDTO.builder()
+                .id(rs.getLong("id"))
+                .title(rs.getString("title"))
+                .author(rs.getString("author"))
+                .isbn(rs.getString("isbn"))
+                .publisher(rs.getString("publisher"))
+                .publishedYear((Integer) rs.getObject("published_year"))
+                .coverUrl(rs.getString("cover_url"))
+                .pageCount((Integer) rs.getObject("page_count"))
+                .version(rs.getLong("version"))
+                .activeLoans(rs.getInt("active_loans"))
+                .build();
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Não foi possível remover o snapshot antigo {}.", path, e);
+        }
+    }
+
+    private class SnapshotWriter {
+
+        private final Path path;
+        private final OutputStream out;
+        private long rows;
+
+        SnapshotWriter(Path path) throws IOException {
+            this.path = path;
+            this.out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE), BUFFER_SIZE);
+        }
+
+        void write(BookDTO book) {
+            try {
+                out.write(objectMapper.writeValueAsBytes(book));
+                out.write('\n');
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
+
+        void discard() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // o arquivo é descartado de qualquer forma
+            }
+            delete(path);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.plenasoft.libraryapi.service.stats;
+
+import com.plenasoft.libraryapi.model.repository.DailyBookLoanStatsRepository;
+import com.plenasoft.libraryapi.model.repository.DailyCustomerLoanStatsRepository;
+import com.plenasoft.libraryapi.model.repository.DailyLoanStatsRepository;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+/**
+ * Recalcula os agregados de dias passados a partir da tabela de empréstimos, em blocos de dias
+ * (uma transação por bloco, em cada shard), com uma linha por filial como nos incrementos. O dia corrente fica de fora porque continua recebendo incrementos.
+ */
+@Slf4j
+@Component
+public class LoanStatsBackfillJob {
+
+    private final DailyLoanStatsRepository dailyRepository;
+    private final DailyBookLoanStatsRepository bookStatsRepository;
+    private final DailyCustomerLoanStatsRepository customerStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final int chunkDays;
+
+    public LoanStatsBackfillJob(DailyLoanStatsRepository dailyRepository,
+                                DailyBookLoanStatsRepository bookStatsRepository,
+                                DailyCustomerLoanStatsRepository customerStatsRepository,
+                                PlatformTransactionManager transactionManager,
+                                ShardRouter shardRouter,
+                                @Value("${library.stats.backfill.chunk-days:31}") int chunkDays) {
+        this.dailyRepository = dailyRepository;
+        this.bookStatsRepository = bookStatsRepository;
+        this.customerStatsRepository = customerStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.chunkDays = chunkDays;
+    }
+
+    /**
+     * @return quantidade de dias com empréstimos ou devoluções recalculados (somando os shards)
+     */
+    public int backfill(LocalDate from, LocalDate to) {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        if (to.isAfter(yesterday)) {
+            to = yesterday;
+        }
+        int days = 0;
+        for (LocalDate start = from; !start.isAfter(to); start = start.plusDays(chunkDays)) {
+            LocalDate chunkFrom = start;
+            LocalDate chunkTo = start.plusDays(chunkDays - 1L).isAfter(to) ? to : start.plusDays(chunkDays - 1L);
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                days += shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> backfillChunk(chunkFrom, chunkTo)));
+            }
+        }
+        log.info("Agregados de empréstimos recalculados de {} a {}: {} dia(s).", from, to, days);
+        return days;
+    }
+
+    private int backfillChunk(LocalDate from, LocalDate to) {
+        dailyRepository.deleteByStatDateBetween(from, to);
+        bookStatsRepository.deleteByStatDateBetween(from, to);
+        customerStatsRepository.deleteByStatDateBetween(from, to);
+
+        bookStatsRepository.backfill(from, to);
+        customerStatsRepository.backfill(from, to);
+        return dailyRepository.backfill(from, to);
+    }
+}
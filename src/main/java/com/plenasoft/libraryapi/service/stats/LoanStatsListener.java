@@ -0,0 +1,95 @@
+package com.plenasoft.libraryapi.service.stats;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.LoanStatsService;
+import com.plenasoft.libraryapi.service.impl.LoanServiceImpl;
+import com.plenasoft.libraryapi.service.outbox.OutboxMessage;
+import com.plenasoft.libraryapi.service.outbox.OutboxSubscriber;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Atualiza os agregados diários da filial do empréstimo a partir dos eventos de empréstimo entregues pelo outbox,
+ * independente de para onde o relay publica. Um evento que falhar aqui fica de fora dos
+ * agregados até o {@link LoanStatsBackfillJob} recalcular o dia; um evento entregue de novo pelo
+ * relay é ignorado pela marca gravada junto com o incremento, mantida por {@code retention}.
+ */
+@Slf4j
+@Component
+public class LoanStatsListener implements OutboxSubscriber {
+
+    private final LoanStatsService statsService;
+    private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+
+    public LoanStatsListener(LoanStatsService statsService,
+                             CustomerService customerService,
+                             ObjectMapper objectMapper,
+                             @Value("${library.stats.processed-events.retention:7d}") Duration retention) {
+        this.statsService = statsService;
+        this.customerService = customerService;
+        this.objectMapper = objectMapper;
+        this.retention = retention;
+    }
+
+    @Scheduled(cron = "${library.stats.processed-events.cleanup-cron:0 50 3 * * *}")
+    public void purgeProcessedEvents() {
+        try {
+            int purged = statsService.purgeProcessedEvents(LocalDateTime.now().minus(retention));
+            log.debug("{} marca(s) de eventos contados apagada(s).", purged);
+        } catch (RuntimeException e) {
+            log.error("Falha ao apagar as marcas de eventos contados.", e);
+        }
+    }
+
+    @Override
+    public void onEvent(OutboxMessage message) {
+        if (!LoanServiceImpl.AGGREGATE_TYPE.equals(message.getAggregateType())) {
+            return;
+        }
+        JsonNode payload = readPayload(message.getPayload());
+        Long bookId = payload.get("bookId").asLong();
+        String branch = payload.path("branch").asText(BranchContextHolder.DEFAULT_BRANCH);
+
+        if (LoanServiceImpl.LOAN_CREATED.equals(message.getEventType())) {
+            statsService.recordLoan(
+                    message.getId(),
+                    branch,
+                    LocalDate.parse(payload.get("loanDate").asText()),
+                    bookId,
+                    customerId(payload));
+        } else if (LoanServiceImpl.LOAN_RETURNED.equals(message.getEventType())) {
+            statsService.recordReturn(message.getId(), branch, LocalDate.parse(payload.get("returnDate").asText()), bookId);
+        }
+    }
+
+    /**
+     * Eventos gravados antes dos clientes terem id trazem só o nome do cliente.
+     */
+    private Long customerId(JsonNode payload) {
+        if (payload.hasNonNull("customerId")) {
+            return payload.get("customerId").asLong();
+        }
+        return customerService.getOrCreate(payload.path("customer").asText(null)).getId();
+    }
+
+    private JsonNode readPayload(String payload) {
+        try {
+            return objectMapper.readTree(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
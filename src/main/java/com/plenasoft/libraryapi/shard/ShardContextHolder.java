@@ -0,0 +1,25 @@
+package com.plenasoft.libraryapi.shard;
+
+/**
+ * Shard usado pela thread atual. Lido pelo {@link ShardRoutingDataSource} no momento em que
+ * a conexão é de fato aberta; sem valor, vale o shard 0.
+ */
+public final class ShardContextHolder {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContextHolder() {
+    }
+
+    public static Integer getShard() {
+        return CURRENT.get();
+    }
+
+    public static void setShard(Integer shard) {
+        CURRENT.set(shard);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,208 @@
+package com.plenasoft.libraryapi.shard;
+
+import com.plenasoft.libraryapi.isbn.Isbn;
+import com.plenasoft.libraryapi.model.entity.Book;
+import io.opentelemetry.context.Context;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Decide em qual shard fica cada livro e executa operações no shard escolhido.
+ * O livro é distribuído pelo hash do isbn, e empréstimos, reservas e agregados do livro ficam
+ * no mesmo shard. Os ids gerados em cada shard começam em {@code shard << 40}, então o id
+ * indica o shard onde o registro foi criado; depois de um rebalanceamento ele pode ter mudado,
+ * por isso as buscas por id usam o shard do id como palpite e consultam os demais quando não acham.
+ * Com um único shard (padrão) tudo roda na thread atual.
+ */
+public class ShardRouter implements DisposableBean {
+
+    static final int ID_SHARD_SHIFT = 40;
+
+    private final int shardCount;
+    private final ExecutorService executor;
+
+    public ShardRouter(int shardCount) {
+        this(shardCount, shardCount);
+    }
+
+    public ShardRouter(int shardCount, int scatterThreads) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Pelo menos um shard deve ser configurado.");
+        }
+        this.shardCount = shardCount;
+        this.executor = shardCount > 1 ? Executors.newFixedThreadPool(Math.max(scatterThreads, 1), scatterThreadFactory()) : null;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Distribui pelo ISBN-13 canônico, para que todas as grafias do mesmo livro caiam no mesmo
+     * shard. O hash é o dos 13 dígitos em texto, o mesmo de um isbn já cadastrado nesse formato;
+     * livros gravados em outra grafia por versões anteriores só voltam ao shard certo pelo
+     * rebalanceamento, e a subida falha enquanto houver algum fora do lugar.
+     */
+    public int shardFor(String isbn) {
+        if (shardCount == 1 || isbn == null) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        long isbn13 = Isbn.toIsbn13(isbn);
+        if (isbn13 == Isbn.INVALID) {
+            crc.update(isbn.getBytes(StandardCharsets.UTF_8));
+        } else {
+            for (long divisor = 1_000_000_000_000L; divisor > 0; divisor /= 10) {
+                crc.update((int) ('0' + isbn13 / divisor % 10));
+            }
+        }
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    /**
+     * Shard onde o livro foi lido, ou o shard do seu isbn quando ele ainda não foi persistido.
+     */
+    public int shardOf(Book book) {
+        return book.getShard() != null ? book.getShard() : shardFor(book.getIsbn());
+    }
+
+    public int homeShardOf(Long id) {
+        if (shardCount == 1 || id == null) {
+            return 0;
+        }
+        long shard = id >>> ID_SHARD_SHIFT;
+        return shard < shardCount ? (int) shard : 0;
+    }
+
+    public static long firstIdOf(int shard) {
+        return ((long) shard << ID_SHARD_SHIFT) + 1;
+    }
+
+    /**
+     * Executa a ação com o shard informado. Dentro de uma transação, só tem efeito se for
+     * chamado antes do primeiro comando, quando a conexão ainda não foi aberta.
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = ShardContextHolder.getShard();
+        ShardContextHolder.setShard(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                ShardContextHolder.clear();
+            } else {
+                ShardContextHolder.setShard(previous);
+            }
+        }
+    }
+
+    public void runOnShard(int shard, Runnable action) {
+        onShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Executa a ação em todos os shards em paralelo.
+     *
+     * @return resultados na ordem dos shards
+     */
+    public <T> List<T> onAllShards(IntFunction<T> action) {
+        return onShards(IntStream.range(0, shardCount).boxed().collect(Collectors.toList()), action);
+    }
+
+    public <T> List<T> onShards(Collection<Integer> shards, IntFunction<T> action) {
+        if (shards.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (shards.size() == 1) {
+            int shard = shards.iterator().next();
+            return Collections.singletonList(onShard(shard, () -> action.apply(shard)));
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (Integer shard : shards) {
+            // mantém o trace de quem chamou nos comandos executados pelas threads de consulta
+            Callable<T> task = () -> onShard(shard, () -> action.apply(shard));
+            futures.add(executor.submit(Context.current().wrap(task)));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta aos shards interrompida.", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    /**
+     * Procura primeiro no shard indicado e, se não encontrar, nos demais em paralelo.
+     */
+    public <T> Optional<T> locate(int preferredShard, IntFunction<Optional<T>> lookup) {
+        Optional<T> found = onShard(preferredShard, () -> lookup.apply(preferredShard));
+        if (found.isPresent() || shardCount == 1) {
+            return found;
+        }
+        List<Integer> others = IntStream.range(0, shardCount)
+                .filter(shard -> shard != preferredShard)
+                .boxed()
+                .collect(Collectors.toList());
+        return onShards(others, lookup).stream()
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .findFirst();
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    private static ThreadFactory scatterThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.plenasoft.libraryapi.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prepara os shards na subida: copia o esquema do shard 0 (gerado pelo Hibernate) para os shards
+ * que ainda não o têm e posiciona as sequências de id de cada shard na sua faixa.
+ * A cópia usa o {@code SCRIPT NODATA} do H2; com outro banco, o esquema deve ser aplicado
+ * em cada shard pelas migrações.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "library.sharding.enabled", havingValue = "true")
+public class ShardSchemaInitializer {
+
+    private static final List<String> SHARDED_ID_TABLES = Arrays.asList("BOOK", "LOAN", "RESERVATION");
+
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+
+    // o EntityManagerFactory garante que o esquema do shard 0 já foi criado
+    public ShardSchemaInitializer(ShardRouter shardRouter, DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        List<String> schema = null;
+        for (int shard = 1; shard < shardRouter.shardCount(); shard++) {
+            int current = shard;
+            if (!shardRouter.onShard(current, this::hasSchema)) {
+                if (schema == null) {
+                    schema = shardRouter.onShard(0, () -> jdbcTemplate.queryForList("SCRIPT NODATA NOPASSWORDS", String.class));
+                }
+                List<String> statements = schema;
+                shardRouter.runOnShard(current, () -> statements.stream()
+                        .filter(statement -> !statement.startsWith("CREATE USER") && !statement.startsWith("--"))
+                        .forEach(jdbcTemplate::execute));
+                log.info("Esquema copiado para o shard {}.", current);
+            }
+        }
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            restartIds(shard);
+        }
+    }
+
+    private boolean hasSchema() {
+        Long tables = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.tables where table_name = 'BOOK'", Long.class);
+        return tables != null && tables > 0;
+    }
+
+    /**
+     * Posiciona as sequências de id do shard logo após o maior id da sua faixa. Necessário também
+     * depois de receber registros de outro shard, que chegam com ids de outra faixa.
+     */
+    public void restartIds(int shard) {
+        long first = ShardRouter.firstIdOf(shard);
+        long last = ShardRouter.firstIdOf(shard + 1) - 1;
+        shardRouter.runOnShard(shard, () -> {
+            for (String table : SHARDED_ID_TABLES) {
+                Long maxId = jdbcTemplate.queryForObject(
+                        "select coalesce(max(id), 0) from " + table + " where id between ? and ?", Long.class, first, last);
+                long next = Math.max(maxId + 1, first);
+                jdbcTemplate.execute("alter table " + table + " alter column id restart with " + next);
+            }
+        });
+    }
+}
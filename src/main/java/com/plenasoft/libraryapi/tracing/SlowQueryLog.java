@@ -0,0 +1,120 @@
+package com.plenasoft.libraryapi.tracing;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Registra os comandos SQL que passam do limite configurado: o SQL, o tipo de cada parâmetro
+ * (nunca o valor) e, para consultas, o plano de execução resumido em dicas como
+ * {@code table scan: BOOK} ou {@code index: IDX_BOOK_BRANCH_ISBN}. Dentro de um trace, os mesmos
+ * dados vão como evento {@value #EVENT_NAME} no span do comando.
+ */
+@Slf4j
+public class SlowQueryLog {
+
+    static final String EVENT_NAME = "slow-query";
+    static final AttributeKey<String> PARAMETER_SHAPES = AttributeKey.stringKey("db.parameter_shapes");
+    static final AttributeKey<String> PLAN_HINTS = AttributeKey.stringKey("db.plan_hints");
+    static final AttributeKey<Long> DURATION_MS = AttributeKey.longKey("db.duration_ms");
+
+    // H2: /* PUBLIC.IDX_BOOK_BRANCH_ISBN: BRANCH = ?1 */ ou /* PUBLIC.BOOK.tableScan */
+    private static final Pattern H2_PLAN = Pattern.compile("/\\*\\s*([\\w\".]+?)(?:\\.tableScan\\s*\\*/|:|\\s*\\*/)");
+    // PostgreSQL: Seq Scan on book / Index Scan using idx_book_branch_isbn on book
+    private static final Pattern POSTGRES_PLAN = Pattern.compile("(Seq Scan on|Index(?: Only)? Scan using) (\\S+)");
+
+    private final long thresholdNanos;
+    private final boolean explain;
+
+    public SlowQueryLog(Duration threshold, boolean explain) {
+        this.thresholdNanos = threshold.toNanos();
+        this.explain = explain;
+    }
+
+    public boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    /**
+     * @param span       span do comando, ou {@code null} fora de um trace
+     * @param connection conexão real (sem rastreamento) onde o comando foi executado
+     * @param batchSize  comandos do lote, ou 0 quando não é um lote
+     */
+    public void record(Span span, Connection connection, String sql, Object[] parameters, int batchSize, long elapsedNanos) {
+        String shapes = shapesOf(parameters);
+        String hints = explain && batchSize == 0 && isQuery(sql) ? planHints(explain(connection, sql, parameters)) : "";
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+
+        log.warn("Comando SQL lento ({} ms): {} | parametros: {} | lote: {} | plano: {}",
+                elapsedMillis, sql, shapes, batchSize, hints.isEmpty() ? "-" : hints);
+        if (span != null) {
+            span.addEvent(EVENT_NAME, Attributes.of(
+                    PARAMETER_SHAPES, shapes,
+                    PLAN_HINTS, hints,
+                    DURATION_MS, elapsedMillis));
+        }
+    }
+
+    static String shapesOf(Object[] parameters) {
+        StringJoiner shapes = new StringJoiner(", ", "[", "]");
+        for (Object parameter : parameters) {
+            shapes.add(parameter == null ? "null" : parameter.getClass().getSimpleName());
+        }
+        return shapes.toString();
+    }
+
+    private static boolean isQuery(String sql) {
+        return sql != null && sql.trim().toLowerCase(Locale.ROOT).startsWith("select");
+    }
+
+    /**
+     * Executa o {@code EXPLAIN} com os mesmos parâmetros na conexão do comando. O plano não
+     * executa a consulta; falhas (banco sem suporte, conexão já inválida) só omitem as dicas.
+     */
+    private static String explain(Connection connection, String sql, Object[] parameters) {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            log.debug("Não foi possível obter o plano de {}.", sql, e);
+            return "";
+        }
+    }
+
+    static String planHints(String plan) {
+        Set<String> hints = new LinkedHashSet<>();
+        Matcher h2 = H2_PLAN.matcher(plan);
+        while (h2.find()) {
+            String name = h2.group(1).replace("\"", "");
+            String object = name.substring(name.lastIndexOf('.') + 1);
+            hints.add(h2.group().contains(".tableScan") ? "table scan: " + object : "index: " + object);
+        }
+        Matcher postgres = POSTGRES_PLAN.matcher(plan);
+        while (postgres.find()) {
+            hints.add(postgres.group(1).startsWith("Seq") ? "table scan: " + postgres.group(2) : "index: " + postgres.group(2));
+        }
+        return String.join(", ", hints);
+    }
+}
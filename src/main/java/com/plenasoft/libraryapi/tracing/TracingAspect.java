@@ -0,0 +1,44 @@
+package com.plenasoft.libraryapi.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * Um span por chamada pública aos controllers e às implementações dos serviços, nomeado
+ * {@code Classe.metodo}. Chamadas internas da própria classe não passam pelo proxy e ficam
+ * dentro do span de quem chamou.
+ */
+@Aspect
+public class TracingAspect {
+
+    private final Tracer tracer;
+
+    public TracingAspect(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Around("execution(public * com.plenasoft.libraryapi.api.resource.*.*(..)) " +
+            "|| execution(public * com.plenasoft.libraryapi.service.impl.*.*(..))")
+    public Object trace(ProceedingJoinPoint joinPoint) throws Throwable {
+        Class<?> type = joinPoint.getSignature().getDeclaringType();
+        String method = joinPoint.getSignature().getName();
+        Span span = tracer.spanBuilder(type.getSimpleName() + "." + method)
+                .setAttribute("code.namespace", type.getName())
+                .setAttribute("code.function", method)
+                .startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
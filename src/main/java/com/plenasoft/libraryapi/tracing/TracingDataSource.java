@@ -0,0 +1,247 @@
+package com.plenasoft.libraryapi.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Mede cada comando SQL executado pelas conexões do datasource. Dentro de um trace, o comando
+ * vira um span filho da operação corrente; com ou sem trace, os que passam do limite vão para o
+ * {@link SlowQueryLog}. Os valores dos parâmetros ficam só em memória, para o {@code EXPLAIN};
+ * span e log recebem apenas os tipos.
+ */
+public class TracingDataSource extends DelegatingDataSource {
+
+    private final Tracer tracer;
+    private final SlowQueryLog slowQueryLog;
+
+    public TracingDataSource(DataSource targetDataSource, Tracer tracer, SlowQueryLog slowQueryLog) {
+        super(targetDataSource);
+        this.tracer = tracer;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Traced " + target;
+                case "getTargetConnection":
+                    return target;
+                case "createStatement":
+                    return wrap((Statement) TracingDataSource.invoke(target, method, args), Statement.class, null);
+                case "prepareStatement":
+                    return wrap((Statement) TracingDataSource.invoke(target, method, args), PreparedStatement.class, (String) args[0]);
+                case "prepareCall":
+                    return wrap((Statement) TracingDataSource.invoke(target, method, args), CallableStatement.class, (String) args[0]);
+                default:
+                    return TracingDataSource.invoke(target, method, args);
+            }
+        }
+
+        private Statement wrap(Statement statement, Class<? extends Statement> type, String sql) {
+            return (Statement) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                    new Class<?>[]{type}, new StatementHandler(statement, sql, target));
+        }
+    }
+
+    private class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String sql;
+        private final Connection connection;
+
+        private Object[] parameters = new Object[0];
+        private int parameterCount;
+        private int batchSize;
+
+        StatementHandler(Statement target, String sql, Connection connection) {
+            this.target = target;
+            this.sql = sql;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "execute":
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return execute(method, args);
+                case "addBatch":
+                    batchSize++;
+                    return TracingDataSource.invoke(target, method, args);
+                case "clearBatch":
+                    batchSize = 0;
+                    return TracingDataSource.invoke(target, method, args);
+                case "clearParameters":
+                    Arrays.fill(parameters, null);
+                    parameterCount = 0;
+                    return TracingDataSource.invoke(target, method, args);
+                default:
+                    // setString(1, ...), setNull(2, Types.BIGINT), etc; setFetchSize(int) e afins têm um argumento só
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                    }
+                    return TracingDataSource.invoke(target, method, args);
+            }
+        }
+
+        private void bind(int index, Object value) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String statementSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+            boolean batch = method.getName().endsWith("Batch");
+            int executedBatch = batchSize;
+            if (batch) {
+                batchSize = 0;
+            }
+
+            Span span = null;
+            if (Span.current().getSpanContext().isValid()) {
+                span = tracer.spanBuilder(summary(statementSql))
+                        .setSpanKind(SpanKind.CLIENT)
+                        .setAttribute("db.statement", statementSql)
+                        .startSpan();
+                if (batch) {
+                    span.setAttribute("db.batch_size", executedBatch);
+                }
+            }
+
+            long start = System.nanoTime();
+            try {
+                Object result = TracingDataSource.invoke(target, method, args);
+                long elapsed = System.nanoTime() - start;
+                if (slowQueryLog.isSlow(elapsed)) {
+                    slowQueryLog.record(span, connection, statementSql, Arrays.copyOf(parameters, parameterCount), batch ? executedBatch : 0, elapsed);
+                }
+                return result;
+            } catch (Throwable e) {
+                if (span != null) {
+                    span.recordException(e);
+                    span.setStatus(StatusCode.ERROR);
+                }
+                throw e;
+            } finally {
+                if (span != null) {
+                    span.end();
+                }
+            }
+        }
+    }
+
+    /**
+     * Nome curto do span: operação e tabela principal, como {@code SELECT book}.
+     */
+    static String summary(String sql) {
+        if (sql == null) {
+            return "BATCH";
+        }
+        String trimmed = sql.trim();
+        int end = indexOfWhitespace(trimmed, 0);
+        String operation = trimmed.substring(0, end).toUpperCase(Locale.ROOT);
+        String lower = trimmed.toLowerCase(Locale.ROOT);
+        int table;
+        switch (operation) {
+            case "SELECT":
+            case "DELETE":
+                table = lower.indexOf(" from ");
+                table = table < 0 ? -1 : table + " from ".length();
+                break;
+            case "INSERT":
+            case "MERGE":
+                table = lower.indexOf(" into ");
+                table = table < 0 ? -1 : table + " into ".length();
+                break;
+            case "UPDATE":
+                table = end;
+                break;
+            default:
+                table = -1;
+        }
+        if (table < 0) {
+            return operation;
+        }
+        while (table < trimmed.length() && Character.isWhitespace(trimmed.charAt(table))) {
+            table++;
+        }
+        int tableEnd = indexOfWhitespace(trimmed, table);
+        if (tableEnd == table || trimmed.charAt(table) == '(') {
+            return operation;
+        }
+        return operation + " " + trimmed.substring(table, tableEnd);
+    }
+
+    private static int indexOfWhitespace(String value, int from) {
+        int index = from;
+        while (index < value.length() && !Character.isWhitespace(value.charAt(index)) && value.charAt(index) != '(') {
+            index++;
+        }
+        return index;
+    }
+}
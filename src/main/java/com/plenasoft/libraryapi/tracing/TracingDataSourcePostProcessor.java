@@ -0,0 +1,32 @@
+package com.plenasoft.libraryapi.tracing;
+
+import io.opentelemetry.api.trace.Tracer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+
+/**
+ * Envolve o datasource principal da aplicação em um {@link TracingDataSource}. Os datasources de
+ * cada shard ficam de fora, já que toda conexão da aplicação passa pelo principal.
+ */
+public class TracingDataSourcePostProcessor implements BeanPostProcessor {
+
+    static final String DATA_SOURCE_BEAN = "dataSource";
+
+    private final ObjectProvider<Tracer> tracer;
+    private final ObjectProvider<SlowQueryLog> slowQueryLog;
+
+    public TracingDataSourcePostProcessor(ObjectProvider<Tracer> tracer, ObjectProvider<SlowQueryLog> slowQueryLog) {
+        this.tracer = tracer;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof TracingDataSource) && DATA_SOURCE_BEAN.equals(beanName)) {
+            return new TracingDataSource((DataSource) bean, tracer.getObject(), slowQueryLog.getObject());
+        }
+        return bean;
+    }
+}
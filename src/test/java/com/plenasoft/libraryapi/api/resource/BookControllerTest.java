@@ -1,10 +1,17 @@
 package com.plenasoft.libraryapi.api.resource;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.plenasoft.libraryapi.api.dto.BookDTO;
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.config.WebConfig;
 import com.plenasoft.libraryapi.exception.BusinessException;
 import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.repository.BookAvailability;
 import com.plenasoft.libraryapi.service.BookService;
+import com.plenasoft.libraryapi.service.availability.AvailabilityBroadcaster;
+import com.plenasoft.libraryapi.service.changes.BookChangePage;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,22 +22,33 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @WebMvcTest(controllers = BookController.class)
+@Import(WebConfig.class)
 @AutoConfigureMockMvc
 public class BookControllerTest {
 
@@ -43,6 +61,9 @@ public class BookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    AvailabilityBroadcaster broadcaster;
+
 
 
     @Test
@@ -50,7 +71,7 @@ public class BookControllerTest {
     public void createBookTeste() throws Exception {
 
         BookDTO dto = createNewBook();
-        Book savedBook = Book.builder().id(10L).author("Artur").title("Aventuras").isbn("001").build();
+        Book savedBook = Book.builder().id(10L).author("Artur").title("Aventuras").isbn("9788533302273").build();
         BDDMockito.given(service.save(Mockito.any(Book.class)))
                 .willReturn(savedBook);
         String json = new ObjectMapper().writeValueAsString(dto);
@@ -115,6 +136,28 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Erro de validação ao cadastrar livro com isbn inválido.")
+    public void createBookWithInvalidIsbnTest() throws Exception {
+
+        BookDTO dto = createNewBook();
+        dto.setIsbn("978-85-333-0227-4");
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors", hasSize(1)))
+                .andExpect(jsonPath("errors[0]").value("isbn inválido"));
+
+        Mockito.verify(service, Mockito.never()).save(Mockito.any(Book.class));
+    }
+
     @Test
     @DisplayName("Deve obter informacoes de um livro")
     public void getBookDetailsTest() throws Exception {
@@ -148,6 +191,148 @@ public class BookControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Deve obter informacoes de um livro em Smile quando solicitado.")
+    public void getBookDetailsAsSmileTest() throws Exception {
+        Long id = 1L;
+        Book book = Book.builder().id(id).title("Aventuras").author("Artur").isbn("001").build();
+        BDDMockito.given(service.getById(id)).willReturn(Optional.of(book));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/"+id))
+                .accept(WebConfig.APPLICATION_SMILE_VALUE);
+
+        MvcResult result = mvc
+            .perform(request)
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(WebConfig.APPLICATION_SMILE_VALUE))
+            .andReturn();
+
+        BookDTO dto = new ObjectMapper(new SmileFactory())
+                .readValue(result.getResponse().getContentAsByteArray(), BookDTO.class);
+        assertThat(dto.getId()).isEqualTo(id);
+        assertThat(dto.getIsbn()).isEqualTo("001");
+    }
+
+    @Test
+    @DisplayName("Deve criar um livro enviado em CBOR e responder em JSON por padrão.")
+    public void createBookFromCborTest() throws Exception {
+        BookDTO dto = createNewBook();
+        Book savedBook = Book.builder().id(10L).author("Artur").title("Aventuras").isbn("9788533302273").build();
+        BDDMockito.given(service.save(Mockito.any(Book.class))).willReturn(savedBook);
+        byte[] cbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(dto);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API)
+                .contentType(WebConfig.APPLICATION_CBOR_VALUE)
+                .content(cbor);
+
+        mvc
+           .perform(request)
+           .andExpect( status().isCreated() )
+           .andExpect( content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON) )
+           .andExpect( jsonPath("id").value(10L) );
+    }
+
+    @Test
+    @DisplayName("Deve obter a disponibilidade de vários livros em uma consulta.")
+    public void bulkAvailabilityTest() throws Exception {
+        BDDMockito.given(service.getAvailability(Arrays.asList("001", "002")))
+                .willReturn(Arrays.asList(availability("001", 0), availability("002", 1)));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/availability"))
+                .param("isbn", "001", "002")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(status().isOk())
+            .andExpect( jsonPath("$", hasSize(2)) )
+            .andExpect( jsonPath("[0].isbn").value("001") )
+            .andExpect( jsonPath("[0].available").value(true) )
+            .andExpect( jsonPath("[1].isbn").value("002") )
+            .andExpect( jsonPath("[1].available").value(false) )
+            .andExpect( jsonPath("[1].activeLoans").value(1) );
+    }
+
+    @Test
+    @DisplayName("Deve abrir o stream de disponibilidade dos isbns informados na filial.")
+    public void availabilityStreamTest() throws Exception {
+        BDDMockito.given(broadcaster.subscribe("centro", Arrays.asList("001", "002")))
+                .willReturn(Optional.of(new SseEmitter()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/availability/stream"))
+                .header(BranchContextHolder.BRANCH_HEADER, "centro")
+                .param("isbn", "001", "002")
+                .accept(MediaType.TEXT_EVENT_STREAM);
+
+        mvc
+            .perform(request)
+            .andExpect(status().isOk())
+            .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    @DisplayName("Deve recusar o stream de disponibilidade quando o limite de conexões for atingido.")
+    public void availabilityStreamFullTest() throws Exception {
+        BDDMockito.given(broadcaster.subscribe(Mockito.anyString(), Mockito.anyCollection()))
+                .willReturn(Optional.empty());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/availability/stream"))
+                .accept(MediaType.TEXT_EVENT_STREAM);
+
+        mvc
+            .perform(request)
+            .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    @DisplayName("Deve listar as alterações dos livros com o token para continuar.")
+    public void changesTest() throws Exception {
+        Book updated = Book.builder().id(10L).author("Artur").title("Aventuras").isbn("001").version(2L).build();
+        Book deleted = Book.builder().id(11L).isbn("002").deletedAt(LocalDateTime.now()).build();
+        BDDMockito.given(service.getChanges("4:9", 2))
+                .willReturn(new BookChangePage(Arrays.asList(updated, deleted), "6:11", true));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/changes"))
+                .param("since", "4:9")
+                .param("limit", "2")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(status().isOk())
+            .andExpect( jsonPath("changes", hasSize(2)) )
+            .andExpect( jsonPath("changes[0].id").value(10L) )
+            .andExpect( jsonPath("changes[0].deleted").value(false) )
+            .andExpect( jsonPath("changes[0].book.title").value("Aventuras") )
+            .andExpect( jsonPath("changes[0].book.version").value(2L) )
+            .andExpect( jsonPath("changes[1].id").value(11L) )
+            .andExpect( jsonPath("changes[1].deleted").value(true) )
+            .andExpect( jsonPath("changes[1].book").doesNotExist() )
+            .andExpect( jsonPath("nextToken").value("6:11") )
+            .andExpect( jsonPath("hasMore").value(true) );
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar um limite de alterações acima do máximo.")
+    public void changesLimitTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/changes"))
+                .param("limit", String.valueOf(BookController.MAX_CHANGES + 1))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(status().isBadRequest());
+
+        Mockito.verify(service, Mockito.never()).getChanges(Mockito.any(), Mockito.anyInt());
+    }
+
     @Test
     @DisplayName("Deve retornar resource not found quando não encontrar o livro")
     public void bookNotFoundTeste() throws Exception {
@@ -165,6 +350,50 @@ public class BookControllerTest {
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("Deve buscar o livro na filial informada no header.")
+    public void getBookFromBranchHeaderTest() throws Exception {
+
+        //Cenario
+        AtomicReference<String> branch = new AtomicReference<>();
+        BDDMockito.given(service.getById(1L)).willAnswer( invocation -> {
+            branch.set(BranchContextHolder.getBranch());
+            return Optional.of(Book.builder().id(1L).title("Aventuras").author("Artur").isbn("001").build());
+        });
+
+        //execucao
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .header(BranchContextHolder.BRANCH_HEADER, "centro")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(status().isOk());
+
+        //verificacao
+        assertThat(branch.get()).isEqualTo("centro");
+        assertThat(BranchContextHolder.getBranch()).isEqualTo(BranchContextHolder.DEFAULT_BRANCH);
+    }
+
+    @Test
+    @DisplayName("Deve retornar bad request quando a filial do header for inválida.")
+    public void invalidBranchHeaderTest() throws Exception {
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/" + 1))
+                .header(BranchContextHolder.BRANCH_HEADER, "centro; drop")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc
+            .perform(request)
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("errors", hasSize(1)))
+            .andExpect(jsonPath("errors[0]").value("Invalid branch"));
+
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+    }
+
     @Test
     @DisplayName("Deve deletar um livro")
     public void deleteBookTeste() throws Exception {
@@ -246,7 +475,100 @@ public class BookControllerTest {
                 .andExpect( status().isNotFound() );
     }
 
+    @Test
+    @DisplayName("Deve retornar conflito ao atualizar livro com versão desatualizada.")
+    public void staleVersionOnUpdate() throws Exception {
+        Long id = 1L;
+        BookDTO dto = createNewBook();
+        dto.setVersion(1L);
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        BDDMockito.given( service.getById(id) )
+                .willReturn( Optional.of(Book.builder().id(id).isbn("001").version(2L).build()) );
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(BOOK_API.concat("/"+1))
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect( status().isConflict() )
+                .andExpect( jsonPath("errors", hasSize(1)) );
+
+        Mockito.verify(service, Mockito.never()).update(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Deve atualizar parcialmente um livro.")
+    public void patchBookTest() throws Exception {
+        BookDTO dto = BookDTO.builder().title("Novo titulo").version(0L).build();
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        BDDMockito.given( service.patch(Mockito.any(Book.class)) ).willReturn(true);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/"+1))
+                .content(json)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect( status().isNoContent() );
+
+        Mockito.verify(service, Mockito.never()).getById(Mockito.anyLong());
+        Mockito.verify(service).patch(Book.builder().id(1L).title("Novo titulo").version(0L).build());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 ao atualizar parcialmente livro inexistente.")
+    public void notBookFoundForPatch() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(BookDTO.builder().title("Novo titulo").build());
+
+        BDDMockito.given( service.patch(Mockito.any(Book.class)) ).willReturn(false);
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/"+1))
+                .content(json)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect( status().isNotFound() );
+    }
+
+    @Test
+    @DisplayName("Deve retornar conflito ao atualizar parcialmente livro alterado por outra requisição.")
+    public void conflictOnPatch() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(BookDTO.builder().title("Novo titulo").version(0L).build());
+
+        BDDMockito.given( service.patch(Mockito.any(Book.class)) )
+                .willThrow( new ObjectOptimisticLockingFailureException(Book.class, 1L) );
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .patch(BOOK_API.concat("/"+1))
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect( status().isConflict() )
+                .andExpect( jsonPath("errors", hasSize(1)) );
+    }
+
+    private BookAvailability availability(String isbn, int activeLoans) {
+        return new BookAvailability() {
+            @Override
+            public String getIsbn() {
+                return isbn;
+            }
+
+            @Override
+            public int getActiveLoans() {
+                return activeLoans;
+            }
+        };
+    }
+
     private BookDTO createNewBook() {
-        return BookDTO.builder().author("Artur").title("Aventuras").isbn("001").build();
+        return BookDTO.builder().author("Artur").title("Aventuras").isbn("9788533302273").build();
     }
 }
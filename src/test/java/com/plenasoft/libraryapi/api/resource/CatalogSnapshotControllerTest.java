@@ -0,0 +1,125 @@
+package com.plenasoft.libraryapi.api.resource;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.service.snapshot.CatalogSnapshot;
+import com.plenasoft.libraryapi.service.snapshot.CatalogSnapshotJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(controllers = CatalogSnapshotController.class)
+@AutoConfigureMockMvc
+public class CatalogSnapshotControllerTest {
+
+    static String SNAPSHOT_API = "/api/books/snapshot";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    CatalogSnapshotJob job;
+
+    @TempDir
+    Path directory;
+
+    CatalogSnapshot snapshot;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path file = directory.resolve("catalog-centro.ndjson.gz");
+        Files.write(file, "0123456789".getBytes(StandardCharsets.US_ASCII));
+        snapshot = new CatalogSnapshot("centro", file, 10, 2, 1_600_000_000_000L, "7:9223372036854775807");
+        BDDMockito.given(job.current("centro")).willReturn(Optional.of(snapshot));
+    }
+
+    @Test
+    @DisplayName("Deve baixar o snapshot inteiro da filial com a posição do feed.")
+    public void downloadSnapshotTest() throws Exception {
+        mvc
+            .perform(request())
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, CatalogSnapshotController.CONTENT_TYPE))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().string(HttpHeaders.ETAG, snapshot.getETag()))
+            .andExpect(header().string(CatalogSnapshotController.CHANGE_TOKEN_HEADER, "7:9223372036854775807"))
+            .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    @DisplayName("Deve baixar apenas a faixa de bytes pedida.")
+    public void downloadRangeTest() throws Exception {
+        mvc
+            .perform(request().header(HttpHeaders.RANGE, "bytes=2-5"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+            .andExpect(content().string("2345"));
+    }
+
+    @Test
+    @DisplayName("Deve ignorar a faixa pedida para outro snapshot.")
+    public void downloadRangeOtherSnapshotTest() throws Exception {
+        mvc
+            .perform(request()
+                    .header(HttpHeaders.RANGE, "bytes=2-5")
+                    .header(HttpHeaders.IF_RANGE, "\"centro-1\""))
+            .andExpect(status().isOk())
+            .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    @DisplayName("Deve recusar faixa além do tamanho do snapshot.")
+    public void downloadUnsatisfiableRangeTest() throws Exception {
+        mvc
+            .perform(request().header(HttpHeaders.RANGE, "bytes=10-"))
+            .andExpect(status().isRequestedRangeNotSatisfiable())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    @DisplayName("Deve responder não modificado quando o cliente já tem o snapshot.")
+    public void notModifiedSnapshotTest() throws Exception {
+        mvc
+            .perform(request().header(HttpHeaders.IF_NONE_MATCH, snapshot.getETag()))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("Deve responder indisponível enquanto o snapshot da filial não foi gerado.")
+    public void snapshotNotGeneratedTest() throws Exception {
+        mvc
+            .perform(request().header(BranchContextHolder.BRANCH_HEADER, "norte"))
+            .andExpect(status().isServiceUnavailable());
+    }
+
+    private MockHttpServletRequestBuilder request() {
+        return MockMvcRequestBuilders
+                .get(SNAPSHOT_API)
+                .header(BranchContextHolder.BRANCH_HEADER, "centro");
+    }
+}
@@ -1,12 +1,24 @@
 package com.plenasoft.libraryapi.api.resource;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.plenasoft.libraryapi.api.dto.LoanBatchDTO;
 import com.plenasoft.libraryapi.api.dto.LoanDTO;
+import com.plenasoft.libraryapi.api.dto.ReturnBatchDTO;
+import com.plenasoft.libraryapi.api.dto.ReturnedLoanDTO;
+import com.plenasoft.libraryapi.config.WebConfig;
 import com.plenasoft.libraryapi.exception.BusinessException;
 import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Customer;
 import com.plenasoft.libraryapi.model.entity.Loan;
 import com.plenasoft.libraryapi.service.BookService;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.LoanBatchService;
 import com.plenasoft.libraryapi.service.LoanService;
+import com.plenasoft.libraryapi.service.batch.LoanBatchItem;
+import com.plenasoft.libraryapi.service.batch.LoanBatchStatus;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,22 +30,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 @AutoConfigureMockMvc
 @WebMvcTest(controllers = LoanController.class)
+@Import(WebConfig.class)
 public class LoanControllerTest {
 
     static final String LOAN_API = "/api/loans";
@@ -47,6 +65,12 @@ public class LoanControllerTest {
     @MockBean
     private LoanService loanService;
 
+    @MockBean
+    private LoanBatchService batchService;
+
+    @MockBean
+    private CustomerService customerService;
+
     @Test
     @DisplayName("Deve realizar um emprestimo")
     public void createLoanTest() throws Exception {
@@ -57,8 +81,10 @@ public class LoanControllerTest {
         Book book = Book.builder().id(1L).isbn("123").build();
         BDDMockito.given( bookService.getBookByIsbn("123") )
                 .willReturn(Optional.of(book));
+        BDDMockito.given( customerService.getOrCreate("Fulano") )
+                .willReturn(Customer.builder().id(7L).name("Fulano").build());
 
-        Loan loan = Loan.builder().id(1L).customer("Fulano").book(book).loanDate(LocalDate.now()).build();
+        Loan loan = Loan.builder().id(1L).customerId(7L).book(book).loanDate(LocalDate.now()).build();
         BDDMockito.given( loanService.save(Mockito.any(Loan.class)) ).willReturn(loan);
 
         MockHttpServletRequestBuilder request  = MockMvcRequestBuilders.post(LOAN_API)
@@ -101,6 +127,8 @@ public class LoanControllerTest {
         Book book = Book.builder().id(1L).isbn("123").build();
         BDDMockito.given( bookService.getBookByIsbn("123") )
                 .willReturn(Optional.of(book));
+        BDDMockito.given( customerService.getOrCreate("Fulano") )
+                .willReturn(Customer.builder().id(7L).name("Fulano").build());
 
         BDDMockito.given( loanService.save(Mockito.any(Loan.class)))
                 .willThrow( new BusinessException("Book already loaned."));
@@ -116,4 +144,197 @@ public class LoanControllerTest {
                 .andExpect( jsonPath( "errors[0]").value("Book already loaned."))
         ;
     }
+
+    @Test
+    @DisplayName("Deve devolver um livro")
+    public void returnBookTest() throws Exception {
+        ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
+        Loan loan = Loan.builder().id(1L).book(Book.builder().id(1L).build()).build();
+        BDDMockito.given( loanService.getById(Mockito.anyLong()) )
+                .willReturn( Optional.of(loan) );
+
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        mvc.perform(
+                MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json)
+        ).andExpect( status().isOk() );
+
+        Mockito.verify(loanService, Mockito.times(1)).returnLoan(loan);
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 quando tentar devolver um livro inexistente.")
+    public void returnInexistentBookTest() throws Exception {
+        ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
+        BDDMockito.given( loanService.getById(Mockito.anyLong()) )
+                .willReturn( Optional.empty() );
+
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        mvc.perform(
+                MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json)
+        ).andExpect( status().isNotFound() );
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao devolver um empréstimo já devolvido.")
+    public void returnAlreadyReturnedLoanTest() throws Exception {
+        ReturnedLoanDTO dto = ReturnedLoanDTO.builder().returned(true).build();
+        Loan loan = Loan.builder().id(1L).book(Book.builder().id(1L).build()).returned(true).build();
+        BDDMockito.given( loanService.getById(Mockito.anyLong()) )
+                .willReturn( Optional.of(loan) );
+        BDDMockito.given( loanService.returnLoan(loan) )
+                .willThrow( new BusinessException("Loan already returned.") );
+
+        String json = new ObjectMapper().writeValueAsString(dto);
+
+        mvc.perform(
+                MockMvcRequestBuilders.patch(LOAN_API.concat("/1"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json)
+        )
+                .andExpect( status().isBadRequest() )
+                .andExpect( jsonPath( "errors[0]").value("Loan already returned."));
+    }
+
+    @Test
+    @DisplayName("Deve emprestar um lote de livros e responder o resultado de cada isbn.")
+    public void createBatchTest() throws Exception {
+        LoanBatchDTO dto = LoanBatchDTO.builder().customer("Fulano").isbns(Arrays.asList("123", "456", "123")).build();
+        BDDMockito.given( batchService.checkout("Fulano", Arrays.asList("123", "456", "123")) )
+                .willReturn(Arrays.asList(
+                        new LoanBatchItem("123", LoanBatchStatus.CREATED, 10L),
+                        new LoanBatchItem("456", LoanBatchStatus.UNAVAILABLE, null),
+                        new LoanBatchItem("123", LoanBatchStatus.DUPLICATE, null)));
+
+        mvc.perform(
+                MockMvcRequestBuilders.post(LOAN_API.concat("/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto))
+        )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("$", Matchers.hasSize(3)) )
+                .andExpect( jsonPath("[0].status").value("CREATED") )
+                .andExpect( jsonPath("[0].loanId").value(10) )
+                .andExpect( jsonPath("[1].status").value("UNAVAILABLE") )
+                .andExpect( jsonPath("[2].status").value("DUPLICATE") );
+    }
+
+    @Test
+    @DisplayName("Deve emprestar um lote enviado em Smile e responder em Smile quando solicitado.")
+    public void createBatchAsSmileTest() throws Exception {
+        LoanBatchDTO dto = LoanBatchDTO.builder().customer("Fulano").isbns(Arrays.asList("123", "456")).build();
+        BDDMockito.given( batchService.checkout("Fulano", Arrays.asList("123", "456")) )
+                .willReturn(Arrays.asList(
+                        new LoanBatchItem("123", LoanBatchStatus.CREATED, 10L),
+                        new LoanBatchItem("456", LoanBatchStatus.NOT_FOUND, null)));
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+        MvcResult result = mvc.perform(
+                MockMvcRequestBuilders.post(LOAN_API.concat("/batch"))
+                .accept(WebConfig.APPLICATION_SMILE_VALUE)
+                .contentType(WebConfig.APPLICATION_SMILE_VALUE)
+                .content(smile.writeValueAsBytes(dto))
+        )
+                .andExpect( status().isOk() )
+                .andExpect( content().contentTypeCompatibleWith(WebConfig.APPLICATION_SMILE_VALUE) )
+                .andReturn();
+
+        JsonNode items = smile.readTree(result.getResponse().getContentAsByteArray());
+        assertThat(items).hasSize(2);
+        assertThat(items.get(0).get("status").asText()).isEqualTo("CREATED");
+        assertThat(items.get(0).get("loanId").asLong()).isEqualTo(10L);
+        assertThat(items.get(1).get("status").asText()).isEqualTo("NOT_FOUND");
+    }
+
+    @Test
+    @DisplayName("Deve realizar um empréstimo enviado em CBOR.")
+    public void createLoanFromCborTest() throws Exception {
+        LoanDTO dto = LoanDTO.builder().isbn("123").customer("Fulano").build();
+        Book book = Book.builder().id(1L).isbn("123").build();
+        BDDMockito.given( bookService.getBookByIsbn("123") ).willReturn(Optional.of(book));
+        BDDMockito.given( customerService.getOrCreate("Fulano") )
+                .willReturn(Customer.builder().id(7L).name("Fulano").build());
+        BDDMockito.given( loanService.save(Mockito.any(Loan.class)) )
+                .willReturn(Loan.builder().id(1L).customerId(7L).book(book).loanDate(LocalDate.now()).build());
+
+        mvc.perform(
+                MockMvcRequestBuilders.post(LOAN_API)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(WebConfig.APPLICATION_CBOR_VALUE)
+                .content(new ObjectMapper(new CBORFactory()).writeValueAsBytes(dto))
+        )
+                .andExpect( status().isCreated() )
+                .andExpect( content().string("1") );
+    }
+
+    @Test
+    @DisplayName("Deve devolver um lote enviado em CBOR e responder em CBOR quando solicitado.")
+    public void returnBatchAsCborTest() throws Exception {
+        ReturnBatchDTO dto = ReturnBatchDTO.builder().isbns(Collections.singletonList("123")).build();
+        BDDMockito.given( batchService.returnAll(Collections.singletonList("123")) )
+                .willReturn(Collections.singletonList(new LoanBatchItem("123", LoanBatchStatus.RETURNED, 10L)));
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+        MvcResult result = mvc.perform(
+                MockMvcRequestBuilders.post(LOAN_API.concat("/returns/batch"))
+                .accept(WebConfig.APPLICATION_CBOR_VALUE)
+                .contentType(WebConfig.APPLICATION_CBOR_VALUE)
+                .content(cbor.writeValueAsBytes(dto))
+        )
+                .andExpect( status().isOk() )
+                .andExpect( content().contentTypeCompatibleWith(WebConfig.APPLICATION_CBOR_VALUE) )
+                .andReturn();
+
+        JsonNode items = cbor.readTree(result.getResponse().getContentAsByteArray());
+        assertThat(items.get(0).get("isbn").asText()).isEqualTo("123");
+        assertThat(items.get(0).get("status").asText()).isEqualTo("RETURNED");
+    }
+
+    @Test
+    @DisplayName("Deve recusar lote vazio ou maior que o limite.")
+    public void invalidBatchTest() throws Exception {
+        LoanBatchDTO empty = LoanBatchDTO.builder().customer("Fulano").isbns(Collections.emptyList()).build();
+        LoanBatchDTO tooLarge = LoanBatchDTO.builder().customer("Fulano")
+                .isbns(Collections.nCopies(LoanBatchDTO.MAX_ITEMS + 1, "123")).build();
+
+        for (LoanBatchDTO dto : Arrays.asList(empty, tooLarge)) {
+            mvc.perform(
+                    MockMvcRequestBuilders.post(LOAN_API.concat("/batch"))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(new ObjectMapper().writeValueAsString(dto))
+            ).andExpect( status().isBadRequest() );
+        }
+        Mockito.verifyNoInteractions(batchService);
+    }
+
+    @Test
+    @DisplayName("Deve devolver um lote de livros e responder o resultado de cada isbn.")
+    public void returnBatchTest() throws Exception {
+        ReturnBatchDTO dto = ReturnBatchDTO.builder().isbns(Arrays.asList("123", "456")).build();
+        BDDMockito.given( batchService.returnAll(Arrays.asList("123", "456")) )
+                .willReturn(Arrays.asList(
+                        new LoanBatchItem("123", LoanBatchStatus.RETURNED, 10L),
+                        new LoanBatchItem("456", LoanBatchStatus.NOT_LOANED, null)));
+
+        mvc.perform(
+                MockMvcRequestBuilders.post(LOAN_API.concat("/returns/batch"))
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto))
+        )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("[0].isbn").value("123") )
+                .andExpect( jsonPath("[0].status").value("RETURNED") )
+                .andExpect( jsonPath("[1].status").value("NOT_LOANED") );
+    }
 }
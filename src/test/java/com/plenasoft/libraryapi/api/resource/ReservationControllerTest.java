@@ -0,0 +1,146 @@
+package com.plenasoft.libraryapi.api.resource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plenasoft.libraryapi.api.dto.ReservationDTO;
+import com.plenasoft.libraryapi.exception.BusinessException;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Customer;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.model.entity.ReservationStatus;
+import com.plenasoft.libraryapi.service.BookService;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.ReservationService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.Optional;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@WebMvcTest(controllers = ReservationController.class)
+public class ReservationControllerTest {
+
+    static final String RESERVATION_API = "/api/books/1/reservations";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    private ReservationService service;
+
+    @MockBean
+    private BookService bookService;
+
+    @MockBean
+    private CustomerService customerService;
+
+    @Test
+    @DisplayName("Deve entrar na fila de reservas de um livro emprestado.")
+    public void createReservationTest() throws Exception {
+        Book book = Book.builder().id(1L).activeLoans(1).build();
+        BDDMockito.given( bookService.getById(1L) ).willReturn(Optional.of(book));
+        BDDMockito.given( customerService.getOrCreate("Fulano") )
+                .willReturn(Customer.builder().id(7L).name("Fulano").build());
+
+        Reservation reservation = Reservation.builder()
+                .id(10L).book(book).customerId(7L).status(ReservationStatus.WAITING).build();
+        BDDMockito.given( service.reserve(Mockito.any(Reservation.class)) ).willReturn(reservation);
+        BDDMockito.given( service.getPosition(reservation) ).willReturn(3L);
+
+        String json = new ObjectMapper().writeValueAsString(ReservationDTO.builder().customer("Fulano").build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(RESERVATION_API)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform( request )
+                .andExpect( status().isCreated() )
+                .andExpect( jsonPath("id").value(10L) )
+                .andExpect( jsonPath("customer").value("Fulano") )
+                .andExpect( jsonPath("status").value("WAITING") )
+                .andExpect( jsonPath("position").value(3L) );
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro ao reservar livro disponível.")
+    public void availableBookReservationTest() throws Exception {
+        Book book = Book.builder().id(1L).build();
+        BDDMockito.given( bookService.getById(1L) ).willReturn(Optional.of(book));
+        BDDMockito.given( customerService.getOrCreate("Fulano") )
+                .willReturn(Customer.builder().id(7L).name("Fulano").build());
+        BDDMockito.given( service.reserve(Mockito.any(Reservation.class)) )
+                .willThrow( new BusinessException("Book is available for loan.") );
+
+        String json = new ObjectMapper().writeValueAsString(ReservationDTO.builder().customer("Fulano").build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(RESERVATION_API)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform( request )
+                .andExpect( status().isBadRequest() )
+                .andExpect( jsonPath("errors[0]").value("Book is available for loan.") );
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 ao reservar livro inexistente.")
+    public void inexistentBookReservationTest() throws Exception {
+        BDDMockito.given( bookService.getById(1L) ).willReturn(Optional.empty());
+
+        String json = new ObjectMapper().writeValueAsString(ReservationDTO.builder().customer("Fulano").build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post(RESERVATION_API)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mvc.perform( request )
+                .andExpect( status().isNotFound() );
+        Mockito.verify(service, Mockito.never()).reserve(Mockito.any(Reservation.class));
+    }
+
+    @Test
+    @DisplayName("Deve cancelar uma reserva.")
+    public void cancelReservationTest() throws Exception {
+        Reservation reservation = Reservation.builder()
+                .id(10L).book(Book.builder().id(1L).build()).status(ReservationStatus.WAITING).build();
+        BDDMockito.given( service.getById(10L) ).willReturn(Optional.of(reservation));
+
+        mvc.perform( MockMvcRequestBuilders.delete(RESERVATION_API.concat("/10")) )
+                .andExpect( status().isNoContent() );
+
+        Mockito.verify(service).cancel(reservation);
+    }
+
+    @Test
+    @DisplayName("Deve retornar 404 ao cancelar reserva de outro livro.")
+    public void cancelReservationOfAnotherBookTest() throws Exception {
+        Reservation reservation = Reservation.builder()
+                .id(10L).book(Book.builder().id(2L).build()).status(ReservationStatus.WAITING).build();
+        BDDMockito.given( service.getById(10L) ).willReturn(Optional.of(reservation));
+
+        mvc.perform( MockMvcRequestBuilders.delete(RESERVATION_API.concat("/10")) )
+                .andExpect( status().isNotFound() );
+
+        Mockito.verify(service, Mockito.never()).cancel(Mockito.any(Reservation.class));
+    }
+}
@@ -0,0 +1,168 @@
+package com.plenasoft.libraryapi.api.resource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.plenasoft.libraryapi.config.WebConfig;
+import com.plenasoft.libraryapi.model.entity.DailyLoanStats;
+import com.plenasoft.libraryapi.model.repository.TopBook;
+import com.plenasoft.libraryapi.service.LoanStatsService;
+import com.plenasoft.libraryapi.service.stats.LoanStatsBackfillJob;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@WebMvcTest(controllers = StatsController.class)
+@Import(WebConfig.class)
+public class StatsControllerTest {
+
+    static final String STATS_API = "/api/stats";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    LoanStatsService service;
+
+    @MockBean
+    LoanStatsBackfillJob backfillJob;
+
+    @Test
+    @DisplayName("Deve obter os empréstimos por dia do período.")
+    public void loansPerDayTest() throws Exception {
+        LocalDate from = LocalDate.of(2020, 4, 1);
+        LocalDate to = LocalDate.of(2020, 4, 2);
+        BDDMockito.given( service.getLoansPerDay(from, to) ).willReturn(Arrays.asList(
+                DailyLoanStats.builder().statDate(from).loans(3).returns(1).activeCustomers(2).build(),
+                DailyLoanStats.builder().statDate(to).loans(5).returns(4).activeCustomers(5).build()));
+
+        mvc.perform( MockMvcRequestBuilders.get(STATS_API.concat("/loans-per-day"))
+                .param("from", "2020-04-01")
+                .param("to", "2020-04-02")
+                .accept(MediaType.APPLICATION_JSON) )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("$", hasSize(2)) )
+                .andExpect( jsonPath("[0].date").value("2020-04-01") )
+                .andExpect( jsonPath("[0].loans").value(3) )
+                .andExpect( jsonPath("[1].activeCustomers").value(5) );
+    }
+
+    @Test
+    @DisplayName("Deve responder em Smile com as mesmas configurações do JSON, como o formato das datas.")
+    public void loansPerDayAsSmileTest() throws Exception {
+        LocalDate day = LocalDate.of(2020, 4, 1);
+        BDDMockito.given( service.getLoansPerDay(day, day) ).willReturn(Collections.singletonList(
+                DailyLoanStats.builder().statDate(day).loans(3).returns(1).activeCustomers(2).build()));
+
+        MvcResult result = mvc.perform( MockMvcRequestBuilders.get(STATS_API.concat("/loans-per-day"))
+                .param("from", "2020-04-01")
+                .param("to", "2020-04-01")
+                .accept(WebConfig.APPLICATION_SMILE_VALUE) )
+                .andExpect( status().isOk() )
+                .andExpect( content().contentTypeCompatibleWith(WebConfig.APPLICATION_SMILE_VALUE) )
+                .andReturn();
+
+        // o Boot grava datas como texto ISO; o mapper padrão do Spring para Smile gravaria [2020,4,1]
+        JsonNode days = new ObjectMapper(new SmileFactory()).readTree(result.getResponse().getContentAsByteArray());
+        assertThat(days.get(0).get("date").isTextual()).isTrue();
+        assertThat(days.get(0).get("date").asText()).isEqualTo("2020-04-01");
+        assertThat(days.get(0).get("loans").asLong()).isEqualTo(3L);
+    }
+
+    @Test
+    @DisplayName("Deve obter os livros mais emprestados do período.")
+    public void topBooksTest() throws Exception {
+        TopBook top = Mockito.mock(TopBook.class);
+        BDDMockito.given( top.getBookId() ).willReturn(1L);
+        BDDMockito.given( top.getTitle() ).willReturn("As aventuras");
+        BDDMockito.given( top.getIsbn() ).willReturn("123");
+        BDDMockito.given( top.getLoans() ).willReturn(42L);
+        BDDMockito.given( service.getTopBooks(Mockito.any(LocalDate.class), Mockito.any(LocalDate.class), Mockito.eq(5)) )
+                .willReturn(Collections.singletonList(top));
+
+        mvc.perform( MockMvcRequestBuilders.get(STATS_API.concat("/top-books"))
+                .param("limit", "5")
+                .accept(MediaType.APPLICATION_JSON) )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("[0].title").value("As aventuras") )
+                .andExpect( jsonPath("[0].loans").value(42) );
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar período invertido.")
+    public void invalidRangeTest() throws Exception {
+        mvc.perform( MockMvcRequestBuilders.get(STATS_API.concat("/active-customers"))
+                .param("from", "2020-04-02")
+                .param("to", "2020-04-01")
+                .accept(MediaType.APPLICATION_JSON) )
+                .andExpect( status().isBadRequest() );
+
+        Mockito.verifyNoInteractions(service);
+    }
+
+    @Test
+    @DisplayName("Deve contar os clientes ativos do período.")
+    public void activeCustomersTest() throws Exception {
+        LocalDate from = LocalDate.of(2020, 4, 1);
+        LocalDate to = LocalDate.of(2020, 4, 30);
+        BDDMockito.given( service.countActiveCustomers(from, to) ).willReturn(17L);
+
+        mvc.perform( MockMvcRequestBuilders.get(STATS_API.concat("/active-customers"))
+                .param("from", "2020-04-01")
+                .param("to", "2020-04-30")
+                .accept(MediaType.APPLICATION_JSON) )
+                .andExpect( status().isOk() )
+                .andExpect( jsonPath("customers").value(17) );
+    }
+
+    @Test
+    @DisplayName("Deve recalcular os agregados do período informado.")
+    public void backfillTest() throws Exception {
+        LocalDate from = LocalDate.of(2020, 4, 1);
+        LocalDate to = LocalDate.of(2020, 4, 30);
+        BDDMockito.given( backfillJob.backfill(from, to) ).willReturn(30);
+
+        mvc.perform( MockMvcRequestBuilders.post(STATS_API.concat("/backfill"))
+                .param("from", "2020-04-01")
+                .param("to", "2020-04-30")
+                .accept(MediaType.APPLICATION_JSON) )
+                .andExpect( status().isOk() )
+                .andExpect( content().string("30") );
+    }
+
+    @Test
+    @DisplayName("Deve recusar recalcular um período maior que o limite.")
+    public void backfillRangeTooLargeTest() throws Exception {
+        mvc.perform( MockMvcRequestBuilders.post(STATS_API.concat("/backfill"))
+                .param("from", "2020-01-01")
+                .param("to", "2020-12-31")
+                .accept(MediaType.APPLICATION_JSON) )
+                .andExpect( status().isBadRequest() );
+
+        Mockito.verifyNoInteractions(backfillJob);
+    }
+}
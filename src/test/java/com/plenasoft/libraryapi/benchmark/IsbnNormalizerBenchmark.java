@@ -0,0 +1,34 @@
+package com.plenasoft.libraryapi.benchmark;
+
+import com.plenasoft.libraryapi.isbn.Isbn;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo da normalização do isbn feita em toda busca, comparado com a limpeza por expressão
+ * regular. Rode com {@code -prof gc} para conferir que {@link Isbn#toIsbn13} não aloca.
+ *
+ * ./mvnw -Pbenchmark -DskipTests verify -Dbenchmark.include=IsbnNormalizerBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsbnNormalizerBenchmark {
+
+    @Param({"9788533302273", "978-85-333-0227-3", "0-8044-2957-X", "invalido"})
+    public String isbn;
+
+    @Benchmark
+    public long toIsbn13() {
+        return Isbn.toIsbn13(isbn);
+    }
+
+    @Benchmark
+    public String regexCleanup() {
+        return isbn.replaceAll("[-\\s]", "").toUpperCase();
+    }
+}
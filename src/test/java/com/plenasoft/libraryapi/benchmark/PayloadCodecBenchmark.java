@@ -0,0 +1,114 @@
+package com.plenasoft.libraryapi.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.plenasoft.libraryapi.api.dto.BookDTO;
+import com.plenasoft.libraryapi.api.dto.LoanDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de codificação/decodificação dos payloads de livros e empréstimos em JSON, Smile e CBOR.
+ * O tamanho em bytes de cada payload é impresso no início de cada fork.
+ *
+ * ./mvnw -Pbenchmark -DskipTests verify -Dbenchmark.include=PayloadCodecBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadCodecBenchmark {
+
+    private static final TypeReference<List<BookDTO>> BOOK_LIST = new TypeReference<List<BookDTO>>() {};
+
+    @Param({"json", "smile", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+
+    private BookDTO book;
+    private LoanDTO loan;
+    private List<BookDTO> books;
+
+    private byte[] encodedBook;
+    private byte[] encodedLoan;
+    private byte[] encodedBooks;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = mapperFor(format);
+
+        book = createBook(1L);
+        loan = LoanDTO.builder().isbn("9788533302273").customer("Fulano de Tal").build();
+        books = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            books.add(createBook(id));
+        }
+
+        encodedBook = mapper.writeValueAsBytes(book);
+        encodedLoan = mapper.writeValueAsBytes(loan);
+        encodedBooks = mapper.writeValueAsBytes(books);
+
+        System.out.printf("%n[%s] book=%d bytes, loan=%d bytes, 100 books=%d bytes%n",
+                format, encodedBook.length, encodedLoan.length, encodedBooks.length);
+    }
+
+    @Benchmark
+    public byte[] encodeBook() throws IOException {
+        return mapper.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public BookDTO decodeBook() throws IOException {
+        return mapper.readValue(encodedBook, BookDTO.class);
+    }
+
+    @Benchmark
+    public byte[] encodeLoan() throws IOException {
+        return mapper.writeValueAsBytes(loan);
+    }
+
+    @Benchmark
+    public LoanDTO decodeLoan() throws IOException {
+        return mapper.readValue(encodedLoan, LoanDTO.class);
+    }
+
+    @Benchmark
+    public byte[] encodeBookList() throws IOException {
+        return mapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public List<BookDTO> decodeBookList() throws IOException {
+        return mapper.readValue(encodedBooks, BOOK_LIST);
+    }
+
+    private static ObjectMapper mapperFor(String format) {
+        switch (format) {
+            case "smile":
+                return new ObjectMapper(new SmileFactory());
+            case "cbor":
+                return new ObjectMapper(new CBORFactory());
+            default:
+                return new ObjectMapper();
+        }
+    }
+
+    private static BookDTO createBook(Long id) {
+        return BookDTO.builder()
+                .id(id)
+                .title("As aventuras de Fulano, volume " + id)
+                .author("Fulano de Tal")
+                .isbn("9788533302273")
+                .version(0L)
+                .build();
+    }
+}
@@ -0,0 +1,132 @@
+package com.plenasoft.libraryapi.cache;
+
+import com.plenasoft.libraryapi.config.BookCacheProperties;
+import com.plenasoft.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<InProcessInvalidationBus> buses = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        buses.forEach(InProcessInvalidationBus::close);
+    }
+
+    @Test
+    @DisplayName("Deve guardar a busca por isbn em qualquer grafia e expirar depois do tempo máximo.")
+    public void cacheAndExpireTest() {
+        //cenario
+        BookCache cache = new BookCache(properties(), clock::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        //execucao
+        cache.get("main", "9788533302273", () -> load(loads, 1L));
+        Optional<Book> cached = cache.get("main", "85-333-0227-4", () -> load(loads, 1L));
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        cache.get("main", "9788533302273", () -> load(loads, 1L));
+        cache.get("centro", "9788533302273", () -> load(loads, 1L));
+
+        //verificacao
+        assertThat(cached.get().getId()).isEqualTo(1L);
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Deve invalidar o livro alterado nos outros nós, enviando uma vez cada livro do intervalo.")
+    public void invalidateOnOtherNodesTest() {
+        //cenario
+        RecordingBus busA = new RecordingBus();
+        InProcessInvalidationBus busB = bus();
+        BookCache cacheA = new BookCache(properties(), clock::get);
+        BookCache cacheB = new BookCache(properties(), clock::get);
+        InvalidationRelay relayA = new InvalidationRelay(cacheA, busA, properties());
+        InvalidationRelay relayB = new InvalidationRelay(cacheB, busB, properties());
+        AtomicInteger loads = new AtomicInteger();
+        cacheB.get("main", "9788533302273", () -> load(loads, 1L));
+        cacheB.get("main", "9780804429573", () -> load(loads, 2L));
+
+        //execucao
+        cacheA.invalidate(1L);
+        cacheA.invalidate(1L);
+        cacheA.invalidate(3L);
+        relayA.relay();
+        relayB.relay();
+
+        //verificacao
+        assertThat(busA.sent).hasSize(1);
+        assertThat(busA.sent.get(0)).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(cacheB.size()).isEqualTo(1);
+        cacheB.get("main", "9788533302273", () -> load(loads, 1L));
+        cacheB.get("main", "9780804429573", () -> load(loads, 2L));
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Não deve guardar um livro lido enquanto ele era invalidado.")
+    public void skipStaleLoadTest() {
+        //cenario
+        BookCache cache = new BookCache(properties(), clock::get);
+        AtomicInteger loads = new AtomicInteger();
+
+        //execucao
+        cache.get("main", "9788533302273", () -> {
+            cache.invalidate(1L);
+            return load(loads, 1L);
+        });
+        cache.get("main", "9788533302273", () -> load(loads, 1L));
+
+        //verificacao
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private InProcessInvalidationBus bus() {
+        InProcessInvalidationBus bus = new InProcessInvalidationBus();
+        buses.add(bus);
+        return bus;
+    }
+
+    private static Optional<Book> load(AtomicInteger loads, Long id) {
+        loads.incrementAndGet();
+        return Optional.of(Book.builder().id(id).branch("main").title("As aventuras").build());
+    }
+
+    private static BookCacheProperties properties() {
+        BookCacheProperties properties = new BookCacheProperties();
+        properties.setMaxStaleness(Duration.ofSeconds(10));
+        return properties;
+    }
+
+    /**
+     * Guarda os lotes enviados e os repassa aos outros nós da JVM.
+     */
+    private class RecordingBus implements InvalidationBus {
+
+        private final InProcessInvalidationBus delegate = bus();
+        private final List<Collection<Long>> sent = new ArrayList<>();
+
+        @Override
+        public void send(Collection<Long> bookIds) {
+            sent.add(bookIds);
+            delegate.send(bookIds);
+        }
+
+        @Override
+        public List<Collection<Long>> receive() {
+            return delegate.receive();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.plenasoft.libraryapi.cache;
+
+import com.plenasoft.libraryapi.config.BookCacheProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.cache.invalidation.bus=jdbc",
+        "library.scheduling.enabled=false"
+})
+public class JdbcInvalidationBusTest {
+
+    @Autowired
+    InvalidationBus bus;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    BookCacheProperties properties;
+
+    @Test
+    @DisplayName("Deve entregar pela tabela os lotes de um nó aos outros nós, uma única vez.")
+    public void deliverToOtherNodesTest() {
+        //cenario
+        JdbcInvalidationBus otherNode = new JdbcInvalidationBus(dataSource, properties);
+        otherNode.receive();
+        bus.receive();
+
+        //execucao
+        bus.send(Arrays.asList(1L, 2L));
+        bus.send(Arrays.asList(3L));
+        List<Collection<Long>> received = otherNode.receive();
+
+        //verificacao
+        assertThat(bus).isInstanceOf(JdbcInvalidationBus.class);
+        assertThat(received).hasSize(2);
+        assertThat(received.get(0)).containsExactly(1L, 2L);
+        assertThat(received.get(1)).containsExactly(3L);
+        assertThat(otherNode.receive()).isEmpty();
+        assertThat(bus.receive()).isEmpty();
+    }
+}
@@ -0,0 +1,82 @@
+package com.plenasoft.libraryapi.isbn;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class IsbnTest {
+
+    @Test
+    @DisplayName("Deve normalizar as grafias do ISBN-13 para os 13 dígitos.")
+    public void isbn13Test() {
+        assertThat(Isbn.toIsbn13("9788533302273")).isEqualTo(9788533302273L);
+        assertThat(Isbn.toIsbn13("978-85-333-0227-3")).isEqualTo(9788533302273L);
+        assertThat(Isbn.toIsbn13("978 85 333 0227 3")).isEqualTo(9788533302273L);
+        assertThat(Isbn.toIsbn13("9790000000001")).isEqualTo(9790000000001L);
+    }
+
+    @Test
+    @DisplayName("Deve converter o ISBN-10 para o ISBN-13 equivalente, inclusive com dígito X.")
+    public void isbn10Test() {
+        assertThat(Isbn.toIsbn13("8533302274")).isEqualTo(9788533302273L);
+        assertThat(Isbn.toIsbn13("85-333-0227-4")).isEqualTo(9788533302273L);
+        assertThat(Isbn.toIsbn13("0-8044-2957-X")).isEqualTo(9780804429573L);
+        assertThat(Isbn.toIsbn13("080442957x")).isEqualTo(9780804429573L);
+    }
+
+    @Test
+    @DisplayName("Deve recusar isbns com dígito verificador, prefixo ou formato inválidos.")
+    public void invalidIsbnTest() {
+        assertThat(Isbn.toIsbn13(null)).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.toIsbn13("")).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.toIsbn13("9788533302274")).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.toIsbn13("8533302277")).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.toIsbn13("9770000000002")).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.toIsbn13("85333022X4")).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.toIsbn13("978853330227")).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.toIsbn13("97885333022730")).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.toIsbn13("978.85.333.0227.3")).isEqualTo(Isbn.INVALID);
+        assertThat(Isbn.isValid("1234")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve usar os 13 dígitos como chave dos isbns válidos e o texto dos demais.")
+    public void keyTest() {
+        assertThat(Isbn.key("978-85-333-0227-3")).isEqualTo("9788533302273");
+        assertThat(Isbn.key("9788533302273")).isEqualTo("9788533302273");
+        assertThat(Isbn.key("batch-001")).isEqualTo("batch-001");
+        assertThat(Isbn.toIsbn13s(Arrays.asList("978-85-333-0227-3", "9788533302273", "batch-001")))
+                .containsExactly(9788533302273L);
+        assertThat(Isbn.toIsbn13s(Arrays.asList("batch-001"))).containsExactly(Isbn.INVALID);
+    }
+
+    @Test
+    @DisplayName("Não deve alocar memória ao normalizar o isbn.")
+    public void allocationFreeTest() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        String[] isbns = {"978-85-333-0227-3", "0-8044-2957-X", "invalido"};
+        long thread = Thread.currentThread().getId();
+
+        // aquece até o JIT compilar o método
+        long sum = 0;
+        for (int i = 0; i < 200_000; i++) {
+            sum += Isbn.toIsbn13(isbns[i % isbns.length]);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100_000; i++) {
+            sum += Isbn.toIsbn13(isbns[i % isbns.length]);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertThat(sum).isNotZero();
+        // folga para a própria medição; um objeto por chamada já passaria de 1 MB
+        assertThat(allocated).isLessThan(64 * 1024);
+    }
+}
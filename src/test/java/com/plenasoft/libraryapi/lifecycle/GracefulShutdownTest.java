@@ -0,0 +1,170 @@
+package com.plenasoft.libraryapi.lifecycle;
+
+import com.plenasoft.libraryapi.LibraryApiApplication;
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.isbn.Isbn;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GracefulShutdownTest {
+
+    private static final int USERS = 8;
+    private static final long READINESS_DELAY_MILLIS = 1000;
+
+    @Test
+    @DisplayName("Deve tirar a readiness do ar e terminar as requisições em andamento sem nenhuma falha.")
+    public void shutdownUnderLoadTest() throws Exception {
+        //cenario
+        ConfigurableApplicationContext app = new SpringApplicationBuilder(LibraryApiApplication.class, HeldRequest.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:shutdown;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "library.scheduling.enabled=false",
+                        "library.shutdown.readiness-delay=" + READINESS_DELAY_MILLIS + "ms",
+                        "logging.level.root=WARN")
+                .run();
+        String baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) app).getWebServer().getPort();
+
+        // o "balanceador" do teste: para de enviar requisições quando a readiness cai
+        AtomicBoolean routable = new AtomicBoolean(true);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<String> failures = new ArrayList<>();
+        AtomicLong isbnSequence = new AtomicLong(979_100_000_000L);
+        ExecutorService threads = Executors.newFixedThreadPool(USERS + 2);
+        HeldRequest held = app.getBean(HeldRequest.class);
+
+        try (CloseableHttpClient http = HttpClients.custom()
+                .setMaxConnTotal(USERS + 2)
+                .setMaxConnPerRoute(USERS + 2)
+                .build()) {
+            assertThat(status(http, baseUrl + "/actuator/health/readiness")).isEqualTo(200);
+            assertThat(status(http, baseUrl + "/actuator/health/liveness")).isEqualTo(200);
+
+            Future<Integer> readinessDown = threads.submit(() -> {
+                while (true) {
+                    int status = status(http, baseUrl + "/actuator/health/readiness");
+                    if (status != 200) {
+                        routable.set(false);
+                        return status;
+                    }
+                    Thread.sleep(50);
+                }
+            });
+            List<Future<?>> users = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                users.add(threads.submit(() -> {
+                    while (routable.get()) {
+                        long first12 = isbnSequence.incrementAndGet();
+                        String body = "{\"title\":\"As aventuras\",\"author\":\"Fulano\",\"isbn\":\""
+                                + Isbn.format(first12 * 10 + Isbn.checkDigit13(first12)) + "\"}";
+                        HttpPost post = new HttpPost(baseUrl + "/api/books");
+                        post.setHeader(BranchContextHolder.BRANCH_HEADER, "shutdown");
+                        post.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+                        try (CloseableHttpResponse response = http.execute(post)) {
+                            EntityUtils.consume(response.getEntity());
+                            if (response.getStatusLine().getStatusCode() == 201) {
+                                succeeded.incrementAndGet();
+                            } else {
+                                synchronized (failures) {
+                                    failures.add("status " + response.getStatusLine().getStatusCode());
+                                }
+                            }
+                        } catch (Exception e) {
+                            synchronized (failures) {
+                                failures.add(e.toString());
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Thread.sleep(500);
+            Future<Integer> heldStatus = threads.submit(() -> status(http, baseUrl + "/test/held"));
+            assertThat(held.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //execucao
+            app.close();
+
+            //verificacao
+            // a parada só termina depois da requisição que estava em andamento
+            assertThat(held.finished).isTrue();
+            assertThat(heldStatus.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+            assertThat(readinessDown.get()).isEqualTo(503);
+            for (Future<?> user : users) {
+                user.get();
+            }
+        } finally {
+            threads.shutdownNow();
+            if (app.isActive()) {
+                app.close();
+            }
+        }
+        assertThat(failures).isEmpty();
+        assertThat(succeeded.get()).isPositive();
+    }
+
+    /**
+     * Requisição que continua em andamento quando o conector para de aceitar conexões: espera
+     * a readiness sair do ar e responde só depois do {@code readiness-delay}.
+     */
+    @ResponseBody
+    @RequestMapping("/test/held")
+    static class HeldRequest {
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile boolean finished;
+
+        private final ReadinessHealthIndicator readiness;
+
+        HeldRequest(ReadinessHealthIndicator readiness) {
+            this.readiness = readiness;
+        }
+
+        @GetMapping
+        public String hold() throws InterruptedException {
+            entered.countDown();
+            while (readiness.isReady()) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(READINESS_DELAY_MILLIS + 500);
+            finished = true;
+            return "ok";
+        }
+    }
+
+    private static int status(CloseableHttpClient http, String url) throws Exception {
+        try (CloseableHttpResponse response = http.execute(new HttpGet(url))) {
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+}
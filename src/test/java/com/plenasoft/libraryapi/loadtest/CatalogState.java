@@ -0,0 +1,73 @@
+package com.plenasoft.libraryapi.loadtest;
+
+import com.plenasoft.libraryapi.isbn.Isbn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * O que o teste sabe sobre o acervo: livros disponíveis e empréstimos em aberto criados por ele.
+ * Um livro emprestado sai da lista de disponíveis até ser devolvido, então exclusões e novos
+ * empréstimos só escolhem livros que o servidor deve aceitar.
+ */
+class CatalogState {
+
+    private final List<Book> available = new ArrayList<>();
+    private final List<Loan> openLoans = new ArrayList<>();
+    // a API só aceita isbns válidos; começa em um ponto aleatório do prefixo 979 para não repetir
+    // os livros de execuções anteriores
+    private final AtomicLong isbnSequence = new AtomicLong(ThreadLocalRandom.current().nextLong(900_000_000L));
+
+    String nextIsbn() {
+        long first12 = 979_000_000_000L + isbnSequence.incrementAndGet();
+        return Isbn.format(first12 * 10 + Isbn.checkDigit13(first12));
+    }
+
+    synchronized void addBook(Book book) {
+        available.add(book);
+    }
+
+    synchronized Book randomBook() {
+        return available.isEmpty() ? null : available.get(ThreadLocalRandom.current().nextInt(available.size()));
+    }
+
+    synchronized Book takeBook() {
+        return available.isEmpty() ? null : removeRandom(available);
+    }
+
+    synchronized void addLoan(Loan loan) {
+        openLoans.add(loan);
+    }
+
+    synchronized Loan takeLoan() {
+        return openLoans.isEmpty() ? null : removeRandom(openLoans);
+    }
+
+    private static <T> T removeRandom(List<T> list) {
+        int index = ThreadLocalRandom.current().nextInt(list.size());
+        T last = list.remove(list.size() - 1);
+        return index == list.size() ? last : list.set(index, last);
+    }
+
+    static class Book {
+        final long id;
+        final String isbn;
+
+        Book(long id, String isbn) {
+            this.id = id;
+            this.isbn = isbn;
+        }
+    }
+
+    static class Loan {
+        final long id;
+        final Book book;
+
+        Loan(long id, Book book) {
+            this.id = id;
+            this.book = book;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.plenasoft.libraryapi.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latências (em microssegundos) e erros de uma operação. Cada usuário virtual tem os seus
+ * registradores, sem sincronização; eles são somados com {@link #merge} no fim da medição.
+ */
+class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long micros, boolean error) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = micros;
+        if (error) {
+            errors++;
+        }
+    }
+
+    void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.latencies[i], false);
+        }
+        errors += other.errors;
+    }
+
+    long count() {
+        return count;
+    }
+
+    long errors() {
+        return errors;
+    }
+
+    double errorRate() {
+        return count == 0 ? 0 : (double) errors / count;
+    }
+
+    /**
+     * Percentil pelo método nearest-rank, em milissegundos. Ordena as latências registradas.
+     */
+    double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(latencies, 0, count);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return latencies[Math.max(rank, 1) - 1] / 1000.0;
+    }
+
+    double maxMillis() {
+        return percentileMillis(100);
+    }
+}
@@ -0,0 +1,336 @@
+package com.plenasoft.libraryapi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plenasoft.libraryapi.LibraryApiApplication;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Teste de carga da API: sobe a aplicação com H2 em memória (ou usa {@code -Dloadtest.base-url}),
+ * cadastra um acervo inicial e dispara o mix de operações configurado com {@code loadtest.users}
+ * usuários virtuais, sem pausa entre as requisições. Depois do aquecimento, mede por
+ * {@code loadtest.duration} segundos e imprime vazão, percentis de latência e taxa de erro.
+ * Termina com código 1 (falhando o build) se algum limite for ultrapassado.
+ *
+ * ./mvnw -Ploadtest -DskipTests verify -Dloadtest.users=32 -Dloadtest.duration=60
+ */
+public class LoadTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Clientes sorteados nos empréstimos: muitos, para nenhum chegar ao limite de empréstimos em aberto.
+     */
+    private static final int CUSTOMERS = 1000;
+
+    private final LoadTestConfig config;
+    private final String baseUrl;
+    private final CloseableHttpClient http;
+    private final CatalogState catalog = new CatalogState();
+
+    LoadTest(LoadTestConfig config, String baseUrl) {
+        this.config = config;
+        this.baseUrl = baseUrl;
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(config.users * 2);
+        connections.setDefaultMaxPerRoute(config.users * 2);
+        RequestConfig timeouts = RequestConfig.custom()
+                .setConnectTimeout(5000)
+                .setConnectionRequestTimeout(5000)
+                .setSocketTimeout(10000)
+                .build();
+        this.http = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(timeouts)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = new LoadTestConfig();
+        String baseUrl = System.getProperty("loadtest.base-url");
+        ConfigurableApplicationContext app = null;
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            app = new SpringApplicationBuilder(LibraryApiApplication.class)
+                    .properties(
+                            "server.port=0",
+                            "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                            "spring.jpa.show-sql=false",
+                            "library.shutdown.readiness-delay=0s",
+                            "logging.level.root=WARN")
+                    .run(args);
+            baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) app).getWebServer().getPort();
+        }
+
+        List<String> failures;
+        try {
+            failures = new LoadTest(config, baseUrl).run();
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach(failure -> System.out.println("FALHA: " + failure));
+            System.exit(1);
+        }
+        System.out.println("Limites atendidos.");
+        System.exit(0);
+    }
+
+    /**
+     * @return limites ultrapassados (vazio quando o teste passou)
+     */
+    List<String> run() throws Exception {
+        System.out.printf("Alvo %s, %d usuários, mix %s%n", baseUrl, config.users, config.mix);
+        seed();
+        if (config.warmupSeconds > 0) {
+            runPhase(config.warmupSeconds);
+        }
+        long started = System.nanoTime();
+        Map<Operation, LatencyRecorder> results = runPhase(config.durationSeconds);
+        double elapsedSeconds = (System.nanoTime() - started) / 1_000_000_000.0;
+        http.close();
+        return report(results, elapsedSeconds);
+    }
+
+    private void seed() throws IOException {
+        LatencyRecorder ignored = new LatencyRecorder();
+        for (int i = 0; i < config.seedBooks; i++) {
+            create(ignored);
+        }
+        if (ignored.errors() > 0) {
+            throw new IllegalStateException("Falha ao cadastrar o acervo inicial: " + ignored.errors() + " erro(s).");
+        }
+    }
+
+    private Map<Operation, LatencyRecorder> runPhase(int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService users = Executors.newFixedThreadPool(config.users);
+        try {
+            List<Future<Map<Operation, LatencyRecorder>>> futures = new ArrayList<>();
+            for (int i = 0; i < config.users; i++) {
+                futures.add(users.submit(() -> virtualUser(deadline)));
+            }
+            Map<Operation, LatencyRecorder> merged = newRecorders();
+            for (Future<Map<Operation, LatencyRecorder>> future : futures) {
+                future.get().forEach((operation, recorder) -> merged.get(operation).merge(recorder));
+            }
+            return merged;
+        } finally {
+            users.shutdownNow();
+        }
+    }
+
+    private Map<Operation, LatencyRecorder> virtualUser(long deadline) {
+        Map<Operation, LatencyRecorder> recorders = newRecorders();
+        while (System.nanoTime() < deadline) {
+            Operation operation = config.nextOperation();
+            try {
+                execute(operation, recorders);
+            } catch (IOException e) {
+                recorders.get(operation).record(0, true);
+            }
+        }
+        return recorders;
+    }
+
+    /**
+     * Executa a operação sorteada; quando não há livro ou empréstimo para ela, cadastra um livro.
+     */
+    private void execute(Operation operation, Map<Operation, LatencyRecorder> recorders) throws IOException {
+        switch (operation) {
+            case READ: {
+                CatalogState.Book book = catalog.randomBook();
+                if (book == null) {
+                    create(recorders.get(Operation.CREATE));
+                    return;
+                }
+                // o livro pode ter sido excluído por outro usuário depois do sorteio
+                Response response = send(new HttpGet(baseUrl + "/api/books/" + book.id), null);
+                recorders.get(operation).record(response.micros, response.status != 200 && response.status != 404);
+                return;
+            }
+            case CREATE:
+                create(recorders.get(operation));
+                return;
+            case DUPLICATE: {
+                CatalogState.Book book = catalog.randomBook();
+                if (book == null) {
+                    create(recorders.get(Operation.CREATE));
+                    return;
+                }
+                Response response = send(new HttpPost(baseUrl + "/api/books"), bookJson(book.isbn));
+                if (response.status == 201) {
+                    // o livro sorteado foi excluído antes do cadastro repetido
+                    catalog.addBook(new CatalogState.Book(response.json().get("id").asLong(), book.isbn));
+                }
+                recorders.get(operation).record(response.micros, response.status != 400 && response.status != 201);
+                return;
+            }
+            case CHECKOUT: {
+                CatalogState.Book book = catalog.takeBook();
+                if (book == null) {
+                    create(recorders.get(Operation.CREATE));
+                    return;
+                }
+                checkout(book, recorders.get(operation));
+                return;
+            }
+            case RETURN: {
+                CatalogState.Loan loan = catalog.takeLoan();
+                if (loan == null) {
+                    CatalogState.Book book = catalog.takeBook();
+                    if (book != null) {
+                        checkout(book, recorders.get(Operation.CHECKOUT));
+                    }
+                    return;
+                }
+                Response response = send(new HttpPatch(baseUrl + "/api/loans/" + loan.id), "{\"returned\":true}");
+                if (response.status == 200) {
+                    catalog.addBook(loan.book);
+                }
+                recorders.get(operation).record(response.micros, response.status != 200);
+                return;
+            }
+            case DELETE: {
+                CatalogState.Book book = catalog.takeBook();
+                if (book == null) {
+                    create(recorders.get(Operation.CREATE));
+                    return;
+                }
+                Response response = send(new HttpDelete(baseUrl + "/api/books/" + book.id), null);
+                recorders.get(operation).record(response.micros, response.status != 204);
+                return;
+            }
+            default:
+                throw new IllegalStateException("Operação não suportada: " + operation);
+        }
+    }
+
+    private void create(LatencyRecorder recorder) throws IOException {
+        String isbn = catalog.nextIsbn();
+        Response response = send(new HttpPost(baseUrl + "/api/books"), bookJson(isbn));
+        if (response.status == 201) {
+            catalog.addBook(new CatalogState.Book(response.json().get("id").asLong(), isbn));
+        }
+        recorder.record(response.micros, response.status != 201);
+    }
+
+    private void checkout(CatalogState.Book book, LatencyRecorder recorder) throws IOException {
+        Response response = send(new HttpPost(baseUrl + "/api/loans"),
+                "{\"isbn\":\"" + book.isbn + "\",\"customer\":\"cliente-" + ThreadLocalRandom.current().nextInt(CUSTOMERS) + "\"}");
+        if (response.status == 201) {
+            catalog.addLoan(new CatalogState.Loan(Long.parseLong(response.body.trim()), book));
+        } else {
+            catalog.addBook(book);
+        }
+        recorder.record(response.micros, response.status != 201);
+    }
+
+    private Response send(HttpUriRequest request, String json) throws IOException {
+        request.setHeader("Accept", "application/json");
+        if (json != null) {
+            ((HttpEntityEnclosingRequestBase) request).setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        }
+        long started = System.nanoTime();
+        try (CloseableHttpResponse response = http.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            String body = entity != null ? EntityUtils.toString(entity) : "";
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+            return new Response(response.getStatusLine().getStatusCode(), body, micros);
+        }
+    }
+
+    private List<String> report(Map<Operation, LatencyRecorder> results, double elapsedSeconds) {
+        LatencyRecorder total = new LatencyRecorder();
+        results.values().forEach(total::merge);
+
+        Map<String, LatencyRecorder> rows = new LinkedHashMap<>();
+        results.forEach((operation, recorder) -> {
+            if (recorder.count() > 0) {
+                rows.put(operation.key(), recorder);
+            }
+        });
+        rows.put("total", total);
+
+        System.out.printf("%n%-10s %9s %8s %9s %9s %9s %9s%n", "operação", "reqs", "erros", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        rows.forEach((name, recorder) -> System.out.printf("%-10s %9d %7.2f%% %9.2f %9.2f %9.2f %9.2f%n",
+                name, recorder.count(), recorder.errorRate() * 100,
+                recorder.percentileMillis(50), recorder.percentileMillis(95),
+                recorder.percentileMillis(99), recorder.maxMillis()));
+        double throughput = total.count() / elapsedSeconds;
+        System.out.printf("%nVazão: %.1f req/s em %.1f s%n", throughput, elapsedSeconds);
+
+        List<String> failures = new ArrayList<>();
+        if (total.errorRate() > config.maxErrorRate) {
+            failures.add(String.format("taxa de erro %.2f%% acima de %.2f%%", total.errorRate() * 100, config.maxErrorRate * 100));
+        }
+        if (total.percentileMillis(95) > config.maxP95Millis) {
+            failures.add(String.format("p95 de %.2f ms acima de %d ms", total.percentileMillis(95), config.maxP95Millis));
+        }
+        if (total.percentileMillis(99) > config.maxP99Millis) {
+            failures.add(String.format("p99 de %.2f ms acima de %d ms", total.percentileMillis(99), config.maxP99Millis));
+        }
+        if (throughput < config.minThroughput) {
+            failures.add(String.format("vazão de %.1f req/s abaixo de %.1f req/s", throughput, config.minThroughput));
+        }
+        return failures;
+    }
+
+    private static Map<Operation, LatencyRecorder> newRecorders() {
+        Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+        return recorders;
+    }
+
+    private static String bookJson(String isbn) {
+        return "{\"title\":\"Livro " + isbn + "\",\"author\":\"Autor de carga\",\"isbn\":\"" + isbn + "\"}";
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+        final long micros;
+
+        Response(int status, String body, long micros) {
+            this.status = status;
+            this.body = body;
+            this.micros = micros;
+        }
+
+        JsonNode json() throws IOException {
+            return JSON.readTree(body);
+        }
+    }
+}
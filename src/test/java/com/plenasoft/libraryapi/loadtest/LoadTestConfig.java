@@ -0,0 +1,81 @@
+package com.plenasoft.libraryapi.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Parâmetros do teste de carga, lidos das propriedades de sistema {@code loadtest.*}
+ * (na linha de comando do Maven: {@code -Dloadtest.users=32}).
+ */
+class LoadTestConfig {
+
+    static final String DEFAULT_MIX = "read:60,create:10,duplicate:5,checkout:10,return:10,delete:5";
+
+    final int users;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final int seedBooks;
+    final Map<Operation, Integer> mix;
+
+    final double maxErrorRate;
+    final long maxP95Millis;
+    final long maxP99Millis;
+    final double minThroughput;
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    LoadTestConfig() {
+        this.users = Integer.getInteger("loadtest.users", 16);
+        this.warmupSeconds = Integer.getInteger("loadtest.warmup", 5);
+        this.durationSeconds = Integer.getInteger("loadtest.duration", 30);
+        this.seedBooks = Integer.getInteger("loadtest.seed-books", 500);
+        this.mix = parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX));
+
+        this.maxErrorRate = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+        this.maxP95Millis = Long.getLong("loadtest.max-p95-ms", 200);
+        this.maxP99Millis = Long.getLong("loadtest.max-p99-ms", 500);
+        this.minThroughput = Double.parseDouble(System.getProperty("loadtest.min-throughput", "0"));
+
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("O mix precisa de pelo menos uma operação com peso.");
+        }
+    }
+
+    /**
+     * Sorteia a próxima operação de acordo com os pesos do mix.
+     */
+    Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Entrada inválida no mix: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Peso negativo no mix: " + entry);
+            }
+            weights.put(Operation.fromKey(parts[0]), weight);
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,39 @@
+package com.plenasoft.libraryapi.loadtest;
+
+/**
+ * Tipos de requisição do tráfego simulado, com o nome usado em {@code -Dloadtest.mix}.
+ */
+enum Operation {
+
+    /** GET /api/books/{id} de um livro existente. */
+    READ("read"),
+    /** POST /api/books com um isbn novo. */
+    CREATE("create"),
+    /** POST /api/books com um isbn já cadastrado; o esperado é 400. */
+    DUPLICATE("duplicate"),
+    /** POST /api/loans de um livro disponível. */
+    CHECKOUT("checkout"),
+    /** PATCH /api/loans/{id} devolvendo um empréstimo feito pelo teste. */
+    RETURN("return"),
+    /** DELETE /api/books/{id} de um livro sem empréstimo em aberto. */
+    DELETE("delete");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+
+    static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equalsIgnoreCase(key.trim())) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Operação desconhecida no mix: " + key);
+    }
+}
@@ -1,6 +1,8 @@
 package com.plenasoft.libraryapi.model.repository;
 
+import com.plenasoft.libraryapi.isbn.Isbn;
 import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.EnrichmentStatus;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,6 +12,8 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -35,7 +39,7 @@ public class BookRepositoryTeste {
         entityManager.persist(book);
 
         //execucao
-        boolean exists = repository.existsByIsbn(isbn);
+        boolean exists = repository.existsByBranchAndIsbnAndDeletedAtIsNull("main", isbn);
 
         //verificacao
         assertThat(exists).isTrue();
@@ -43,6 +47,7 @@ public class BookRepositoryTeste {
 
     private Book createNewBook(String isbn) {
         return Book.builder()
+                .branch("main")
                 .author("Fulano")
                 .title("As aventuras")
                 .isbn(isbn)
@@ -57,12 +62,30 @@ public class BookRepositoryTeste {
         String isbn = "123";
 
         //execucao
-        boolean exists = repository.existsByIsbn(isbn);
+        boolean exists = repository.existsByBranchAndIsbnAndDeletedAtIsNull("main", isbn);
 
         //verificacao
         assertThat(exists).isFalse();
     }
 
+    @Test
+    @DisplayName("Deve considerar o isbn somente dentro da filial.")
+    public void isbnIsScopedByBranchTest() {
+        //cenario
+        Book book = createNewBook("123");
+        entityManager.persist(book);
+
+        //execucao
+        boolean existsInOtherBranch = repository.existsByBranchAndIsbnAndDeletedAtIsNull("centro", "123");
+        Optional<Book> foundInOtherBranch = repository.findByIdAndBranchAndDeletedAtIsNull(book.getId(), "centro");
+        int patchedInOtherBranch = repository.patch(book.getId(), "centro", "Outro titulo", null, null);
+
+        //verificacao
+        assertThat(existsInOtherBranch).isFalse();
+        assertThat(foundInOtherBranch.isPresent()).isFalse();
+        assertThat(patchedInOtherBranch).isZero();
+    }
+
     @Test
     @DisplayName("Deve obter um livro por id.")
     public void findByIdTest() {
@@ -90,6 +113,98 @@ public class BookRepositoryTeste {
 
     }
 
+    @Test
+    @DisplayName("Deve atualizar parcialmente um livro somente na versão informada.")
+    public void patchBookTest() {
+        Book book = createNewBook("123");
+        entityManager.persist(book);
+        Long version = book.getVersion();
+
+        int stale = repository.patch(book.getId(), "main", "Outro titulo", null, version + 1);
+        int updated = repository.patch(book.getId(), "main", "Outro titulo", null, version);
+
+        Book foundBook = entityManager.find(Book.class, book.getId());
+        assertThat(stale).isZero();
+        assertThat(updated).isEqualTo(1);
+        assertThat(foundBook.getTitle()).isEqualTo("Outro titulo");
+        assertThat(foundBook.getAuthor()).isEqualTo("Fulano");
+        assertThat(foundBook.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    @DisplayName("Deve permitir somente um empréstimo em aberto por livro.")
+    public void activeLoansCounterTest() {
+        Book book = createNewBook("123");
+        entityManager.persist(book);
+
+        int first = repository.incrementActiveLoans(book.getId());
+        int second = repository.incrementActiveLoans(book.getId());
+        List<BookAvailability> loaned = repository.findAvailability("main",
+                Isbn.toIsbn13s(Arrays.asList("123", "999")), Arrays.asList("123", "999"));
+        int returned = repository.decrementActiveLoans(book.getId());
+        List<BookAvailability> available = repository.findAvailability("main",
+                Isbn.toIsbn13s(Arrays.asList("123")), Arrays.asList("123"));
+
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(loaned).hasSize(1);
+        assertThat(loaned.get(0).getActiveLoans()).isEqualTo(1);
+        assertThat(returned).isEqualTo(1);
+        assertThat(available.get(0).getActiveLoans()).isZero();
+    }
+
+    @Test
+    @DisplayName("Não deve desfazer um empréstimo ao salvar um livro lido antes dele.")
+    public void updateKeepsActiveLoansTest() {
+        //cenario
+        Book book = createNewBook("123");
+        entityManager.persist(book);
+        entityManager.flush();
+        entityManager.clear();
+        Book detached = repository.findById(book.getId()).get();
+        entityManager.clear();
+        repository.incrementActiveLoans(book.getId());
+
+        //execucao
+        detached.setTitle("Outro titulo");
+        repository.save(detached);
+        entityManager.flush();
+        entityManager.clear();
+
+        //verificacao
+        Book foundBook = entityManager.find(Book.class, book.getId());
+        assertThat(foundBook.getTitle()).isEqualTo("Outro titulo");
+        assertThat(foundBook.getActiveLoans()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve desfazer o enriquecimento ao salvar um livro lido antes dele.")
+    public void updateKeepsEnrichmentTest() {
+        //cenario
+        Book book = createNewBook("123");
+        entityManager.persist(book);
+        entityManager.flush();
+        entityManager.clear();
+        Book detached = repository.findById(book.getId()).get();
+        entityManager.clear();
+        entityManager.getEntityManager()
+                .createNativeQuery("update book set publisher = 'Editora', enrichment_status = 'ENRICHED' where id = ?")
+                .setParameter(1, book.getId())
+                .executeUpdate();
+
+        //execucao
+        detached.setTitle("Outro titulo");
+        repository.save(detached);
+        entityManager.flush();
+        entityManager.clear();
+
+        //verificacao
+        Book foundBook = entityManager.find(Book.class, book.getId());
+        assertThat(foundBook.getTitle()).isEqualTo("Outro titulo");
+        assertThat(foundBook.getPublisher()).isEqualTo("Editora");
+        assertThat(foundBook.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.ENRICHED);
+    }
+
     @Test
     @DisplayName("Deve deletar um livro.")
     public void deleteBookTest() {
@@ -105,5 +220,23 @@ public class BookRepositoryTeste {
         assertThat(deleteBook).isNull();
     }
 
+    @Test
+    @DisplayName("Deve manter o registro do livro excluido, escondido das consultas")
+    public void softDeleteBookTest() {
+        //cenario
+        Book book = createNewBook("123");
+        entityManager.persist(book);
+
+        //execucao
+        repository.delete(book);
+        entityManager.flush();
+        entityManager.clear();
+
+        //verificacao
+        assertThat(repository.findByIdAndBranchAndDeletedAtIsNull(book.getId(), "main")).isEmpty();
+        assertThat(repository.existsByBranchAndIsbnAndDeletedAtIsNull("main", "123")).isFalse();
+        // o histórico continua carregando o livro pelo id
+        assertThat(repository.findById(book.getId()).get().getDeletedAt()).isNotNull();
+    }
 
 }
@@ -1,22 +1,34 @@
 package com.plenasoft.libraryapi.service;
 
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.cache.BookCache;
+import com.plenasoft.libraryapi.config.BookCacheProperties;
 import com.plenasoft.libraryapi.exception.BusinessException;
 import com.plenasoft.libraryapi.model.entity.Book;
 import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.service.changes.BookChangePage;
+import com.plenasoft.libraryapi.service.changes.BookChangeSequence;
 import com.plenasoft.libraryapi.service.impl.BookServiceImpl;
+import com.plenasoft.libraryapi.shard.ShardRouter;
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.ui.ModelExtensionsKt;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -30,9 +42,24 @@ public class BookServiceTest {
     @MockBean
     BookRepository repository;
 
+    @MockBean
+    BookChangeSequence changeSequence;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @MockBean
+    ReservationService reservationService;
+
     @BeforeEach
     public void setUp() {
-        this.service = new BookServiceImpl( repository );
+        this.service = new BookServiceImpl( repository, changeSequence, transactionManager, new ShardRouter(1),
+                new BookCache(new BookCacheProperties()), reservationService );
+    }
+
+    @AfterEach
+    public void tearDown() {
+        BranchContextHolder.clear();
     }
 
     @Test
@@ -40,7 +67,7 @@ public class BookServiceTest {
     public void saveBookTest() {
         //cenario
         Book book = createValidBook();
-        Mockito.when( repository.existsByIsbn(Mockito.anyString()) ).thenReturn(false);
+        Mockito.when( repository.existsByBranchAndIsbnAndDeletedAtIsNull(Mockito.anyString(), Mockito.anyString()) ).thenReturn(false);
         Mockito.when( repository.save(book) ).thenReturn(
                 Book.builder()
                         .id(11L)
@@ -56,7 +83,7 @@ public class BookServiceTest {
         assertThat(saveBook.getIsbn()).isEqualTo("1234");
         assertThat(saveBook.getTitle()).isEqualTo("As aventuras");
         assertThat(saveBook.getAuthor()).isEqualTo("Fulano");
-
+        assertThat(book.getBranch()).isEqualTo(BranchContextHolder.DEFAULT_BRANCH);
 
     }
 
@@ -67,7 +94,7 @@ public class BookServiceTest {
     public void shouldNotSaveABookWithDuplicateISBN() {
         //Cenario
         Book book = createValidBook();
-        Mockito.when( repository.existsByIsbn(Mockito.anyString()) ).thenReturn(true);
+        Mockito.when( repository.existsByBranchAndIsbnAndDeletedAtIsNull(Mockito.anyString(), Mockito.anyString()) ).thenReturn(true);
 
 
         //Execucao
@@ -82,6 +109,54 @@ public class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve verificar o isbn somente na filial da requisição")
+    public void saveBookInBranchTest() {
+        //cenario
+        Book book = createValidBook();
+        BranchContextHolder.setBranch("centro");
+        Mockito.when( repository.existsByBranchAndIsbnAndDeletedAtIsNull("centro", "1234") ).thenReturn(false);
+        Mockito.when( repository.save(book) ).thenReturn(book);
+
+        //execucao
+        service.save(book);
+
+        //verificacao
+        assertThat(book.getBranch()).isEqualTo("centro");
+        Mockito.verify(repository).existsByBranchAndIsbnAndDeletedAtIsNull("centro", "1234");
+    }
+
+    @Test
+    @DisplayName("Deve recusar pelo ISBN-13 canônico o mesmo livro cadastrado com outra grafia.")
+    public void shouldNotSaveABookWithDuplicateNormalizedIsbn() {
+        //cenario
+        Book book = Book.builder().isbn("85-333-0227-4").author("Fulano").title("As aventuras").build();
+        Mockito.when( repository.existsByBranchAndIsbn13AndDeletedAtIsNull("main", 9788533302273L) ).thenReturn(true);
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable( () -> service.save(book) );
+
+        //verificacao
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Isbn já cadastrado.");
+        Mockito.verify(repository, Mockito.never()).existsByBranchAndIsbnAndDeletedAtIsNull(Mockito.anyString(), Mockito.anyString());
+        Mockito.verify(repository, Mockito.never()).save(book);
+    }
+
+    @Test
+    @DisplayName("Deve gravar o ISBN-13 canônico junto do isbn informado.")
+    public void saveBookWithIsbn13Test() {
+        //cenario
+        Book book = Book.builder().isbn("8533302274").author("Fulano").title("As aventuras").build();
+        Mockito.when( repository.save(book) ).thenReturn(book);
+
+        //execucao
+        service.save(book);
+
+        //verificacao
+        assertThat(book.getIsbn()).isEqualTo("8533302274");
+        assertThat(book.getIsbn13()).isEqualTo(9788533302273L);
+    }
+
     @Test
     @DisplayName("Deve obter um livro por id")
     public void getIdBookTest() {
@@ -89,7 +164,7 @@ public class BookServiceTest {
         Book book = createValidBook();
         book.setId(id);
 
-        Mockito.when(repository.findById(id)).thenReturn(Optional.of(book));
+        Mockito.when(repository.findByIdAndBranchAndDeletedAtIsNull(id, "main")).thenReturn(Optional.of(book));
 
         //execucao
         Optional<Book> foundBook = service.getById(id);
@@ -108,7 +183,7 @@ public class BookServiceTest {
     public void bookNotFoundByIdTest() {
         Long id = 1L;
 
-        Mockito.when(repository.findById(id)).thenReturn(Optional.empty());
+        Mockito.when(repository.findByIdAndBranchAndDeletedAtIsNull(id, "main")).thenReturn(Optional.empty());
 
         //execucao
         Optional<Book> foundBook = service.getById(id);
@@ -130,6 +205,37 @@ public class BookServiceTest {
         Mockito.verify(repository, Mockito.times(1)).delete(book);
     }
 
+    @Test
+    @DisplayName("Deve lançar erro de negócio ao deletar um livro emprestado.")
+    public void deleteLoanedBookTest() {
+        //cenario
+        Book book = Book.builder().id(1L).build();
+        Mockito.when(repository.findForUpdateById(1L)).thenReturn(Optional.of(Book.builder().id(1L).activeLoans(1).build()));
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.delete(book));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Livro emprestado não pode ser excluído.");
+        Mockito.verify(repository, Mockito.never()).delete(book);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negócio ao deletar um livro com reservas em espera.")
+    public void deleteReservedBookTest() {
+        //cenario
+        Book book = Book.builder().id(1L).build();
+        Mockito.when(repository.findForUpdateById(1L)).thenReturn(Optional.of(Book.builder().id(1L).build()));
+        Mockito.when(reservationService.getQueuedBooks(Collections.singleton(1L))).thenReturn(Collections.singleton(1L));
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> service.delete(book));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Livro com reservas em espera não pode ser excluído.");
+        Mockito.verify(repository, Mockito.never()).delete(book);
+    }
+
     @Test
     @DisplayName("Deve ocorrer erro ao tentar deletar um livro inexistente.")
     public void deleteInvalidBookTest() {
@@ -181,6 +287,142 @@ public class BookServiceTest {
 
     }
 
+    @Test
+    @DisplayName("Deve atualizar parcialmente um livro sem consultá-lo antes.")
+    public void patchBookTest() {
+        Book changes = Book.builder().id(1L).title("Novo titulo").version(3L).build();
+        Mockito.when(repository.patch(1L, "main", "Novo titulo", null, 3L)).thenReturn(1);
+
+        boolean patched = service.patch(changes);
+
+        assertThat(patched).isTrue();
+        Mockito.verify(repository, Mockito.never()).findByIdAndBranchAndDeletedAtIsNull(Mockito.anyLong(), Mockito.anyString());
+        Mockito.verify(repository, Mockito.never()).existsByIdAndBranchAndDeletedAtIsNull(Mockito.anyLong(), Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve retornar falso ao atualizar parcialmente um livro inexistente.")
+    public void patchNotFoundBookTest() {
+        Book changes = Book.builder().id(1L).title("Novo titulo").build();
+        Mockito.when(repository.patch(1L, "main", "Novo titulo", null, null)).thenReturn(0);
+        Mockito.when(repository.existsByIdAndBranchAndDeletedAtIsNull(1L, "main")).thenReturn(false);
+
+        assertThat(service.patch(changes)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de concorrência ao atualizar parcialmente com versão desatualizada.")
+    public void patchStaleVersionTest() {
+        Book changes = Book.builder().id(1L).title("Novo titulo").version(1L).build();
+        Mockito.when(repository.patch(1L, "main", "Novo titulo", null, 1L)).thenReturn(0);
+        Mockito.when(repository.existsByIdAndBranchAndDeletedAtIsNull(1L, "main")).thenReturn(true);
+
+        Throwable exception = Assertions.catchThrowable( () -> service.patch(changes) );
+
+        assertThat(exception).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
+    @Test
+    @DisplayName("Deve obter um livro pelo isbn.")
+    public void getBookByIsbnTest() {
+        Book book = createValidBook();
+        book.setId(1L);
+        Mockito.when(repository.findByBranchAndIsbnAndDeletedAtIsNull("main", "1234")).thenReturn(Optional.of(book));
+
+        Optional<Book> foundBook = service.getBookByIsbn("1234");
+
+        assertThat( foundBook.isPresent() ).isTrue();
+        assertThat( foundBook.get().getId() ).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Deve obter um livro pelo ISBN-13 canônico em qualquer grafia do isbn.")
+    public void getBookByNormalizedIsbnTest() {
+        Book book = createValidBook();
+        book.setId(1L);
+        Mockito.when(repository.findFirstByBranchAndIsbn13AndDeletedAtIsNullOrderById("main", 9788533302273L)).thenReturn(Optional.of(book));
+
+        Optional<Book> foundBook = service.getBookByIsbn("978-85-333-0227-3");
+
+        assertThat( foundBook.isPresent() ).isTrue();
+        assertThat( foundBook.get().getId() ).isEqualTo(1L);
+        Mockito.verify(repository, Mockito.never()).findByBranchAndIsbnAndDeletedAtIsNull(Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Deve obter pelo texto do isbn um livro ainda sem o ISBN-13 canônico.")
+    public void getBookByIsbnWithoutIsbn13Test() {
+        Book book = createValidBook();
+        book.setId(1L);
+        Mockito.when(repository.findByBranchAndIsbnAndDeletedAtIsNull("main", "9788533302273")).thenReturn(Optional.of(book));
+
+        Optional<Book> foundBook = service.getBookByIsbn("9788533302273");
+
+        assertThat( foundBook.isPresent() ).isTrue();
+        assertThat( foundBook.get().getId() ).isEqualTo(1L);
+        Mockito.verify(repository).findFirstByBranchAndIsbn13AndDeletedAtIsNullOrderById("main", 9788533302273L);
+    }
+
+    @Test
+    @DisplayName("Deve recusar pelo texto do isbn um livro cadastrado antes do ISBN-13 canônico.")
+    public void shouldNotSaveABookWithDuplicateLegacyIsbn() {
+        //cenario
+        Book book = Book.builder().isbn("9788533302273").author("Fulano").title("As aventuras").build();
+        Mockito.when( repository.existsByBranchAndIsbnAndDeletedAtIsNull("main", "9788533302273") ).thenReturn(true);
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable( () -> service.save(book) );
+
+        //verificacao
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Isbn já cadastrado.");
+        Mockito.verify(repository, Mockito.never()).save(book);
+    }
+
+    @Test
+    @DisplayName("Deve buscar o livro pelo isbn no cache até que ele seja alterado.")
+    public void getBookByIsbnCacheTest() {
+        Book book = Book.builder().id(1L).branch("main").isbn("9788533302273").author("Fulano").title("As aventuras").build();
+        Mockito.when(repository.findFirstByBranchAndIsbn13AndDeletedAtIsNullOrderById("main", 9788533302273L)).thenReturn(Optional.of(book));
+        Mockito.when(repository.save(book)).thenReturn(book);
+
+        service.getBookByIsbn("9788533302273");
+        Optional<Book> cached = service.getBookByIsbn("85-333-0227-4");
+        service.update(book);
+        service.getBookByIsbn("9788533302273");
+
+        assertThat( cached.get().getId() ).isEqualTo(1L);
+        assertThat( cached.get() ).isNotSameAs(book);
+        Mockito.verify(repository, Mockito.times(2)).findFirstByBranchAndIsbn13AndDeletedAtIsNullOrderById("main", 9788533302273L);
+    }
+
+    @Test
+    @DisplayName("Deve continuar o feed de alterações a partir do token informado.")
+    public void getChangesTest() {
+        //cenario
+        BranchContextHolder.setBranch("centro");
+        Book updated = Book.builder().id(3L).isbn("123").changeSeq(8L).build();
+        Book deleted = Book.builder().id(1L).isbn("456").changeSeq(9L).deletedAt(LocalDateTime.now()).build();
+        Book next = Book.builder().id(2L).isbn("789").changeSeq(10L).build();
+        Mockito.when(repository.findChanges("centro", 7L, 5L, 3)).thenReturn(Arrays.asList(updated, deleted, next));
+
+        //execucao
+        BookChangePage page = service.getChanges("7:5", 2);
+
+        //verificacao
+        assertThat(page.getChanges()).containsExactly(updated, deleted);
+        assertThat(page.getNextToken()).isEqualTo("9:1");
+        assertThat(page.isHasMore()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve ocorrer erro de negócio quando o token de alterações for inválido.")
+    public void getChangesInvalidTokenTest() {
+        Throwable exception = Assertions.catchThrowable( () -> service.getChanges("abc", 10) );
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Token de alterações inválido.");
+        Mockito.verify(repository, Mockito.never()).findChanges(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyInt());
+    }
+
     private Book createValidBook() {
         return Book.builder().isbn("1234").author("Fulano").title("As aventuras").build();
     }
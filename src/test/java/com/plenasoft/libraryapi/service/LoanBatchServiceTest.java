@@ -0,0 +1,251 @@
+package com.plenasoft.libraryapi.service;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Loan;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.model.entity.ReservationStatus;
+import com.plenasoft.libraryapi.model.repository.BookAvailability;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.model.repository.OutboxEventRepository;
+import com.plenasoft.libraryapi.model.repository.ReservationRepository;
+import com.plenasoft.libraryapi.service.batch.LoanBatchItem;
+import com.plenasoft.libraryapi.service.batch.LoanBatchStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.scheduling.enabled=false",
+        "library.loan-policy.customers[Limitado].max-open-loans=2",
+        "library.loan-policy.customers[Concorrente].max-open-loans=1"
+})
+public class LoanBatchServiceTest {
+
+    @Autowired
+    LoanBatchService batchService;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    CustomerService customerService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    ReservationRepository reservationRepository;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @AfterEach
+    public void tearDown() {
+        BranchContextHolder.clear();
+    }
+
+    @Test
+    @DisplayName("Deve emprestar os livros disponíveis do lote e informar o motivo dos recusados.")
+    public void checkoutBatchTest() {
+        //cenario
+        BranchContextHolder.setBranch("batch");
+        Book first = bookService.save(createBook("batch-001"));
+        Book second = bookService.save(createBook("batch-002"));
+        Book loaned = bookService.save(createBook("batch-003"));
+        loanService.save(Loan.builder().book(loaned).customerId(customerId("Ciclano")).loanDate(LocalDate.now()).build());
+        long outboxEvents = outboxEventRepository.count();
+
+        //execucao
+        List<LoanBatchItem> items = batchService.checkout("Fulano",
+                Arrays.asList("batch-001", "batch-002", "batch-003", "batch-404", "batch-001"));
+
+        //verificacao
+        assertThat(items).extracting(LoanBatchItem::getIsbn)
+                .containsExactly("batch-001", "batch-002", "batch-003", "batch-404", "batch-001");
+        assertThat(items).extracting(LoanBatchItem::getStatus).containsExactly(
+                LoanBatchStatus.CREATED,
+                LoanBatchStatus.CREATED,
+                LoanBatchStatus.UNAVAILABLE,
+                LoanBatchStatus.NOT_FOUND,
+                LoanBatchStatus.DUPLICATE);
+
+        Loan firstLoan = loanRepository.findById(items.get(0).getLoanId()).get();
+        assertThat(firstLoan.getBook().getId()).isEqualTo(first.getId());
+        assertThat(firstLoan.getCustomerId()).isEqualTo(customerId("Fulano"));
+        assertThat(firstLoan.getBranch()).isEqualTo("batch");
+        assertThat(loanRepository.findById(items.get(1).getLoanId()).get().getBook().getId()).isEqualTo(second.getId());
+        assertThat(bookRepository.findById(first.getId()).get().getActiveLoans()).isEqualTo(1);
+        assertThat(bookRepository.findById(loaned.getId()).get().getActiveLoans()).isEqualTo(1);
+        assertThat(outboxEventRepository.count()).isEqualTo(outboxEvents + 2);
+    }
+
+    @Test
+    @DisplayName("Deve devolver os empréstimos do lote e passar para a fila os livros reservados.")
+    public void returnBatchTest() {
+        //cenario
+        BranchContextHolder.setBranch("batch-devolucao");
+        Book first = bookService.save(createBook("batch-101"));
+        Book reserved = bookService.save(createBook("batch-102"));
+        bookService.save(createBook("batch-103"));
+        List<LoanBatchItem> loans = batchService.checkout("Fulano", Arrays.asList("batch-101", "batch-102"));
+        reservationRepository.save(Reservation.builder()
+                .book(reserved)
+                .customerId(customerId("Beltrano"))
+                .status(ReservationStatus.WAITING)
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        //execucao
+        List<LoanBatchItem> items = batchService.returnAll(Arrays.asList("batch-101", "batch-102", "batch-103"));
+
+        //verificacao
+        assertThat(items).extracting(LoanBatchItem::getStatus).containsExactly(
+                LoanBatchStatus.RETURNED,
+                LoanBatchStatus.RETURNED,
+                LoanBatchStatus.NOT_LOANED);
+        assertThat(items.get(0).getLoanId()).isEqualTo(loans.get(0).getLoanId());
+        assertThat(loanRepository.findById(items.get(0).getLoanId()).get().isReturned()).isTrue();
+        assertThat(loanRepository.findById(items.get(1).getLoanId()).get().getReturnDate()).isEqualTo(LocalDate.now());
+        assertThat(bookRepository.findById(first.getId()).get().getActiveLoans()).isEqualTo(0);
+
+        // o livro reservado foi direto para o próximo da fila
+        assertThat(bookRepository.findById(reserved.getId()).get().getActiveLoans()).isEqualTo(1);
+        Reservation promoted = reservationRepository.findAll().stream()
+                .filter(reservation -> reservation.getBook().getId().equals(reserved.getId()))
+                .findFirst()
+                .get();
+        assertThat(promoted.getStatus()).isEqualTo(ReservationStatus.PROMOTED);
+        assertThat(promoted.getLoan().getCustomerId()).isEqualTo(customerId("Beltrano"));
+
+        //execucao
+        List<LoanBatchItem> again = batchService.returnAll(Arrays.asList("batch-101"));
+
+        //verificacao
+        assertThat(again).extracting(LoanBatchItem::getStatus).containsExactly(LoanBatchStatus.NOT_LOANED);
+    }
+
+    @Test
+    @DisplayName("Deve encontrar no lote os livros cadastrados em outra grafia do isbn.")
+    public void isbnSpellingBatchTest() {
+        //cenario
+        BranchContextHolder.setBranch("batch-grafia");
+        Book book = bookService.save(createBook("978-85-333-0227-3"));
+
+        //execucao
+        List<LoanBatchItem> items = batchService.checkout("Fulano", Arrays.asList("9788533302273", "978 85 333 0227 3"));
+        List<BookAvailability> availability = bookService.getAvailability(Collections.singletonList("9788533302273"));
+        List<LoanBatchItem> returned = batchService.returnAll(Collections.singletonList("9788533302273"));
+
+        //verificacao
+        assertThat(items).extracting(LoanBatchItem::getStatus)
+                .containsExactly(LoanBatchStatus.CREATED, LoanBatchStatus.DUPLICATE);
+        assertThat(loanRepository.findById(items.get(0).getLoanId()).get().getBook().getId()).isEqualTo(book.getId());
+        assertThat(availability).extracting(BookAvailability::getIsbn).containsExactly("9788533302273");
+        assertThat(availability.get(0).getActiveLoans()).isEqualTo(1);
+        assertThat(returned).extracting(LoanBatchItem::getStatus).containsExactly(LoanBatchStatus.RETURNED);
+        assertThat(returned.get(0).getLoanId()).isEqualTo(items.get(0).getLoanId());
+    }
+
+    @Test
+    @DisplayName("Deve recusar os livros do lote além do limite de empréstimos em aberto do cliente.")
+    public void checkoutBatchLimitTest() {
+        //cenario
+        BranchContextHolder.setBranch("batch-limite");
+        Book open = bookService.save(createBook("batch-201"));
+        bookService.save(createBook("batch-202"));
+        bookService.save(createBook("batch-203"));
+        Book loaned = bookService.save(createBook("batch-204"));
+        loanService.save(Loan.builder().book(open).customerId(customerId("Limitado")).loanDate(LocalDate.now()).build());
+        loanService.save(Loan.builder().book(loaned).customerId(customerId("Ciclano")).loanDate(LocalDate.now()).build());
+
+        //execucao
+        List<LoanBatchItem> items = batchService.checkout("Limitado", Arrays.asList("batch-202", "batch-203", "batch-204"));
+
+        //verificacao
+        assertThat(items).extracting(LoanBatchItem::getStatus).containsExactly(
+                LoanBatchStatus.CREATED,
+                LoanBatchStatus.LIMIT_REACHED,
+                LoanBatchStatus.UNAVAILABLE);
+        assertThat(loanRepository.countOpenByCustomerId(customerId("Limitado"))).isEqualTo(2);
+
+        //execucao
+        List<LoanBatchItem> again = batchService.checkout("Limitado", Arrays.asList("batch-203"));
+
+        //verificacao
+        assertThat(again).extracting(LoanBatchItem::getStatus).containsExactly(LoanBatchStatus.LIMIT_REACHED);
+    }
+
+    @Test
+    @DisplayName("Deve respeitar o limite de empréstimos em aberto com lotes simultâneos do mesmo cliente.")
+    public void concurrentCheckoutLimitTest() throws Exception {
+        //cenario
+        BranchContextHolder.setBranch("batch-concorrente");
+        List<String> isbns = Arrays.asList("batch-301", "batch-302", "batch-303", "batch-304");
+        for( String isbn : isbns ) {
+            bookService.save(createBook(isbn));
+        }
+        customerId("Concorrente");
+        ExecutorService executor = Executors.newFixedThreadPool(isbns.size());
+        CountDownLatch start = new CountDownLatch(1);
+
+        //execucao
+        List<Future<LoanBatchStatus>> checkouts = new ArrayList<>();
+        try {
+            for( String isbn : isbns ) {
+                checkouts.add(executor.submit(() -> {
+                    BranchContextHolder.setBranch("batch-concorrente");
+                    start.await();
+                    return batchService.checkout("Concorrente", Collections.singletonList(isbn)).get(0).getStatus();
+                }));
+            }
+            start.countDown();
+
+            //verificacao
+            List<LoanBatchStatus> statuses = new ArrayList<>();
+            for( Future<LoanBatchStatus> checkout : checkouts ) {
+                statuses.add(checkout.get(30, TimeUnit.SECONDS));
+            }
+            assertThat(statuses).containsOnlyOnce(LoanBatchStatus.CREATED);
+            assertThat(loanRepository.countOpenByCustomerId(customerId("Concorrente"))).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Long customerId(String name) {
+        return customerService.getOrCreate(name).getId();
+    }
+
+    private static Book createBook(String isbn) {
+        return Book.builder().author("Fulano").title("As aventuras").isbn(isbn).build();
+    }
+}
@@ -0,0 +1,209 @@
+package com.plenasoft.libraryapi.service;
+
+import com.plenasoft.libraryapi.config.LoanPolicyProperties;
+import com.plenasoft.libraryapi.exception.BusinessException;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Customer;
+import com.plenasoft.libraryapi.model.entity.Loan;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.service.availability.BookAvailabilityChangedEvent;
+import com.plenasoft.libraryapi.service.fee.LoanPolicyResolver;
+import com.plenasoft.libraryapi.service.impl.LoanServiceImpl;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanServiceTest {
+
+    static final Customer FULANO = Customer.builder().id(1L).name("Fulano").build();
+
+    LoanService service;
+
+    @MockBean
+    LoanRepository repository;
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @MockBean
+    ReservationService reservationService;
+
+    @MockBean
+    CustomerService customerService;
+
+    @MockBean
+    OutboxService outboxService;
+
+    ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+
+    @BeforeEach
+    public void setUp() {
+        LoanPolicyProperties policies = new LoanPolicyProperties();
+        policies.getBookTypes().put("REFERENCE", new LoanPolicyProperties.Policy(3, null, null, null, null));
+        this.service = new LoanServiceImpl( repository, bookRepository, reservationService, customerService, outboxService,
+                eventPublisher, new LoanPolicyResolver(policies), new ShardRouter(1) );
+
+        Mockito.when( customerService.getById(1L) ).thenReturn(Optional.of(FULANO));
+        Mockito.when( customerService.getRemainingLoans(FULANO) ).thenReturn(10);
+    }
+
+    @Test
+    @DisplayName("Deve salvar um empréstimo e registrar o evento no outbox.")
+    public void saveLoanTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan savingLoan = createLoan(book);
+        Loan savedLoan = createLoan(book);
+        savedLoan.setId(1L);
+
+        Mockito.when( bookRepository.incrementActiveLoans(1L) ).thenReturn(1);
+        Mockito.when( repository.save(savingLoan) ).thenReturn(savedLoan);
+
+        Loan loan = service.save(savingLoan);
+
+        assertThat(loan.getId()).isEqualTo(savedLoan.getId());
+        Mockito.verify(outboxService).append(
+                Mockito.eq(LoanServiceImpl.AGGREGATE_TYPE),
+                Mockito.eq(1L),
+                Mockito.eq(LoanServiceImpl.LOAN_CREATED),
+                Mockito.any());
+        Mockito.verify(eventPublisher).publishEvent(new BookAvailabilityChangedEvent(null, "123", 1));
+    }
+
+    @Test
+    @DisplayName("Deve definir a data de devolução pela política do tipo do livro.")
+    public void saveLoanDueDateTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Book reference = Book.builder().id(2L).isbn("456").type("REFERENCE").build();
+        Loan loan = createLoan(book);
+        Loan referenceLoan = createLoan(reference);
+
+        Mockito.when( bookRepository.incrementActiveLoans(Mockito.anyLong()) ).thenReturn(1);
+        Mockito.when( repository.save(Mockito.any(Loan.class)) ).then( invocation -> invocation.getArgument(0) );
+
+        service.save(loan);
+        service.save(referenceLoan);
+
+        assertThat(loan.getDueDate()).isEqualTo(LocalDate.now().plusDays(14));
+        assertThat(referenceLoan.getDueDate()).isEqualTo(LocalDate.now().plusDays(3));
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negócio ao emprestar livro já emprestado.")
+    public void loanedBookSaveTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan savingLoan = createLoan(book);
+
+        Mockito.when( bookRepository.incrementActiveLoans(1L) ).thenReturn(0);
+
+        Throwable exception = Assertions.catchThrowable( () -> service.save(savingLoan) );
+
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned.");
+        Mockito.verify(repository, Mockito.never()).save(savingLoan);
+        Mockito.verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negócio quando o cliente chegou ao limite de empréstimos em aberto.")
+    public void customerLimitSaveTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan savingLoan = createLoan(book);
+
+        Mockito.when( customerService.getRemainingLoans(FULANO) ).thenReturn(0);
+
+        Throwable exception = Assertions.catchThrowable( () -> service.save(savingLoan) );
+
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Customer reached the maximum of open loans.");
+        Mockito.verify(bookRepository, Mockito.never()).incrementActiveLoans(Mockito.anyLong());
+        Mockito.verify(repository, Mockito.never()).save(savingLoan);
+    }
+
+    @Test
+    @DisplayName("Deve devolver um empréstimo e liberar o livro.")
+    public void returnLoanTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan loan = createLoan(book);
+        loan.setId(1L);
+
+        Mockito.when( repository.markReturned(Mockito.eq(1L), Mockito.any(LocalDate.class)) ).thenReturn(1);
+        Mockito.when( reservationService.promoteNext(book) ).thenReturn(Optional.empty());
+
+        Loan returnedLoan = service.returnLoan(loan);
+
+        assertThat(returnedLoan.isReturned()).isTrue();
+        Mockito.verify(bookRepository).decrementActiveLoans(1L);
+        Mockito.verify(outboxService).append(
+                Mockito.eq(LoanServiceImpl.AGGREGATE_TYPE),
+                Mockito.eq(1L),
+                Mockito.eq(LoanServiceImpl.LOAN_RETURNED),
+                Mockito.any());
+        Mockito.verify(eventPublisher).publishEvent(new BookAvailabilityChangedEvent(null, "123", 0));
+    }
+
+    @Test
+    @DisplayName("Deve emprestar o livro devolvido para o primeiro da fila de reservas.")
+    public void returnLoanPromotesReservationTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan loan = createLoan(book);
+        loan.setId(1L);
+        Reservation reservation = Reservation.builder().id(5L).book(book).customerId(2L).build();
+        Loan promotedLoan = Loan.builder().id(2L).book(book).customerId(2L).loanDate(LocalDate.now()).build();
+
+        Mockito.when( repository.markReturned(Mockito.eq(1L), Mockito.any(LocalDate.class)) ).thenReturn(1);
+        Mockito.when( reservationService.promoteNext(book) ).thenReturn(Optional.of(reservation));
+        Mockito.when( repository.save(Mockito.any(Loan.class)) ).thenReturn(promotedLoan);
+
+        service.returnLoan(loan);
+
+        assertThat(reservation.getLoan()).isEqualTo(promotedLoan);
+        Mockito.verify(bookRepository, Mockito.never()).decrementActiveLoans(Mockito.anyLong());
+        Mockito.verify(outboxService).append(
+                Mockito.eq(LoanServiceImpl.AGGREGATE_TYPE),
+                Mockito.eq(2L),
+                Mockito.eq(LoanServiceImpl.LOAN_CREATED),
+                Mockito.any());
+        // o livro continua emprestado, agora para o primeiro da fila
+        Mockito.verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Deve lançar erro de negócio ao devolver empréstimo já devolvido.")
+    public void returnedLoanReturnTest() {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan loan = createLoan(book);
+        loan.setId(1L);
+
+        Mockito.when( repository.markReturned(Mockito.eq(1L), Mockito.any(LocalDate.class)) ).thenReturn(0);
+
+        Throwable exception = Assertions.catchThrowable( () -> service.returnLoan(loan) );
+
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Loan already returned.");
+        Mockito.verify(bookRepository, Mockito.never()).decrementActiveLoans(Mockito.anyLong());
+    }
+
+    private Loan createLoan(Book book) {
+        return Loan.builder().book(book).customerId(FULANO.getId()).loanDate(LocalDate.now()).build();
+    }
+}
@@ -0,0 +1,132 @@
+package com.plenasoft.libraryapi.service;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.DailyBookLoanStats;
+import com.plenasoft.libraryapi.model.entity.DailyCustomerLoanStats;
+import com.plenasoft.libraryapi.model.entity.DailyLoanStats;
+import com.plenasoft.libraryapi.model.entity.LoanStatsEvent;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.DailyBookLoanStatsRepository;
+import com.plenasoft.libraryapi.model.repository.DailyCustomerLoanStatsRepository;
+import com.plenasoft.libraryapi.model.repository.DailyLoanStatsRepository;
+import com.plenasoft.libraryapi.model.repository.LoanStatsEventRepository;
+import com.plenasoft.libraryapi.service.impl.LoanStatsServiceImpl;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanStatsServiceTest {
+
+    static final LocalDate TODAY = LocalDate.of(2020, 4, 10);
+    static final String BRANCH = "centro";
+    static final Long EVENT = 99L;
+
+    LoanStatsService service;
+
+    @MockBean
+    DailyLoanStatsRepository dailyRepository;
+
+    @MockBean
+    DailyBookLoanStatsRepository bookStatsRepository;
+
+    @MockBean
+    DailyCustomerLoanStatsRepository customerStatsRepository;
+
+    @MockBean
+    LoanStatsEventRepository eventRepository;
+
+    @MockBean
+    BookRepository bookRepository;
+
+    @AfterEach
+    public void tearDown() {
+        BranchContextHolder.clear();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        this.service = new LoanStatsServiceImpl(dailyRepository, bookStatsRepository, customerStatsRepository, eventRepository, bookRepository, new ShardRouter(1));
+    }
+
+    @Test
+    @DisplayName("Deve criar os agregados do dia no primeiro empréstimo.")
+    public void firstLoanOfTheDayTest() {
+        Mockito.when( bookRepository.getOne(1L) ).thenReturn(Book.builder().id(1L).build());
+
+        service.recordLoan(EVENT, BRANCH, TODAY, 1L, 7L);
+
+        Mockito.verify(customerStatsRepository).save(
+                DailyCustomerLoanStats.builder().statDate(TODAY).branch(BRANCH).customerId(7L).loans(1).build());
+        Mockito.verify(bookStatsRepository).save(Mockito.any(DailyBookLoanStats.class));
+        Mockito.verify(eventRepository).save(Mockito.argThat( (LoanStatsEvent event) -> EVENT.equals(event.getEventId()) ));
+        Mockito.verify(dailyRepository).save(
+                DailyLoanStats.builder().statDate(TODAY).branch(BRANCH).loans(1).returns(0).activeCustomers(1).build());
+    }
+
+    @Test
+    @DisplayName("Deve apenas incrementar os agregados já existentes do dia.")
+    public void nextLoanOfTheDayTest() {
+        Mockito.when( customerStatsRepository.increment(BRANCH, TODAY, 7L, 1) ).thenReturn(1);
+        Mockito.when( bookStatsRepository.increment(BRANCH, TODAY, 1L, 1, 0) ).thenReturn(1);
+        Mockito.when( dailyRepository.increment(BRANCH, TODAY, 1, 0, 0) ).thenReturn(1);
+
+        service.recordLoan(EVENT, BRANCH, TODAY, 1L, 7L);
+
+        Mockito.verify(dailyRepository).increment(BRANCH, TODAY, 1, 0, 0);
+        Mockito.verify(customerStatsRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verify(bookStatsRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verify(dailyRepository, Mockito.never()).save(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Deve contar a devolução no dia da devolução.")
+    public void recordReturnTest() {
+        Mockito.when( bookStatsRepository.increment(BRANCH, TODAY, 1L, 0, 1) ).thenReturn(1);
+        Mockito.when( dailyRepository.increment(BRANCH, TODAY, 0, 1, 0) ).thenReturn(1);
+
+        service.recordReturn(EVENT, BRANCH, TODAY, 1L);
+
+        Mockito.verify(bookStatsRepository).increment(BRANCH, TODAY, 1L, 0, 1);
+        Mockito.verify(dailyRepository).increment(BRANCH, TODAY, 0, 1, 0);
+        Mockito.verifyNoInteractions(customerStatsRepository);
+    }
+
+    @Test
+    @DisplayName("Não deve contar de novo um evento reentregue pelo relay.")
+    public void redeliveredEventTest() {
+        Mockito.when( eventRepository.existsById(EVENT) ).thenReturn(true);
+
+        service.recordLoan(EVENT, BRANCH, TODAY, 1L, 7L);
+        service.recordReturn(EVENT, BRANCH, TODAY, 1L);
+
+        Mockito.verify(eventRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verifyNoInteractions(dailyRepository, bookStatsRepository, customerStatsRepository);
+    }
+
+    @Test
+    @DisplayName("Deve consultar apenas os agregados da filial da requisição.")
+    public void branchScopedQueriesTest() {
+        BranchContextHolder.setBranch(BRANCH);
+        LocalDate from = TODAY.minusDays(6);
+
+        service.getLoansPerDay(from, TODAY);
+        service.getTopBooks(from, TODAY, 5);
+        service.countActiveCustomers(from, TODAY);
+
+        Mockito.verify(dailyRepository).findByBranchAndStatDateBetweenOrderByStatDate(BRANCH, from, TODAY);
+        Mockito.verify(bookStatsRepository).findTopBooks(Mockito.eq(BRANCH), Mockito.eq(from), Mockito.eq(TODAY), Mockito.any());
+        Mockito.verify(customerStatsRepository).countDistinctCustomers(BRANCH, from, TODAY);
+    }
+}
@@ -0,0 +1,180 @@
+package com.plenasoft.libraryapi.service;
+
+import com.plenasoft.libraryapi.exception.BusinessException;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Loan;
+import com.plenasoft.libraryapi.model.entity.Reservation;
+import com.plenasoft.libraryapi.model.entity.ReservationStatus;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.model.repository.ReservationRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Teste de estresse da fila de reservas: vários clientes reservando ao mesmo tempo e
+ * várias "instâncias" promovendo a fila do mesmo livro em paralelo.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class ReservationConcurrencyTest {
+
+    static final int RESERVERS = 40;
+    static final int THREADS = 8;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    ReservationRepository reservationRepository;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    ReservationService reservationService;
+
+    @Autowired
+    CustomerService customerService;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("Deve promover cada reserva concorrente exatamente uma vez.")
+    public void concurrentReserveAndPromoteTest() throws Exception {
+        Book book = createLoanedBook("stress-promote");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Reservation> reservations = reserveConcurrently(executor, book);
+            assertThat(reservations).hasSize(RESERVERS);
+            assertThat(reservations).allMatch( r -> r.getStatus() == ReservationStatus.WAITING );
+
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            Queue<Long> promoted = new ConcurrentLinkedQueue<>();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    while (true) {
+                        Optional<Reservation> next = transactionTemplate.execute(
+                                status -> reservationService.promoteNext(book));
+                        if (!next.isPresent()) {
+                            return null;
+                        }
+                        promoted.add(next.get().getId());
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+
+            assertThat(promoted).hasSize(RESERVERS);
+            assertThat(new HashSet<>(promoted)).hasSize(RESERVERS);
+            assertThat(reservationRepository.findAllById(promoted))
+                    .allMatch( r -> r.getStatus() == ReservationStatus.PROMOTED );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve emprestar o livro devolvido para os reservantes em ordem de chegada.")
+    public void returnPromotesInArrivalOrderTest() {
+        Book book = createLoanedBook("stress-fifo");
+        List<String> customers = Arrays.asList("primeiro", "segundo", "terceiro");
+        for (String customer : customers) {
+            reservationService.reserve(Reservation.builder().book(book).customerId(customerId(customer)).build());
+        }
+
+        List<String> borrowers = new ArrayList<>();
+        for (int i = 0; i < customers.size(); i++) {
+            Loan open = openLoan(book);
+            loanService.returnLoan(open);
+            borrowers.add(customerService.getById(openLoan(book).getCustomerId()).get().getName());
+        }
+
+        assertThat(borrowers).containsExactlyElementsOf(customers);
+
+        loanService.returnLoan(openLoan(book));
+        assertThat(bookRepository.findById(book.getId()).get().isAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Não deve deixar em espera a reserva de um livro devolvido depois de lido.")
+    public void reserveReturnedBookTest() {
+        //cenario
+        Book book = createLoanedBook("stress-stale");
+        loanService.returnLoan(openLoan(book));
+
+        //execucao
+        Throwable exception = Assertions.catchThrowable(() -> reservationService.reserve(
+                Reservation.builder().book(book).customerId(customerId("atrasado")).build()));
+
+        //verificacao
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Book is available for loan.");
+        assertThat(reservationService.getQueuedBooks(Collections.singleton(book.getId()))).isEmpty();
+    }
+
+    private List<Reservation> reserveConcurrently(ExecutorService executor, Book book) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Reservation>> futures = new ArrayList<>();
+        for (int i = 0; i < RESERVERS; i++) {
+            Long customerId = customerId("cliente-" + i);
+            futures.add(executor.submit(() -> {
+                start.await();
+                return reservationService.reserve(Reservation.builder().book(book).customerId(customerId).build());
+            }));
+        }
+        start.countDown();
+
+        List<Reservation> reservations = new ArrayList<>();
+        for (Future<Reservation> future : futures) {
+            reservations.add(future.get(60, TimeUnit.SECONDS));
+        }
+        return reservations;
+    }
+
+    private Book createLoanedBook(String isbnPrefix) {
+        Book book = bookRepository.save(Book.builder()
+                .branch("main")
+                .title("Livro concorrido")
+                .author("Fulano")
+                .isbn(isbnPrefix + "-" + System.nanoTime())
+                .build());
+        loanService.save(Loan.builder().book(book).customerId(customerId("dono")).loanDate(LocalDate.now()).build());
+        return bookRepository.findById(book.getId()).get();
+    }
+
+    private Long customerId(String name) {
+        return customerService.getOrCreate(name).getId();
+    }
+
+    private Loan openLoan(Book book) {
+        return loanRepository.findAll().stream()
+                .filter( loan -> loan.getBook().getId().equals(book.getId()) && !loan.isReturned() )
+                .findFirst()
+                .orElseThrow( () -> new AssertionError("Livro sem empréstimo em aberto") );
+    }
+}
@@ -0,0 +1,87 @@
+package com.plenasoft.libraryapi.service.archive;
+
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Loan;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.LoanArchiveRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.service.CustomerService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.loan-archive.retention-months=6",
+        "library.loan-archive.chunk-size=2",
+        "library.scheduling.enabled=false"
+})
+public class LoanArchiveJobTest {
+
+    @Autowired
+    LoanArchiveJob job;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    LoanArchiveRepository archiveRepository;
+
+    @Autowired
+    CustomerService customerService;
+
+    @Test
+    @DisplayName("Deve arquivar em blocos apenas os empréstimos devolvidos antes do período de retenção.")
+    public void archiveOldReturnedLoansTest() {
+        //cenario
+        Book book = bookRepository.save(Book.builder()
+                .branch("main").author("Fulano").title("As aventuras").isbn("archive-123").build());
+        LocalDate old = LocalDate.now().minusYears(2);
+        Loan first = loanRepository.save(createLoan(book, old, true));
+        Loan second = loanRepository.save(createLoan(book, old, true));
+        Loan third = loanRepository.save(createLoan(book, old, true));
+        Loan recent = loanRepository.save(createLoan(book, LocalDate.now().minusDays(3), true));
+        Loan open = loanRepository.save(createLoan(book, old, false));
+
+        //execucao
+        int archived = job.archive();
+
+        //verificacao
+        assertThat(archived).isEqualTo(3);
+        assertThat(loanRepository.findById(first.getId())).isEmpty();
+        assertThat(loanRepository.findById(second.getId())).isEmpty();
+        assertThat(loanRepository.findById(third.getId())).isEmpty();
+        assertThat(loanRepository.findById(recent.getId())).isPresent();
+        assertThat(loanRepository.findById(open.getId())).isPresent();
+
+        assertThat(archiveRepository.findById(first.getId())).hasValueSatisfying(loan -> {
+            assertThat(loan.getCustomerId()).isEqualTo(customerService.getOrCreate("Fulano").getId());
+            assertThat(loan.getReturnDate()).isEqualTo(old.plusDays(7));
+            assertThat(loan.getArchivedAt()).isNotNull();
+        });
+        assertThat(job.archive()).isZero();
+    }
+
+    private Loan createLoan(Book book, LocalDate loanDate, boolean returned) {
+        return Loan.builder()
+                .branch("main")
+                .book(book)
+                .customerId(customerService.getOrCreate("Fulano").getId())
+                .loanDate(loanDate)
+                .returned(returned)
+                .returnDate(returned ? loanDate.plusDays(7) : null)
+                .build();
+    }
+}
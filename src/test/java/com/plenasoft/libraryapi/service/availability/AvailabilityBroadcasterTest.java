@@ -0,0 +1,194 @@
+package com.plenasoft.libraryapi.service.availability;
+
+import com.plenasoft.libraryapi.api.dto.BookAvailabilityDTO;
+import com.plenasoft.libraryapi.model.repository.BookAvailability;
+import com.plenasoft.libraryapi.service.BookService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class AvailabilityBroadcasterTest {
+
+    @MockBean
+    BookService bookService;
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Eventos enviados às conexões, na ordem; heartbeats aparecem como {@code false}.
+     */
+    BlockingQueue<Object> sent = new LinkedBlockingQueue<>();
+
+    /**
+     * Enquanto fechado, o envio fica preso como em um cliente que não lê a conexão.
+     */
+    CountDownLatch network = new CountDownLatch(0);
+
+    AvailabilityBroadcaster broadcaster;
+
+    @AfterEach
+    public void tearDown() {
+        network.countDown();
+        if (broadcaster != null) {
+            broadcaster.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve entregar a situação atual e depois apenas as mudanças dos isbns e da filial assinados.")
+    public void filteredSubscriptionTest() throws Exception {
+        //cenario
+        broadcaster = createBroadcaster(64);
+        Mockito.when(bookService.getAvailability(Mockito.anyCollection()))
+                .thenReturn(Collections.singletonList(availability("001", 1)));
+        broadcaster.subscribe("centro", Arrays.asList("001", "002"));
+
+        //execucao
+        broadcaster.onAvailabilityChanged(new BookAvailabilityChangedEvent("centro", "003", 1));
+        broadcaster.onAvailabilityChanged(new BookAvailabilityChangedEvent("norte", "001", 0));
+        broadcaster.onAvailabilityChanged(new BookAvailabilityChangedEvent("centro", "001", 0));
+
+        //verificacao
+        BookAvailabilityDTO snapshot = (BookAvailabilityDTO) sent.poll(5, TimeUnit.SECONDS);
+        assertThat(snapshot.getIsbn()).isEqualTo("001");
+        assertThat(snapshot.isAvailable()).isFalse();
+        BookAvailabilityDTO change = (BookAvailabilityDTO) sent.poll(5, TimeUnit.SECONDS);
+        assertThat(change.getIsbn()).isEqualTo("001");
+        assertThat(change.isAvailable()).isTrue();
+        assertThat(sent.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    @DisplayName("Não deve entregar a situação consultada depois de uma mudança recebida durante a consulta.")
+    public void staleSnapshotTest() throws Exception {
+        //cenario
+        broadcaster = createBroadcaster(64);
+        Mockito.when(bookService.getAvailability(Mockito.anyCollection())).thenAnswer(invocation -> {
+            // o empréstimo é confirmado depois da leitura da situação atual
+            broadcaster.onAvailabilityChanged(new BookAvailabilityChangedEvent("centro", "001", 1));
+            return Arrays.asList(availability("001", 0), availability("002", 0));
+        });
+
+        //execucao
+        broadcaster.subscribe("centro", Arrays.asList("001", "002"));
+
+        //verificacao
+        BookAvailabilityDTO change = (BookAvailabilityDTO) sent.poll(5, TimeUnit.SECONDS);
+        assertThat(change.getIsbn()).isEqualTo("001");
+        assertThat(change.isAvailable()).isFalse();
+        BookAvailabilityDTO snapshot = (BookAvailabilityDTO) sent.poll(5, TimeUnit.SECONDS);
+        assertThat(snapshot.getIsbn()).isEqualTo("002");
+        assertThat(sent.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve entregar a mudança de um livro cadastrado em outra grafia do isbn assinado.")
+    public void isbnSpellingTest() throws Exception {
+        //cenario
+        broadcaster = createBroadcaster(64);
+        Mockito.when(bookService.getAvailability(Mockito.anyCollection())).thenReturn(Collections.emptyList());
+        broadcaster.subscribe("centro", Collections.singletonList("9788533302273"));
+
+        //execucao
+        broadcaster.onAvailabilityChanged(new BookAvailabilityChangedEvent("centro", "978-85-333-0227-3", 1));
+
+        //verificacao
+        BookAvailabilityDTO change = (BookAvailabilityDTO) sent.poll(5, TimeUnit.SECONDS);
+        assertThat(change.getIsbn()).isEqualTo("9788533302273");
+        assertThat(change.isAvailable()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve desconectar o assinante lento sem bloquear quem publica.")
+    public void slowConsumerEvictionTest() {
+        //cenario
+        broadcaster = createBroadcaster(2);
+        network = new CountDownLatch(1);
+        broadcaster.subscribe("centro", Collections.emptyList());
+        broadcaster.subscribe("centro", Collections.emptyList());
+
+        //execucao
+        for (int i = 0; i < 10; i++) {
+            broadcaster.onAvailabilityChanged(new BookAvailabilityChangedEvent("centro", "00" + i, i % 2));
+        }
+
+        //verificacao
+        assertThat(broadcaster.subscriberCount()).isZero();
+        assertThat(meterRegistry.counter("library.availability.stream.evicted").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve enviar heartbeat para todas as conexões.")
+    public void heartbeatTest() throws Exception {
+        //cenario
+        broadcaster = createBroadcaster(64);
+        broadcaster.subscribe("centro", Collections.emptyList());
+        broadcaster.subscribe("norte", Collections.singletonList("001"));
+
+        //execucao
+        broadcaster.heartbeat();
+
+        //verificacao
+        assertThat(sent.poll(5, TimeUnit.SECONDS)).isEqualTo(Boolean.FALSE);
+        assertThat(sent.poll(5, TimeUnit.SECONDS)).isEqualTo(Boolean.FALSE);
+        assertThat(broadcaster.subscriberCount()).isEqualTo(2);
+    }
+
+    private AvailabilityBroadcaster createBroadcaster(int queueCapacity) {
+        return new AvailabilityBroadcaster(bookService, meterRegistry, 60000, queueCapacity, 100, 2) {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                return new SseEmitter(timeoutMillis) {
+                    @Override
+                    public void send(SseEventBuilder builder) throws IOException {
+                        try {
+                            network.await();
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        }
+                        Object data = builder.build().stream()
+                                .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                                .filter(BookAvailabilityDTO.class::isInstance)
+                                .findFirst()
+                                .orElse(Boolean.FALSE);
+                        sent.add(data);
+                    }
+                };
+            }
+        };
+    }
+
+    private BookAvailability availability(String isbn, int activeLoans) {
+        return new BookAvailability() {
+            @Override
+            public String getIsbn() {
+                return isbn;
+            }
+
+            @Override
+            public int getActiveLoans() {
+                return activeLoans;
+            }
+        };
+    }
+}
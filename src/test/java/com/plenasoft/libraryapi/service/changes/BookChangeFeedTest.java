@@ -0,0 +1,121 @@
+package com.plenasoft.libraryapi.service.changes;
+
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = "library.scheduling.enabled=false")
+public class BookChangeFeedTest {
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    ChangeSeqBackfillJob backfillJob;
+
+    @AfterEach
+    public void tearDown() {
+        BranchContextHolder.clear();
+    }
+
+    @Test
+    @DisplayName("Deve entregar inclusões, alterações e exclusões em ordem e continuar do token.")
+    public void changeFeedTest() {
+        //cenario
+        BranchContextHolder.setBranch("feed");
+        Book first = bookService.save(createBook("feed-001"));
+        Book second = bookService.save(createBook("feed-002"));
+        Book third = bookService.save(createBook("feed-003"));
+
+        //execucao
+        BookChangePage inserts = bookService.getChanges(null, 2);
+        BookChangePage remaining = bookService.getChanges(inserts.getNextToken(), 10);
+
+        //verificacao
+        assertThat(ids(inserts)).containsExactly(first.getId(), second.getId());
+        assertThat(inserts.isHasMore()).isTrue();
+        assertThat(ids(remaining)).containsExactly(third.getId());
+        assertThat(remaining.isHasMore()).isFalse();
+
+        //execucao
+        Book updating = bookService.getById(first.getId()).get();
+        updating.setTitle("Novo titulo");
+        bookService.update(updating);
+        bookService.patch(Book.builder().id(third.getId()).author("Ciclano").build());
+        bookService.delete(bookService.getById(second.getId()).get());
+        BookChangePage changes = bookService.getChanges(remaining.getNextToken(), 10);
+
+        //verificacao
+        assertThat(ids(changes)).containsExactly(first.getId(), third.getId(), second.getId());
+        assertThat(changes.getChanges().get(0).getTitle()).isEqualTo("Novo titulo");
+        assertThat(changes.getChanges().get(1).getAuthor()).isEqualTo("Ciclano");
+        assertThat(changes.getChanges().get(2).getDeletedAt()).isNotNull();
+        assertThat(bookService.getChanges(changes.getNextToken(), 10).getChanges()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Não deve entregar as alterações de outra filial.")
+    public void changeFeedBranchTest() {
+        //cenario
+        BranchContextHolder.setBranch("feed-outra");
+        bookService.save(createBook("feed-004"));
+        BranchContextHolder.setBranch("feed-vazia");
+
+        //execucao
+        BookChangePage page = bookService.getChanges(null, 10);
+
+        //verificacao
+        assertThat(page.getChanges()).isEmpty();
+        assertThat(page.getNextToken()).isEqualTo("0:0");
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve entregar os livros cadastrados antes do feed depois do preenchimento do change_seq.")
+    public void changeSeqBackfillTest() {
+        //cenario
+        BranchContextHolder.setBranch("feed-legado");
+        Book current = bookService.save(createBook("feed-005"));
+        BookChangePage before = bookService.getChanges(null, 10);
+        Book legacy = createBook("feed-006");
+        legacy.setBranch("feed-legado");
+        legacy = bookRepository.save(legacy);
+
+        //execucao
+        int filled = backfillJob.backfill();
+        BookChangePage after = bookService.getChanges(before.getNextToken(), 10);
+
+        //verificacao
+        assertThat(ids(before)).containsExactly(current.getId());
+        assertThat(filled).isGreaterThanOrEqualTo(1);
+        assertThat(ids(after)).containsExactly(legacy.getId());
+        assertThat(backfillJob.backfill()).isZero();
+    }
+
+    private static List<Long> ids(BookChangePage page) {
+        return page.getChanges().stream().map(Book::getId).collect(Collectors.toList());
+    }
+
+    private static Book createBook(String isbn) {
+        return Book.builder().author("Fulano").title("As aventuras").isbn(isbn).build();
+    }
+}
@@ -0,0 +1,132 @@
+package com.plenasoft.libraryapi.service.enrichment;
+
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.EnrichmentStatus;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.service.BookService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.enrichment.enabled=true",
+        "library.enrichment.file.path=classpath:enrichment/book-metadata.json",
+        "library.enrichment.default-rate-per-second=1000",
+        "library.enrichment.initial-backoff=10ms",
+        "library.enrichment.max-attempts=3",
+        "library.enrichment.max-runs=2",
+        "library.enrichment.batch-size=2",
+        "library.scheduling.enabled=false"
+})
+public class BookEnrichmentJobTest {
+
+    static final String FLAKY_ISBN = "enrich-flaky";
+    static final String DOWN_ISBN = "enrich-down";
+
+    @Autowired
+    BookEnrichmentJob job;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Test
+    @DisplayName("Deve preencher os livros encontrados e marcar os desconhecidos.")
+    public void enrichPendingBooksTest() {
+        //cenario
+        Book known = bookService.save(createBook("enrich-9788533302273"));
+        Book partial = bookService.save(createBook("enrich-9788535914849"));
+        Book unknown = bookService.save(createBook("enrich-desconhecido"));
+
+        //execucao
+        job.enrich();
+
+        //verificacao
+        Book enriched = bookRepository.findById(known.getId()).get();
+        assertThat(enriched.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.ENRICHED);
+        assertThat(enriched.getPublisher()).isEqualTo("Editora Fulano");
+        assertThat(enriched.getPublishedYear()).isEqualTo(1999);
+        assertThat(enriched.getCoverUrl()).isEqualTo("https://covers.example.org/9788533302273.jpg");
+        assertThat(enriched.getPageCount()).isEqualTo(320);
+        assertThat(enriched.getEnrichedAt()).isNotNull();
+
+        Book withoutCover = bookRepository.findById(partial.getId()).get();
+        assertThat(withoutCover.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.ENRICHED);
+        assertThat(withoutCover.getCoverUrl()).isNull();
+
+        assertThat(bookRepository.findById(unknown.getId()).get().getEnrichmentStatus())
+                .isEqualTo(EnrichmentStatus.NOT_FOUND);
+    }
+
+    @Test
+    @DisplayName("Deve tentar de novo quando o provedor estiver indisponível.")
+    public void retryUnavailableProviderTest() {
+        //cenario
+        Book flaky = bookService.save(createBook(FLAKY_ISBN));
+        Book down = bookService.save(createBook(DOWN_ISBN));
+
+        //execucao
+        job.enrich();
+
+        //verificacao
+        Book enriched = bookRepository.findById(flaky.getId()).get();
+        assertThat(enriched.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.ENRICHED);
+        assertThat(enriched.getPublisher()).isEqualTo("Editora Instável");
+
+        Book stillPending = bookRepository.findById(down.getId()).get();
+        assertThat(stillPending.getEnrichmentStatus()).isEqualTo(EnrichmentStatus.PENDING);
+        assertThat(stillPending.getEnrichmentAttempts()).isEqualTo(1);
+
+        job.enrich();
+        assertThat(bookRepository.findById(down.getId()).get().getEnrichmentStatus())
+                .isEqualTo(EnrichmentStatus.FAILED);
+    }
+
+    private Book createBook(String isbn) {
+        return Book.builder().title("As aventuras").author("Fulano").isbn(isbn).build();
+    }
+
+    @TestConfiguration
+    static class UnstableProviderConfig {
+
+        /**
+         * Falha na primeira consulta do isbn instável e sempre no isbn fora do ar.
+         */
+        @Bean
+        BookMetadataProvider unstableProvider() {
+            AtomicInteger flakyCalls = new AtomicInteger();
+            return new BookMetadataProvider() {
+                @Override
+                public String getName() {
+                    return "unstable";
+                }
+
+                @Override
+                public Optional<BookMetadata> findByIsbn(String isbn) {
+                    if (DOWN_ISBN.equals(isbn) || (FLAKY_ISBN.equals(isbn) && flakyCalls.getAndIncrement() == 0)) {
+                        throw new MetadataProviderException("Provedor fora do ar.");
+                    }
+                    if (FLAKY_ISBN.equals(isbn)) {
+                        return Optional.of(BookMetadata.builder().isbn(isbn).publisher("Editora Instável").build());
+                    }
+                    return Optional.empty();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.plenasoft.libraryapi.service.fee;
+
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Loan;
+import com.plenasoft.libraryapi.model.entity.LoanFee;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.LoanFeeRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.service.CustomerService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.fees.partition-size=2",
+        "library.fees.batch-size=2",
+        "library.fees.parallelism=4",
+        "library.loan-policy.defaults.grace-days=2",
+        "library.loan-policy.book-types.REFERENCE.loan-days=3",
+        "library.loan-policy.book-types.REFERENCE.daily-fine=5.00",
+        "library.scheduling.enabled=false"
+})
+public class FeeAssessmentJobTest {
+
+    @Autowired
+    FeeAssessmentJob job;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    LoanFeeRepository feeRepository;
+
+    @Autowired
+    CustomerService customerService;
+
+    @Test
+    @DisplayName("Deve apurar as multas dos empréstimos atrasados pela política de cada um, sem duplicar ao repetir o dia.")
+    public void assessOverdueLoansTest() {
+        //cenario
+        LocalDate today = LocalDate.of(2031, 3, 10);
+        Book book = saveBook("fee-001", null);
+        Book reference = saveBook("fee-002", "REFERENCE");
+        // 20 dias de atraso: 20,00, no teto padrão de 30,00 ainda não
+        Loan late = saveLoan(book, today.minusDays(34), null, null);
+        // 2 dias de atraso, dentro da carência
+        Loan inGrace = saveLoan(book, today.minusDays(16), null, null);
+        // obra de referência: prazo de 3 dias e 5,00 por dia, limitado ao teto
+        Loan referenceLate = saveLoan(reference, today.minusDays(13), null, null);
+        // devolvido ontem com 4 dias de atraso: última apuração
+        Loan returnedLate = saveLoan(book, today.minusDays(19), today.minusDays(19).plusDays(14), today.minusDays(1));
+        Loan returnedBefore = saveLoan(book, today.minusDays(40), today.minusDays(26), today.minusDays(20));
+        Loan onTime = saveLoan(book, today.minusDays(5), null, null);
+
+        //execucao
+        int assessed = job.assess(today);
+        int again = job.assess(today);
+
+        //verificacao
+        assertThat(again).isEqualTo(assessed);
+        assertThat(feeRepository.findByAssessedOn(today)).hasSize(assessed)
+                .extracting(LoanFee::getLoanId)
+                .contains(late.getId(), referenceLate.getId(), returnedLate.getId())
+                .doesNotContain(inGrace.getId(), returnedBefore.getId(), onTime.getId());
+
+        LoanFee lateFee = feeRepository.findFirstByLoanIdOrderByAssessedOnDesc(late.getId()).get();
+        assertThat(lateFee.getDaysOverdue()).isEqualTo(20);
+        assertThat(lateFee.getAmount()).isEqualByComparingTo(new BigDecimal("20.00"));
+        assertThat(lateFee.getDueDate()).isEqualTo(today.minusDays(20));
+        assertThat(lateFee.getCustomerId()).isEqualTo(customerService.getOrCreate("Fulano").getId());
+
+        LoanFee referenceFee = feeRepository.findFirstByLoanIdOrderByAssessedOnDesc(referenceLate.getId()).get();
+        assertThat(referenceFee.getDaysOverdue()).isEqualTo(10);
+        assertThat(referenceFee.getAmount()).isEqualByComparingTo(new BigDecimal("30.00"));
+
+        LoanFee returnedFee = feeRepository.findFirstByLoanIdOrderByAssessedOnDesc(returnedLate.getId()).get();
+        assertThat(returnedFee.getDaysOverdue()).isEqualTo(4);
+        assertThat(returnedFee.getAmount()).isEqualByComparingTo(new BigDecimal("4.00"));
+
+
+        //execucao
+        job.assess(today.plusDays(1));
+
+        //verificacao
+        assertThat(feeRepository.findFirstByLoanIdOrderByAssessedOnDesc(late.getId()).get().getAmount())
+                .isEqualByComparingTo(new BigDecimal("21.00"));
+        assertThat(feeRepository.findFirstByLoanIdOrderByAssessedOnDesc(returnedLate.getId()).get().getAssessedOn())
+                .isEqualTo(today);
+    }
+
+    private Book saveBook(String isbn, String type) {
+        return bookRepository.save(Book.builder()
+                .branch("main").author("Fulano").title("As aventuras").isbn(isbn).type(type).build());
+    }
+
+    private Loan saveLoan(Book book, LocalDate loanDate, LocalDate dueDate, LocalDate returnDate) {
+        return loanRepository.save(Loan.builder()
+                .branch("main")
+                .book(book)
+                .customerId(customerService.getOrCreate("Fulano").getId())
+                .loanDate(loanDate)
+                .dueDate(dueDate)
+                .returned(returnDate != null)
+                .returnDate(returnDate)
+                .build());
+    }
+}
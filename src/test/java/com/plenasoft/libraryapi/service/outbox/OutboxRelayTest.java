@@ -0,0 +1,145 @@
+package com.plenasoft.libraryapi.service.outbox;
+
+import com.plenasoft.libraryapi.model.entity.OutboxEvent;
+import com.plenasoft.libraryapi.model.repository.OutboxEventRepository;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class OutboxRelayTest {
+
+    OutboxRelay relay;
+
+    SimpleMeterRegistry meterRegistry;
+
+    @MockBean
+    OutboxEventRepository repository;
+
+    @MockBean
+    OutboxPublisher publisher;
+
+    @MockBean
+    OutboxSubscriber subscriber;
+
+    @MockBean
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new OutboxRelay(repository, publisher, Collections.singletonList(subscriber), transactionManager,
+                meterRegistry, new ShardRouter(1),
+                2, Duration.ofSeconds(1), Duration.ofSeconds(10));
+        Mockito.when( repository.findFirstByOrderByIdAsc() ).thenReturn(Optional.empty());
+    }
+
+    @Test
+    @DisplayName("Deve publicar os eventos em ordem e remover os publicados.")
+    public void relayInOrderTest() throws Exception {
+        OutboxEvent first = createEvent(1L);
+        OutboxEvent second = createEvent(2L);
+        Mockito.when( repository.findNextBatch(Mockito.any(Pageable.class)) )
+                .thenReturn(Arrays.asList(first, second))
+                .thenReturn(Collections.emptyList());
+
+        int published = relay.relay();
+
+        assertThat(published).isEqualTo(2);
+        org.mockito.InOrder inOrder = Mockito.inOrder(publisher);
+        inOrder.verify(publisher).publish(first);
+        inOrder.verify(publisher).publish(second);
+        Mockito.verify(repository).deleteByIdIn(Arrays.asList(1L, 2L));
+        assertThat(meterRegistry.counter("library.outbox.published").count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve interromper o lote na falha e agendar nova tentativa do mesmo evento.")
+    public void relayStopsOnFailureTest() throws Exception {
+        OutboxEvent first = createEvent(1L);
+        OutboxEvent second = createEvent(2L);
+        Mockito.when( repository.findNextBatch(Mockito.any(Pageable.class)) )
+                .thenReturn(Arrays.asList(first, second));
+        Mockito.doThrow(new IllegalStateException("broker fora do ar")).when(publisher).publish(first);
+
+        int published = relay.relay();
+
+        assertThat(published).isZero();
+        assertThat(first.getAttempts()).isEqualTo(1);
+        assertThat(first.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        Mockito.verify(publisher, Mockito.never()).publish(second);
+        Mockito.verify(repository, Mockito.never()).deleteByIdIn(Mockito.any());
+        Mockito.verifyNoInteractions(subscriber);
+    }
+
+    @Test
+    @DisplayName("Deve entregar os eventos mesmo quando um assinante local falha.")
+    public void relaySubscriberFailureTest() throws Exception {
+        OutboxEvent first = createEvent(1L);
+        OutboxEvent second = createEvent(2L);
+        Mockito.when( repository.findNextBatch(Mockito.any(Pageable.class)) )
+                .thenReturn(Arrays.asList(first, second))
+                .thenReturn(Collections.emptyList());
+        Mockito.doThrow(new IllegalStateException("falha no assinante"))
+                .when(subscriber).onEvent(Mockito.argThat(message -> message.getId().equals(1L)));
+
+        int published = relay.relay();
+
+        assertThat(published).isEqualTo(2);
+        Mockito.verify(subscriber, Mockito.times(2)).onEvent(Mockito.any(OutboxMessage.class));
+        Mockito.verify(repository).deleteByIdIn(Arrays.asList(1L, 2L));
+        assertThat(meterRegistry.counter("library.outbox.subscriber.failures").count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve respeitar o backoff do primeiro evento pendente.")
+    public void relayWaitsBackoffTest() throws Exception {
+        OutboxEvent first = createEvent(1L);
+        first.setAttempts(1);
+        first.setNextAttemptAt(LocalDateTime.now().plusMinutes(1));
+        Mockito.when( repository.findNextBatch(Mockito.any(Pageable.class)) )
+                .thenReturn(Collections.singletonList(first));
+
+        int published = relay.relay();
+
+        assertThat(published).isZero();
+        Mockito.verifyNoInteractions(publisher);
+    }
+
+    @Test
+    @DisplayName("Deve limitar o backoff exponencial ao máximo configurado.")
+    public void backoffTest() {
+        assertThat(relay.backoff(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(relay.backoff(3)).isEqualTo(Duration.ofSeconds(4));
+        assertThat(relay.backoff(30)).isEqualTo(Duration.ofSeconds(10));
+    }
+
+    private OutboxEvent createEvent(Long id) {
+        return OutboxEvent.builder()
+                .id(id)
+                .aggregateType("Loan")
+                .aggregateId(id)
+                .eventType("LOAN_CREATED")
+                .payload("{}")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
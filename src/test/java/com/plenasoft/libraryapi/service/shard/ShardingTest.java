@@ -0,0 +1,190 @@
+package com.plenasoft.libraryapi.service.shard;
+
+import com.plenasoft.libraryapi.exception.BusinessException;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.model.entity.Loan;
+import com.plenasoft.libraryapi.model.entity.LoanFee;
+import com.plenasoft.libraryapi.model.repository.BookAvailability;
+import com.plenasoft.libraryapi.model.repository.BookRepository;
+import com.plenasoft.libraryapi.model.repository.LoanFeeRepository;
+import com.plenasoft.libraryapi.model.repository.LoanRepository;
+import com.plenasoft.libraryapi.service.BookService;
+import com.plenasoft.libraryapi.service.CustomerService;
+import com.plenasoft.libraryapi.service.LoanService;
+import com.plenasoft.libraryapi.service.outbox.OutboxRelay;
+import com.plenasoft.libraryapi.shard.ShardRouter;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Livros distribuídos entre três bancos H2 em memória.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.sharding.enabled=true",
+        "library.sharding.shards[0].url=jdbc:h2:mem:library-shard0;DB_CLOSE_DELAY=-1",
+        "library.sharding.shards[0].username=sa",
+        "library.sharding.shards[1].url=jdbc:h2:mem:library-shard1;DB_CLOSE_DELAY=-1",
+        "library.sharding.shards[1].username=sa",
+        "library.sharding.shards[2].url=jdbc:h2:mem:library-shard2;DB_CLOSE_DELAY=-1",
+        "library.sharding.shards[2].username=sa",
+        "spring.jpa.open-in-view=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "library.scheduling.enabled=false"
+})
+public class ShardingTest {
+
+    static final int SHARDS = 3;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    ShardRebalancer rebalancer;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    CustomerService customerService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    LoanFeeRepository feeRepository;
+
+    @Autowired
+    OutboxRelay outboxRelay;
+
+    @Test
+    @DisplayName("Deve gravar e buscar cada livro somente no shard do seu isbn.")
+    public void routeByIsbnTest() {
+        //cenario
+        String prefix = "route-" + System.nanoTime() + "-";
+        Set<Integer> usedShards = new HashSet<>();
+
+        for (int i = 0; i < 60; i++) {
+            //execucao
+            String isbn = prefix + i;
+            Book saved = bookService.save(createBook(isbn));
+            int shard = shardRouter.shardFor(isbn);
+            usedShards.add(shard);
+
+            //verificacao
+            assertThat(saved.getShard()).isEqualTo(shard);
+            assertThat(shardRouter.homeShardOf(saved.getId())).isEqualTo(shard);
+            assertThat(shardRouter.onShard(shard, () -> bookRepository.existsById(saved.getId()))).isTrue();
+            assertThat(bookService.getBookByIsbn(isbn).map(Book::getId)).contains(saved.getId());
+            assertThat(bookService.getById(saved.getId()).map(Book::getIsbn)).contains(isbn);
+        }
+        assertThat(usedShards).hasSize(SHARDS);
+    }
+
+    @Test
+    @DisplayName("Deve recusar isbn duplicado mesmo com vários shards.")
+    public void duplicatedIsbnTest() {
+        String isbn = "dup-" + System.nanoTime();
+        bookService.save(createBook(isbn));
+
+        Throwable exception = Assertions.catchThrowable( () -> bookService.save(createBook(isbn)) );
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Isbn já cadastrado.");
+    }
+
+    @Test
+    @DisplayName("Deve consultar a disponibilidade em todos os shards de uma vez.")
+    public void scatterGatherAvailabilityTest() {
+        //cenario
+        String prefix = "avail-" + System.nanoTime() + "-";
+        List<String> isbns = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            isbns.add(prefix + i);
+            bookService.save(createBook(prefix + i));
+        }
+        Book loaned = bookService.getBookByIsbn(isbns.get(0)).get();
+        loanService.save(Loan.builder().book(loaned).customerId(customerService.getOrCreate("Fulano").getId()).loanDate(LocalDate.now()).build());
+
+        //execucao
+        List<String> query = new ArrayList<>(isbns);
+        query.add(prefix + "inexistente");
+        Map<String, Integer> availability = bookService.getAvailability(query).stream()
+                .collect(Collectors.toMap(BookAvailability::getIsbn, BookAvailability::getActiveLoans));
+
+        //verificacao
+        assertThat(availability).hasSize(isbns.size());
+        assertThat(availability.get(isbns.get(0))).isEqualTo(1);
+        assertThat(availability.get(isbns.get(1))).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve mover para o shard correto um livro gravado em outro shard, com seus empréstimos e multas.")
+    public void rebalanceTest() {
+        //cenario
+        String isbn = "rebalance-" + System.nanoTime();
+        int home = shardRouter.shardFor(isbn);
+        int wrong = (home + 1) % SHARDS;
+        Book misplaced = shardRouter.onShard(wrong, () -> bookRepository.save(createBook(isbn)));
+        misplaced.setShard(wrong);
+        Loan loan = loanService.save(Loan.builder().book(misplaced).customerId(customerService.getOrCreate("Fulano").getId()).loanDate(LocalDate.now()).build());
+        shardRouter.onShard(wrong, () -> feeRepository.save(LoanFee.builder()
+                .loanId(loan.getId())
+                .branch("main")
+                .customerId(loan.getCustomerId())
+                .assessedOn(LocalDate.now())
+                .dueDate(LocalDate.now().minusDays(1))
+                .daysOverdue(1)
+                .amount(BigDecimal.ONE)
+                .build()));
+
+        long misplacedBefore = rebalancer.countMisplaced();
+
+        //execucao
+        int moved = rebalancer.rebalance();
+
+        //verificacao
+        assertThat(misplacedBefore).isGreaterThanOrEqualTo(1);
+        assertThat(rebalancer.countMisplaced()).isZero();
+        assertThat(moved).isGreaterThanOrEqualTo(1);
+        assertThat(shardRouter.onShard(wrong, () -> bookRepository.existsById(misplaced.getId()))).isFalse();
+        Optional<Book> found = bookService.getById(misplaced.getId());
+        assertThat(found).isPresent();
+        assertThat(found.get().getShard()).isEqualTo(home);
+        assertThat(found.get().getActiveLoans()).isEqualTo(1);
+
+        Optional<Loan> movedLoan = loanService.getById(loan.getId());
+        assertThat(movedLoan).isPresent();
+        loanService.returnLoan(movedLoan.get());
+        assertThat(bookService.getById(misplaced.getId()).get().isAvailable()).isTrue();
+        assertThat(shardRouter.onShard(home, () -> loanRepository.findById(loan.getId()))).isPresent();
+        assertThat(shardRouter.onShard(home, () -> feeRepository.findFirstByLoanIdOrderByAssessedOnDesc(loan.getId()))).isPresent();
+        assertThat(shardRouter.onShard(wrong, () -> feeRepository.findFirstByLoanIdOrderByAssessedOnDesc(loan.getId()))).isEmpty();
+
+        // os eventos pendentes foram junto e são entregues pelo outbox do novo shard
+        assertThat(outboxRelay.relay()).isGreaterThanOrEqualTo(2);
+    }
+
+    private Book createBook(String isbn) {
+        return Book.builder().branch("main").title("As aventuras").author("Fulano").isbn(isbn).build();
+    }
+}
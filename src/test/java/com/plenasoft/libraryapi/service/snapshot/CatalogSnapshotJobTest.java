@@ -0,0 +1,116 @@
+package com.plenasoft.libraryapi.service.snapshot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plenasoft.libraryapi.branch.BranchContextHolder;
+import com.plenasoft.libraryapi.model.entity.Book;
+import com.plenasoft.libraryapi.service.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.catalog-snapshot.directory=${java.io.tmpdir}/library-api-test/snapshots",
+        "library.scheduling.enabled=false"
+})
+public class CatalogSnapshotJobTest {
+
+    @Autowired
+    CatalogSnapshotJob job;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @AfterEach
+    public void tearDown() {
+        BranchContextHolder.clear();
+    }
+
+    @Test
+    @DisplayName("Deve gerar o snapshot da filial sem os livros excluídos e com a posição do feed.")
+    public void generateSnapshotTest() throws Exception {
+        //cenario
+        BranchContextHolder.setBranch("snapshot");
+        Book kept = bookService.save(createBook("snapshot-001"));
+        Book deleted = bookService.save(createBook("snapshot-002"));
+        bookService.delete(bookService.getById(deleted.getId()).get());
+
+        //execucao
+        job.generate();
+
+        //verificacao
+        CatalogSnapshot snapshot = job.current("snapshot").get();
+        List<JsonNode> rows = readRows(snapshot);
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0).get("id").asLong()).isEqualTo(kept.getId());
+        assertThat(rows.get(0).get("isbn").asText()).isEqualTo("snapshot-001");
+        assertThat(snapshot.getRows()).isEqualTo(1);
+        assertThat(snapshot.getLength()).isEqualTo(Files.size(snapshot.getPath()));
+        assertThat(bookService.getChanges(snapshot.getChangeToken(), 10).getChanges()).isEmpty();
+
+        //execucao
+        Book added = bookService.save(createBook("snapshot-003"));
+
+        //verificacao
+        assertThat(bookService.getChanges(snapshot.getChangeToken(), 10).getChanges())
+                .extracting(Book::getId)
+                .containsExactly(added.getId());
+    }
+
+    @Test
+    @DisplayName("Deve manter o arquivo da geração anterior e remover o mais antigo.")
+    public void expireOldSnapshotsTest() throws Exception {
+        //cenario
+        BranchContextHolder.setBranch("snapshot-old");
+        bookService.save(createBook("snapshot-004"));
+
+        //execucao
+        CatalogSnapshot first = job.generate().get("snapshot-old");
+        Thread.sleep(5);
+        CatalogSnapshot second = job.generate().get("snapshot-old");
+        Thread.sleep(5);
+        job.generate();
+
+        //verificacao
+        assertThat(Files.exists(first.getPath())).isFalse();
+        assertThat(Files.exists(second.getPath())).isTrue();
+        assertThat(Files.exists(job.current("snapshot-old").get().getPath())).isTrue();
+    }
+
+    private List<JsonNode> readRows(CatalogSnapshot snapshot) throws IOException {
+        List<JsonNode> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(snapshot.getPath())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rows.add(objectMapper.readTree(line));
+            }
+        }
+        return rows;
+    }
+
+    private static Book createBook(String isbn) {
+        return Book.builder().author("Fulano").title("As aventuras").isbn(isbn).build();
+    }
+}
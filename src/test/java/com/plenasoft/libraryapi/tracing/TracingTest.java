@@ -0,0 +1,178 @@
+package com.plenasoft.libraryapi.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plenasoft.libraryapi.api.dto.BookDTO;
+import com.plenasoft.libraryapi.api.dto.LoanDTO;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.scheduling.enabled=false",
+        "library.tracing.slow-query.threshold=0ms"
+})
+@AutoConfigureMockMvc
+public class TracingTest {
+
+    static String TRACEPARENT = "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01";
+
+    @TestConfiguration
+    static class InMemoryExporterConfig {
+
+        @Bean
+        public InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    InMemorySpanExporter exporter;
+
+    @Autowired
+    SdkTracerProvider tracerProvider;
+
+    @BeforeEach
+    public void setUp() {
+        flush();
+        exporter.reset();
+    }
+
+    @Test
+    @DisplayName("Deve rastrear o empréstimo da requisição até os comandos SQL no mesmo trace.")
+    public void traceLoanTest() throws Exception {
+        //cenario
+        BookDTO book = BookDTO.builder().title("As aventuras").author("Fulano").isbn("9780804429573").build();
+        post("/api/books", book);
+        flush();
+        exporter.reset();
+
+        //execucao
+        MvcResult result = post("/api/loans", LoanDTO.builder().isbn("9780804429573").customer("Fulano").build());
+        flush();
+
+        //verificacao
+        List<SpanData> spans = exporter.getFinishedSpanItems();
+        SpanData request = find(spans, "POST /api/loans");
+        assertThat(request.getKind()).isEqualTo(SpanKind.SERVER);
+        assertThat(result.getResponse().getHeader(TracingFilter.TRACE_ID_HEADER)).isEqualTo(request.getTraceId());
+        assertThat(spans).allMatch(span -> span.getTraceId().equals(request.getTraceId()));
+
+        SpanData controller = find(spans, "LoanController.create");
+        SpanData lookup = find(spans, "BookServiceImpl.getBookByIsbn");
+        SpanData save = find(spans, "LoanServiceImpl.save");
+        assertThat(controller.getParentSpanId()).isEqualTo(request.getSpanId());
+        assertThat(lookup.getParentSpanId()).isEqualTo(controller.getSpanId());
+        assertThat(save.getParentSpanId()).isEqualTo(controller.getSpanId());
+
+        SpanData select = find(spans, "SELECT book");
+        assertThat(select.getKind()).isEqualTo(SpanKind.CLIENT);
+        assertThat(select.getParentSpanId()).isEqualTo(lookup.getSpanId());
+        assertThat(spans).anyMatch(span -> span.getName().equals("INSERT loan"));
+    }
+
+    @Test
+    @DisplayName("Deve continuar o trace recebido no header traceparent.")
+    public void propagateTraceTest() throws Exception {
+        //execucao
+        mvc.perform(MockMvcRequestBuilders.get("/api/books/1").header("traceparent", TRACEPARENT));
+        flush();
+
+        //verificacao
+        List<SpanData> spans = exporter.getFinishedSpanItems();
+        SpanData request = find(spans, "GET /api/books/{id}");
+        assertThat(request.getTraceId()).isEqualTo("0af7651916cd43dd8448eb211c80319c");
+        assertThat(request.getParentSpanId()).isEqualTo("b7ad6b7169203331");
+    }
+
+    @Test
+    @DisplayName("Deve registrar os tipos dos parâmetros e o plano das consultas lentas.")
+    public void slowQueryTest() throws Exception {
+        //cenario
+        post("/api/books", BookDTO.builder().title("As aventuras").author("Fulano").isbn("9788535914849").build());
+        flush();
+        exporter.reset();
+
+        //execucao
+        post("/api/loans", LoanDTO.builder().isbn("978-85-359-1484-9").customer("Fulano").build());
+        flush();
+
+        //verificacao
+        SpanData select = find(exporter.getFinishedSpanItems(), "SELECT book");
+        EventData slowQuery = select.getEvents().stream()
+                .filter(event -> event.getName().equals(SlowQueryLog.EVENT_NAME))
+                .findFirst()
+                .get();
+        assertThat(slowQuery.getAttributes().get(SlowQueryLog.PARAMETER_SHAPES)).isEqualTo("[String, Long]");
+        assertThat(slowQuery.getAttributes().get(SlowQueryLog.PLAN_HINTS)).contains("IDX_BOOK_BRANCH_ISBN13");
+    }
+
+    @Test
+    @DisplayName("Deve resumir o SQL em operação e tabela.")
+    public void summaryTest() {
+        assertThat(TracingDataSource.summary("select b.id from book b where b.id = ?")).isEqualTo("SELECT book");
+        assertThat(TracingDataSource.summary("insert into loan (id_book, customer) values (?, ?)")).isEqualTo("INSERT loan");
+        assertThat(TracingDataSource.summary("update book set change_seq = ? where id = ?")).isEqualTo("UPDATE book");
+        assertThat(TracingDataSource.summary("delete from loan where id in (?, ?)")).isEqualTo("DELETE loan");
+        assertThat(TracingDataSource.summary("select count(*) from (select 1) x")).isEqualTo("SELECT");
+        assertThat(TracingDataSource.summary("call next value for seq")).isEqualTo("CALL");
+    }
+
+    @Test
+    @DisplayName("Deve resumir o plano do H2 e do PostgreSQL.")
+    public void planHintsTest() {
+        assertThat(SlowQueryLog.planHints("SELECT ID FROM \"PUBLIC\".\"BOOK\" /* PUBLIC.BOOK.tableScan */"))
+                .isEqualTo("table scan: BOOK");
+        assertThat(SlowQueryLog.planHints("FROM \"PUBLIC\".\"BOOK\" /* PUBLIC.IDX_BOOK_BRANCH_ISBN: BRANCH = ?1 */ /* index sorted */"))
+                .isEqualTo("index: IDX_BOOK_BRANCH_ISBN");
+        assertThat(SlowQueryLog.planHints("Index Scan using idx_loan_book on loan\n  ->  Seq Scan on book"))
+                .isEqualTo("index: idx_loan_book, table scan: book");
+    }
+
+    private MvcResult post(String uri, Object body) throws Exception {
+        return mvc.perform(MockMvcRequestBuilders.post(uri)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(body)))
+                .andExpect(status().isCreated())
+                .andReturn();
+    }
+
+    private void flush() {
+        tracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+    }
+
+    private static SpanData find(List<SpanData> spans, String name) {
+        return spans.stream()
+                .filter(span -> span.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Span " + name + " não encontrado em " + spans));
+    }
+}